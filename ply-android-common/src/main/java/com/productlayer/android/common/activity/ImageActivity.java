@@ -27,28 +27,42 @@ package com.productlayer.android.common.activity;
 
 import android.content.Intent;
 import android.graphics.Bitmap;
+import android.graphics.BitmapRegionDecoder;
 import android.graphics.Color;
+import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
+import android.os.Process;
 import android.util.Log;
 import android.view.View;
 
 import com.productlayer.android.common.R;
 import com.productlayer.android.common.handler.DataChangeListener;
+import com.productlayer.android.common.util.CacheUtil;
 import com.productlayer.android.common.util.LocaleUtil;
 import com.productlayer.android.common.util.MetricsUtil;
+import com.productlayer.android.common.util.NetworkUtil;
+import com.productlayer.android.common.util.StorageUtil;
 import com.productlayer.android.common.view.LikeView;
+import com.productlayer.android.common.view.TiledImageView;
 import com.productlayer.android.sdk.PLYAndroid;
 import com.productlayer.android.sdk.services.ImageService;
 import com.productlayer.core.beans.ProductImage;
 import com.productlayer.core.beans.User;
 import com.productlayer.rest.client.config.PLYRestClientConfig;
+import com.squareup.okhttp.CacheControl;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
 import com.squareup.picasso.Picasso;
 import com.squareup.picasso.Target;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 
 import uk.co.senab.photoview.PhotoView;
+import uk.co.senab.photoview.PhotoViewAttacher;
 
 /**
  * Features zoomable images in fullscreen to be voted on and (by admins only) to be edited.
@@ -68,6 +82,12 @@ public class ImageActivity extends VerboseActivity {
     private static final String STATE_FRIENDS = "friends";
 
     private static final int IMAGE_QUALITY = 85;
+    private static final float BASE_IMAGE_SCALE = 2.5f;
+    private static final String FULL_IMAGE_DIR = "full-image";
+    private static final float MAX_SCALE_MARGIN = 1.5f;
+
+    // activities recreated on rotation may still be downloading into the shared directory
+    private static final Object FULL_IMAGE_LOCK = new Object();
 
     private PLYAndroid client;
 
@@ -76,9 +96,16 @@ public class ImageActivity extends VerboseActivity {
     private ArrayList<User> friends;
 
     private PhotoView photoView;
+    private TiledImageView tiledImageView;
     private Target imageTarget = new ImageTarget();
     private LikeView likeView;
 
+    // the width of the image displayed by the photo view, 0 until loaded
+    private int baseWidth;
+    private boolean fullImageRequested;
+    // set in onDestroy, which unlike isFinishing() also covers recreation on rotation
+    private boolean destroyed;
+
     private DataChangeListener.OnImageUpdateListener onImageUpdateListener;
 
     // ACTIVITY LIFECYCLE - START //
@@ -99,6 +126,17 @@ public class ImageActivity extends VerboseActivity {
         // inflate layout
         setContentView(R.layout.activity_image);
         photoView = (PhotoView) findViewById(R.id.photo_view);
+        tiledImageView = (TiledImageView) findViewById(R.id.tiled_image_view);
+        photoView.setOnMatrixChangeListener(new PhotoViewAttacher.OnMatrixChangedListener() {
+            @Override
+            public void onMatrixChanged(RectF rect) {
+                tiledImageView.setDisplayRect(rect);
+                // the base image runs out of detail once a pixel of it spans more than a screen pixel
+                if (baseWidth > 0 && rect.width() > baseWidth) {
+                    loadFullImage();
+                }
+            }
+        });
         likeView = (LikeView) findViewById(R.id.like_view);
         // get input either from a saved state (after an orientation change) or from the intent
         if (state != null) {
@@ -128,8 +166,10 @@ public class ImageActivity extends VerboseActivity {
             int blue = (int) (dominantColor[2] * 0.2);
             findViewById(R.id.container).setBackgroundColor(Color.rgb(red, green, blue));
         }
-        int maxWidthPx = (int) (MetricsUtil.getWidthPx() * 2.5);
-        int maxHeightPx = (int) (MetricsUtil.getHeightPx() * 2.5);
+        // load an image larger than the screen first, details beyond are decoded in tiles from the full image
+        // when zooming in that far
+        int maxWidthPx = (int) (MetricsUtil.getWidthPx() * BASE_IMAGE_SCALE);
+        int maxHeightPx = (int) (MetricsUtil.getHeightPx() * BASE_IMAGE_SCALE);
         String imageUrl = ImageService.getImageForSizeURL(client, image.getImageFileId(), maxWidthPx,
                 maxHeightPx, false, IMAGE_QUALITY);
         Log.d(getClass().getSimpleName(), "Loading image for fullscreen mode from " + imageUrl);
@@ -150,8 +190,11 @@ public class ImageActivity extends VerboseActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        destroyed = true;
         // stop listening for image updates by the user
         destroyListener();
+        // stop decoding tiles
+        tiledImageView.recycle();
     }
 
     // ACTIVITY LIFECYCLE - END //
@@ -177,6 +220,110 @@ public class ImageActivity extends VerboseActivity {
         DataChangeListener.addOnImageUpdateListener(onImageUpdateListener);
     }
 
+    /**
+     * Downloads the image in full resolution in the background, keeping only the last one on disk, and hands
+     * it to the tiled image view for zooming in. Does nothing if called before, if the displayed image is the
+     * full image already or if the full image is not on disk yet and the network is metered.
+     */
+    private void loadFullImage() {
+        if (fullImageRequested) {
+            return;
+        }
+        fullImageRequested = true;
+        Integer fullWidth = image.getWidth();
+        if (fullWidth == null || fullWidth <= baseWidth) {
+            return;
+        }
+        final String imageUrl = ImageService.getImageForSizeURL(client, image.getImageFileId(), fullWidth,
+                image.getHeight(), false, IMAGE_QUALITY);
+        final File dir = new File(getCacheDir(), FULL_IMAGE_DIR);
+        final File file = new File(dir, image.getImageFileId());
+        if (!file.exists() && NetworkUtil.isActiveNetworkMetered(this)) {
+            Log.d(getClass().getSimpleName(), "Not downloading full image on metered network");
+            return;
+        }
+        final int baseWidth = this.baseWidth;
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                final BitmapRegionDecoder decoder;
+                synchronized (FULL_IMAGE_LOCK) {
+                    if (!file.exists() && !download(imageUrl, dir, file)) {
+                        return;
+                    }
+                    decoder = TiledImageView.openDecoder(file);
+                }
+                if (decoder == null) {
+                    return;
+                }
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (destroyed) {
+                            decoder.recycle();
+                            return;
+                        }
+                        tiledImageView.setDecoder(decoder, baseWidth);
+                        // allow zooming in until a screen pixel shows a pixel of the full image
+                        float maxScale = decoder.getWidth() / (float) baseWidth * MAX_SCALE_MARGIN;
+                        if (maxScale > photoView.getMaximumScale()) {
+                            photoView.setMaximumScale(maxScale);
+                        }
+                        RectF displayRect = photoView.getDisplayRect();
+                        if (displayRect != null) {
+                            tiledImageView.setDisplayRect(displayRect);
+                        }
+                    }
+                });
+            }
+        }).start();
+    }
+
+    /**
+     * Downloads an image to the specified file, replacing any other files in its directory. Shares Picasso's
+     * connections but not its disk cache. Must be called while holding {@link #FULL_IMAGE_LOCK}.
+     *
+     * @return true on success, false on any error
+     */
+    private static boolean download(String url, File dir, File file) {
+        File[] oldFiles = dir.listFiles();
+        if (oldFiles != null) {
+            for (File oldFile : oldFiles) {
+                StorageUtil.deleteFile(oldFile);
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        dir.mkdirs();
+        File tempFile = new File(dir, file.getName() + ".tmp");
+        try {
+            OkHttpClient httpClient = CacheUtil.getPicassoHttpClient();
+            if (httpClient == null) {
+                httpClient = new OkHttpClient();
+            }
+            Request request = new Request.Builder().url(url).cacheControl(new CacheControl.Builder().noStore()
+                    .build()).build();
+            Response response = httpClient.newCall(request).execute();
+            try {
+                if (!response.isSuccessful()) {
+                    Log.w(ImageActivity.class.getSimpleName(), "Error " + response.code() + " downloading "
+                            + url);
+                    return false;
+                }
+                if (!StorageUtil.copyFile(response.body().byteStream(), tempFile)) {
+                    return false;
+                }
+            } finally {
+                // releases the connection also if the body has not been read
+                response.body().close();
+            }
+        } catch (IOException e) {
+            Log.w(ImageActivity.class.getSimpleName(), "Error downloading " + url, e);
+            return false;
+        }
+        return tempFile.renameTo(file);
+    }
+
     /**
      * Destroys listener to stop being notified of any updates.
      */
@@ -192,6 +339,7 @@ public class ImageActivity extends VerboseActivity {
         @Override
         public void onBitmapLoaded(Bitmap bitmap, Picasso.LoadedFrom from) {
             photoView.setImageBitmap(bitmap);
+            baseWidth = bitmap.getWidth();
             // update and show like view if a user is logged in
             if (currentUser == null) {
                 return;
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2015, ProductLayer GmbH All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.productlayer.android.common.adapter;
+
+import com.productlayer.core.beans.BaseObject;
+import com.productlayer.core.beans.Opine;
+import com.productlayer.core.beans.Product;
+import com.productlayer.core.beans.ProductImage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps object IDs, product IDs and GTINs of timeline items to their positions in the timeline to look up the
+ * items affected by an update without scanning the whole timeline.
+ *
+ * Items are indexed by sequence number so that prepending or appending a page of items only touches the
+ * entries of the new items. Any other modification of the list of items requires a {@link #rebuild}.
+ */
+class FeedItemIndex {
+
+    private final Map<String, List<Integer>> byId = new HashMap<String, List<Integer>>();
+    private final Map<String, List<Integer>> byProductId = new HashMap<String, List<Integer>>();
+    private final Map<String, List<Integer>> byGtin = new HashMap<String, List<Integer>>();
+
+    // the sequence number of the item at position 0
+    private int firstSeq;
+    private int size;
+
+    /**
+     * Clears the index and indexes the specified items.
+     *
+     * @param items
+     *         the complete list of timeline items
+     */
+    public void rebuild(List<BaseObject> items) {
+        byId.clear();
+        byProductId.clear();
+        byGtin.clear();
+        firstSeq = 0;
+        size = 0;
+        append(items);
+    }
+
+    /**
+     * Indexes a page of items added to the end of the timeline.
+     *
+     * @param items
+     *         the items appended
+     */
+    public void append(List<BaseObject> items) {
+        for (BaseObject item : items) {
+            put(item, firstSeq + size, false);
+            size++;
+        }
+    }
+
+    /**
+     * Indexes a page of items added to the start of the timeline.
+     *
+     * @param items
+     *         the items prepended
+     */
+    public void prepend(List<BaseObject> items) {
+        // insert in reverse for the sequence numbers of each key to stay in ascending order
+        for (int i = items.size() - 1; i >= 0; i--) {
+            firstSeq--;
+            size++;
+            put(items.get(i), firstSeq, true);
+        }
+    }
+
+    /**
+     * @return the positions of the items with the specified ID in ascending order
+     */
+    public List<Integer> positionsOfId(String id) {
+        return positions(byId, id);
+    }
+
+    /**
+     * @return the positions of products with the specified ID and of opinions and images of these products in
+     * ascending order
+     */
+    public List<Integer> positionsOfProduct(String productId) {
+        return positions(byProductId, productId);
+    }
+
+    /**
+     * @return the positions of the items referring to the product with the specified GTIN in ascending order
+     */
+    public List<Integer> positionsOfGtin(String gtin) {
+        return positions(byGtin, gtin);
+    }
+
+    private void put(BaseObject item, int seq, boolean first) {
+        String productId = null;
+        String gtin = null;
+        if (item instanceof Product) {
+            productId = item.getId();
+            gtin = ((Product) item).getGtin();
+        } else if (item instanceof Opine) {
+            Product product = ((Opine) item).getProduct();
+            productId = product == null ? null : product.getId();
+            gtin = ((Opine) item).getGtin();
+        } else if (item instanceof ProductImage) {
+            Product product = ((ProductImage) item).getProduct();
+            productId = product == null ? null : product.getId();
+            gtin = ((ProductImage) item).getGtin();
+        }
+        put(byId, item.getId(), seq, first);
+        put(byProductId, productId, seq, first);
+        put(byGtin, gtin, seq, first);
+    }
+
+    private static void put(Map<String, List<Integer>> map, String key, int seq, boolean first) {
+        if (key == null) {
+            return;
+        }
+        List<Integer> seqs = map.get(key);
+        if (seqs == null) {
+            seqs = new ArrayList<Integer>(1);
+            map.put(key, seqs);
+        }
+        if (first) {
+            seqs.add(0, seq);
+        } else {
+            seqs.add(seq);
+        }
+    }
+
+    private List<Integer> positions(Map<String, List<Integer>> map, String key) {
+        List<Integer> seqs = key == null ? null : map.get(key);
+        if (seqs == null) {
+            return Collections.emptyList();
+        }
+        List<Integer> positions = new ArrayList<Integer>(seqs.size());
+        for (int seq : seqs) {
+            positions.add(seq - firstSeq);
+        }
+        return positions;
+    }
+}
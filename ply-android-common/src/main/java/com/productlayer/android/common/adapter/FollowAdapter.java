@@ -32,6 +32,7 @@ import android.view.ViewGroup;
 
 import com.productlayer.android.common.handler.NavigationHandler;
 import com.productlayer.android.common.handler.UserHandler;
+import com.productlayer.android.common.util.StableIds;
 import com.productlayer.android.common.view.UserPreview;
 import com.productlayer.android.sdk.PLYAndroid;
 import com.productlayer.android.sdk.services.ImageService;
@@ -113,7 +114,7 @@ public class FollowAdapter extends RecyclerView.Adapter<FollowAdapter.UserPrevie
 
     @Override
     public long getItemId(int position) {
-        return users[position].getId().hashCode();
+        return StableIds.get(users[position].getId());
     }
 
     /**
@@ -34,6 +34,8 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import com.productlayer.android.common.R;
+import com.productlayer.android.common.global.LocalizationCache;
+import com.productlayer.android.sdk.PLYAndroid;
 import com.productlayer.core.beans.Category;
 import com.productlayer.core.beans.Product;
 
@@ -71,12 +73,15 @@ public class ProductDetailsAdapter extends RecyclerView.Adapter<ProductDetailsAd
      *
      * @param context
      *         the application context
+     * @param client
+     *         the PLYAndroid client whose language to translate category keys to
      * @param product
      *         the product to show properties of
      * @param categories
-     *         categories to extract translated names of keys from
+     *         categories to extract translated names of keys from if the category dictionary has not been
+     *         loaded
      */
-    public ProductDetailsAdapter(Context context, Product product, Category[] categories) {
+    public ProductDetailsAdapter(Context context, PLYAndroid client, Product product, Category[] categories) {
         setHasStableIds(true);
         fields = new ArrayList<AbstractMap.SimpleImmutableEntry<String, String>>();
         try {
@@ -86,8 +91,14 @@ public class ProductDetailsAdapter extends RecyclerView.Adapter<ProductDetailsAd
                 String content = (String) f.get(product);
                 if (content != null && !content.isEmpty()) {
                     String key = context.getResources().getString(fieldLabels.get(fieldName));
-                    if (fieldName.equals("category") && categories != null) {
-                        content = getCategoryName(categories, content);
+                    if (fieldName.equals("category")) {
+                        String name = LocalizationCache.getCategoryName(context, client, content);
+                        if (name == null && categories != null) {
+                            name = getCategoryName(categories, content);
+                        }
+                        if (name != null) {
+                            content = name;
+                        }
                     }
                     fields.add(new AbstractMap.SimpleImmutableEntry<String, String>(key, content));
                 }
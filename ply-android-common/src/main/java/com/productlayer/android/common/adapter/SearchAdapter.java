@@ -32,6 +32,8 @@ import android.view.ViewGroup;
 
 import com.productlayer.android.common.global.LoadingIndicator;
 import com.productlayer.android.common.handler.NavigationHandler;
+import com.productlayer.android.common.util.ProgressiveImageLoader;
+import com.productlayer.android.common.util.StableIds;
 import com.productlayer.android.common.view.SearchResult;
 import com.productlayer.android.sdk.PLYAndroid;
 import com.productlayer.android.sdk.PLYCompletion;
@@ -216,15 +218,19 @@ public class SearchAdapter extends RecyclerView.Adapter<SearchAdapter.SearchResu
         Product product = products.get(position);
         ProductImage productImage = product.getDefaultImage();
         String productImageUrl = null;
+        String productThumbnailUrl = null;
         int[] productDominantColor = null;
         if (productImage != null) {
             float widthToHeightRatio = productImage.getWidth() / (float) productImage.getHeight();
             int imageHeightPx = Math.min(Math.round(imageWidthPx / widthToHeightRatio), imageMaxHeightPx);
             productImageUrl = ImageService.getImageForSizeURL(client, productImage.getImageFileId(),
                     imageWidthPx, imageHeightPx, true, null);
+            productThumbnailUrl = ProgressiveImageLoader.getThumbnailURL(client, productImage
+                    .getImageFileId(), imageWidthPx, imageHeightPx);
             productDominantColor = productImage.getDominantColor();
         }
-        holder.searchResult.setSearchResult(product, productImageUrl, productDominantColor);
+        holder.searchResult.setSearchResult(product, productImageUrl, productThumbnailUrl,
+                productDominantColor);
     }
 
     @Override
@@ -234,7 +240,7 @@ public class SearchAdapter extends RecyclerView.Adapter<SearchAdapter.SearchResu
 
     @Override
     public long getItemId(int position) {
-        return products.get(position).hashCode();
+        return StableIds.get(products.get(position));
     }
 
     /**
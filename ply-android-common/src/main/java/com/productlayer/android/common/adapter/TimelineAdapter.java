@@ -26,15 +26,22 @@
 package com.productlayer.android.common.adapter;
 
 import android.app.Activity;
+import android.content.Context;
 import android.support.v7.widget.RecyclerView;
 import android.util.Log;
 import android.view.ViewGroup;
 
 import com.productlayer.android.common.R;
+import com.productlayer.android.common.global.AvatarCache;
 import com.productlayer.android.common.global.LoadingIndicator;
+import com.productlayer.android.common.global.TimelineSnapshot;
 import com.productlayer.android.common.handler.DataChangeListener;
+import com.productlayer.android.common.handler.ImagePrefetchScrollListener;
 import com.productlayer.android.common.handler.NavigationHandler;
 import com.productlayer.android.common.handler.UserHandler;
+import com.productlayer.android.common.util.ListDiff;
+import com.productlayer.android.common.util.ProgressiveImageLoader;
+import com.productlayer.android.common.util.StableIds;
 import com.productlayer.android.common.view.ImagePreview;
 import com.productlayer.android.common.view.OpinionView;
 import com.productlayer.android.common.view.ProductPreview;
@@ -50,16 +57,23 @@ import com.productlayer.core.beans.ProductImage;
 import com.productlayer.core.beans.ResultSetWithCursor;
 import com.productlayer.core.beans.SimpleUserInfo;
 
+import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Provides the data feed of product information created by the ProductLayer community as an adapter to be
  * attached to a RecyclerView.
  */
-public class TimelineAdapter extends RecyclerView.Adapter<TimelineAdapter.FeedItemHolder> {
+public class TimelineAdapter extends RecyclerView.Adapter<TimelineAdapter.FeedItemHolder> implements
+        ImagePrefetchScrollListener.ImageUrlProvider {
+
+    private static final int DEFAULT_WINDOW_PAGES = 10;
+    private static final int SNAPSHOT_PAGES = 2;
 
     private final Activity activity;
     private final NavigationHandler navigationHandler;
@@ -77,6 +91,13 @@ public class TimelineAdapter extends RecyclerView.Adapter<TimelineAdapter.FeedIt
 
     private List<BaseObject> feedItems = new ArrayList<BaseObject>();
     private String[] feedUrls = new String[TimeRel.values().length];
+    private final FeedItemIndex feedItemIndex = new FeedItemIndex();
+    // the pages of items currently held, from the top to the bottom of the timeline
+    private final LinkedList<Page> pages = new LinkedList<Page>();
+    private int windowPages = DEFAULT_WINDOW_PAGES;
+    // the URLs of the pages dropped from the top and the bottom of the timeline, the nearest one first
+    private final LinkedList<String> evictedTop = new LinkedList<String>();
+    private final LinkedList<String> evictedBottom = new LinkedList<String>();
 
     // listeners would be garbage-collected without reference
     private DataChangeListener.OnProductCreateListener onProductCreateListener;
@@ -89,7 +110,8 @@ public class TimelineAdapter extends RecyclerView.Adapter<TimelineAdapter.FeedIt
     private AtomicBoolean loading = new AtomicBoolean(false);
 
     /**
-     * Creates the social feed adapter and starts to retrieve the first batch of data.
+     * Creates the social feed adapter and starts to retrieve the first batch of data. Items saved on the last
+     * retrieval are displayed until the retrieval completes.
      *
      * Use {@link #setItemDimensions} before attaching the adapter to a view. Use {@link #setupListeners} and
      * {@link #destroyListeners} to listen for data changes by the user.
@@ -119,7 +141,7 @@ public class TimelineAdapter extends RecyclerView.Adapter<TimelineAdapter.FeedIt
         this.loadItems = loadItems;
         this.settings = settings;
         setHasStableIds(true);
-        retrieveFeedItems(TimeRel.INITIAL);
+        restoreSnapshot();
     }
 
     /**
@@ -165,25 +187,6 @@ public class TimelineAdapter extends RecyclerView.Adapter<TimelineAdapter.FeedIt
         return 0;
     }
 
-    /**
-     * Removes an item with the specified ID of a list of feed items if found.
-     *
-     * @param items
-     *         the list of feed items
-     * @param id
-     *         the ID of the object to remove
-     */
-    private static void filterItem(Iterable<BaseObject> items, String id) {
-        Iterator<BaseObject> it = items.iterator();
-        while (it.hasNext()) {
-            BaseObject obj = it.next();
-            if (id.equals(obj.getId())) {
-                it.remove();
-                break;
-            }
-        }
-    }
-
     /**
      * Sets the fixed width of items and the maximum height of images. Images are retrieved in {@link
      * #onBindViewHolder(FeedItemHolder, int)} in the dimensions set here.
@@ -201,6 +204,17 @@ public class TimelineAdapter extends RecyclerView.Adapter<TimelineAdapter.FeedIt
         this.avatarSizePx = avatarSizePx;
     }
 
+    /**
+     * Sets the maximum amount of pages of items to hold. Once exceeded, the pages farthest from the page just
+     * retrieved are dropped to be retrieved again when scrolling back to them.
+     *
+     * @param windowPages
+     *         the maximum amount of pages of items to hold
+     */
+    public void setWindowPages(int windowPages) {
+        this.windowPages = Math.max(2, windowPages);
+    }
+
     /**
      * Retrieves items from the timeline.
      *
@@ -214,12 +228,46 @@ public class TimelineAdapter extends RecyclerView.Adapter<TimelineAdapter.FeedIt
             // already retrieving items
             return false;
         }
+        startRetrieval(timeRel);
+        return true;
+    }
+
+    /**
+     * Starts retrieving items from the timeline. Must only be called while {@code loading} is set, which is
+     * reset once the retrieval has finished.
+     *
+     * @param timeRel
+     *         whether to retrieve the initial batch of items, or earlier or later items
+     */
+    private void startRetrieval(TimeRel timeRel) {
         final TimeRel finalTimeRel = feedItems.isEmpty() ? TimeRel.INITIAL : timeRel;
+        // restore a dropped page if there is one in the direction of the retrieval, see Page for the cursors
+        LinkedList<String> evicted = finalTimeRel == TimeRel.EARLIER ? evictedTop : (finalTimeRel == TimeRel
+                .LATER ? evictedBottom : null);
+        final boolean restoresEvicted = evicted != null && !evicted.isEmpty();
+        String url = null;
+        if (restoresEvicted) {
+            url = evicted.peek();
+        }
+        // a page whose own URL is unknown (restored from a snapshot) is retrieved through the cursor instead
+        final boolean sincePage = finalTimeRel == TimeRel.EARLIER && url == null;
+        if (url == null && finalTimeRel != TimeRel.INITIAL) {
+            url = feedUrls[finalTimeRel.value];
+        }
         Log.d(getClass().getSimpleName(), "Retrieving " + finalTimeRel.name() + " timeline ...");
         LoadingIndicator.show();
+        // item updates are ignored while loading so the displayed items stay the same until the result is in
+        final List<BaseObject> oldItems = finalTimeRel == TimeRel.INITIAL ? new ArrayList<BaseObject>(
+                feedItems) : null;
         PLYCompletion<ResultSetWithCursor> completion = new PLYCompletion<ResultSetWithCursor>() {
+            private ListDiff diff;
+
             @Override
             public void onSuccess(ResultSetWithCursor result) {
+                if (oldItems != null) {
+                    // compare a reloaded timeline to the displayed one off the UI thread
+                    diff = ListDiff.calculate(oldItems, result.getResults());
+                }
             }
 
             @Override
@@ -227,37 +275,69 @@ public class TimelineAdapter extends RecyclerView.Adapter<TimelineAdapter.FeedIt
                 Log.d("FeedCallback", "Received ResultSetWithCursor for " + finalTimeRel.name() + " " +
                         retrieval.type().name() + " timeline");
                 List<BaseObject> newItems = result.getResults();
+                boolean reload = false;
                 // if (retrieval.type() == TimelineType.PRODUCT) {
                 // filter the default product image since it's displayed and can be opened in the app bar
                 // TODO filter default image and make it clickable in the app bar instead (prob: updates)
                 // }
                 int newItemCnt = newItems.size();
                 if (newItemCnt != 0) {
+                    preloadAvatars(newItems);
                     int curItemCnt = feedItems.size();
                     feedUrls[TimeRel.INITIAL.value] = result.getThisResultsUrl();
                     if (finalTimeRel == TimeRel.INITIAL) {
                         feedItems = newItems;
+                        feedItemIndex.rebuild(feedItems);
+                        pages.clear();
+                        pages.add(new Page(result, newItemCnt));
+                        evictedTop.clear();
+                        evictedBottom.clear();
                         feedUrls[TimeRel.EARLIER.value] = result.getSinceThisResultsUrl();
                         feedUrls[TimeRel.LATER.value] = result.getUntilThisResultsUrl();
-                        notifyDataSetChanged();
+                        dispatchDiff(diff);
+                        saveSnapshot();
                     } else if (finalTimeRel == TimeRel.EARLIER) {
+                        if (restoresEvicted) {
+                            evictedTop.pop();
+                        }
+                        feedItemIndex.prepend(newItems);
+                        pages.addFirst(new Page(result, newItemCnt));
                         newItems.addAll(feedItems);
                         feedItems = newItems;
                         feedUrls[TimeRel.EARLIER.value] = result.getSinceThisResultsUrl();
                         notifyItemRangeInserted(0, newItemCnt);
+                        trimWindow(false);
+                        saveSnapshot();
+                        if (sincePage && newItemCnt >= loadItems) {
+                            // items between the page and the previous top may be missing
+                            reload = true;
+                        }
                     } else {
+                        if (restoresEvicted) {
+                            evictedBottom.pop();
+                        }
+                        feedItemIndex.append(newItems);
+                        pages.addLast(new Page(result, newItemCnt));
                         feedItems.addAll(newItems);
                         feedUrls[TimeRel.LATER.value] = result.getUntilThisResultsUrl();
                         notifyItemRangeInserted(curItemCnt, newItemCnt);
+                        trimWindow(true);
                     }
                 } else {
                     if (finalTimeRel == TimeRel.INITIAL) {
                         feedItems.clear();
+                        feedItemIndex.rebuild(feedItems);
+                        pages.clear();
                         feedUrls[TimeRel.EARLIER.value] = null;
                         feedUrls[TimeRel.LATER.value] = null;
-                        notifyDataSetChanged();
+                        dispatchDiff(diff);
                     }
                 }
+                if (reload) {
+                    // keep loading so that no item update gets in between
+                    startRetrieval(TimeRel.INITIAL);
+                    return;
+                }
                 loading.set(false);
                 LoadingIndicator.hide();
             }
@@ -270,14 +350,11 @@ public class TimelineAdapter extends RecyclerView.Adapter<TimelineAdapter.FeedIt
                 LoadingIndicator.hide();
             }
         };
-        if (finalTimeRel == TimeRel.EARLIER) {
-            TimelineService.getTimelineFromURL(client, feedUrls[TimeRel.EARLIER.value], completion);
-        } else if (finalTimeRel == TimeRel.LATER) {
-            TimelineService.getTimelineFromURL(client, feedUrls[TimeRel.LATER.value], completion);
-        } else {
+        if (finalTimeRel == TimeRel.INITIAL) {
             retrieval.initiate(client, loadItems, settings, completion);
+        } else {
+            TimelineService.getTimelineFromURL(client, url, completion);
         }
-        return true;
     }
 
     @Override
@@ -305,41 +382,104 @@ public class TimelineAdapter extends RecyclerView.Adapter<TimelineAdapter.FeedIt
             Product product = (Product) item;
             ProductImage productImage = product.getDefaultImage();
             String productImageUrl = null;
+            String productThumbnailUrl = null;
             int[] productDominantColor = null;
             if (productImage != null) {
-                float widthToHeightRatio = productImage.getWidth() / (float) productImage.getHeight();
-                int imageHeightPx = Math.min(Math.round(itemWidthPx / widthToHeightRatio), imageMaxHeightPx);
+                int imageHeightPx = calcImageHeightPx(productImage);
                 productImageUrl = ImageService.getImageForSizeURL(client, productImage.getImageFileId(),
                         itemWidthPx, imageHeightPx, true, null);
+                productThumbnailUrl = ProgressiveImageLoader.getThumbnailURL(client, productImage
+                        .getImageFileId(), itemWidthPx, imageHeightPx);
                 productDominantColor = productImage.getDominantColor();
             }
             SimpleUserInfo author = product.getCreatedBy();
-            String authorImageUrl = ImageService.getUserAvatarURL(client, author.getId(), avatarSizePx);
-            holder.productPreview.setProduct(product, productImageUrl, productDominantColor, author,
-                    authorImageUrl, userHandler, client);
+            String authorImageUrl = AvatarCache.getAvatarURL(client, author.getId(), avatarSizePx);
+            holder.productPreview.setProduct(product, productImageUrl, productThumbnailUrl,
+                    productDominantColor, author, authorImageUrl, userHandler, client);
         } else if (item instanceof Opine) {
             // OPINION
             Opine opinion = (Opine) item;
             SimpleUserInfo author = opinion.getCreatedBy();
-            String authorImageUrl = ImageService.getUserAvatarURL(client, author.getId(), avatarSizePx);
+            String authorImageUrl = AvatarCache.getAvatarURL(client, author.getId(), avatarSizePx);
             holder.opinionView.setOpinion(opinion, author, authorImageUrl, userHandler, client);
         } else if (item instanceof ProductImage) {
             // IMAGE
             ProductImage productImage = (ProductImage) item;
-            float widthToHeightRatio = productImage.getWidth() / (float) productImage.getHeight();
-            int imageHeightPx = Math.min(Math.round(itemWidthPx / widthToHeightRatio), imageMaxHeightPx);
+            int imageHeightPx = calcImageHeightPx(productImage);
             String productImageUrl = ImageService.getImageForSizeURL(client, productImage.getImageFileId(),
                     itemWidthPx, imageHeightPx, true, null);
+            String productThumbnailUrl = ProgressiveImageLoader.getThumbnailURL(client, productImage
+                    .getImageFileId(), itemWidthPx, imageHeightPx);
             SimpleUserInfo author = productImage.getCreatedBy();
-            String authorImageUrl = ImageService.getUserAvatarURL(client, author.getId(), avatarSizePx);
-            holder.imagePreview.setImage(productImage, productImageUrl, productImage.getDominantColor(),
-                    author, authorImageUrl, userHandler);
+            String authorImageUrl = AvatarCache.getAvatarURL(client, author.getId(), avatarSizePx);
+            holder.imagePreview.setImage(productImage, productImageUrl, productThumbnailUrl, productImage
+                    .getDominantColor(), author, authorImageUrl, userHandler);
         } else {
             // UNSUPPORTED
             throw new RuntimeException("Unsupported item in timeline: " + item.getBeautifiedClass());
         }
     }
 
+    /**
+     * Starts loading the avatars of the authors of a page of items so they are ready on binding the items.
+     *
+     * @param items
+     *         the items just received
+     */
+    private void preloadAvatars(List<BaseObject> items) {
+        Set<String> authorIDs = new LinkedHashSet<String>();
+        for (BaseObject item : items) {
+            SimpleUserInfo author = null;
+            if (item instanceof Product) {
+                author = ((Product) item).getCreatedBy();
+            } else if (item instanceof Opine) {
+                author = ((Opine) item).getCreatedBy();
+            } else if (item instanceof ProductImage) {
+                author = ((ProductImage) item).getCreatedBy();
+            }
+            if (author != null) {
+                authorIDs.add(author.getId());
+            }
+        }
+        AvatarCache.preload(activity.getApplicationContext(), client, authorIDs, avatarSizePx);
+    }
+
+    /**
+     * Builds the URL of the full image displayed by the item at the specified position, matching the URL
+     * requested on binding the item.
+     *
+     * @param position
+     *         the position of the item in the feed
+     * @return the URL of the item's image or null if the item does not display one
+     */
+    @Override
+    public String getImageUrl(int position) {
+        if (position < 0 || position >= feedItems.size()) {
+            return null;
+        }
+        BaseObject item = feedItems.get(position);
+        ProductImage productImage = null;
+        if (item instanceof Product) {
+            productImage = ((Product) item).getDefaultImage();
+        } else if (item instanceof ProductImage) {
+            productImage = (ProductImage) item;
+        }
+        if (productImage == null) {
+            return null;
+        }
+        return ImageService.getImageForSizeURL(client, productImage.getImageFileId(), itemWidthPx,
+                calcImageHeightPx(productImage), true, null);
+    }
+
+    /**
+     * @return the height in px to request an image in to fit the item width without exceeding the maximum
+     * image height
+     */
+    private int calcImageHeightPx(ProductImage productImage) {
+        float widthToHeightRatio = productImage.getWidth() / (float) productImage.getHeight();
+        return Math.min(Math.round(itemWidthPx / widthToHeightRatio), imageMaxHeightPx);
+    }
+
     @Override
     public int getItemCount() {
         return feedItems.size();
@@ -347,7 +487,7 @@ public class TimelineAdapter extends RecyclerView.Adapter<TimelineAdapter.FeedIt
 
     @Override
     public long getItemId(int position) {
-        return feedItems.get(position).hashCode();
+        return StableIds.get(feedItems.get(position));
     }
 
     @Override
@@ -364,6 +504,111 @@ public class TimelineAdapter extends RecyclerView.Adapter<TimelineAdapter.FeedIt
         }
     }
 
+    /**
+     * Displays the items of the snapshot saved on the last retrieval of this timeline, if any, and retrieves
+     * the items added since. Retrieves the initial set of items if there is no snapshot.
+     */
+    private void restoreSnapshot() {
+        loading.set(true);
+        final Context context = activity.getApplicationContext();
+        final TimelineType type = retrieval.type();
+        final String identifier = retrieval.identifier();
+        final int snapshotSettings = settings;
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final TimelineSnapshot snapshot = TimelineSnapshot.load(context, type, identifier,
+                        snapshotSettings);
+                activity.runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        // loading stays set until the follow-up retrieval has finished so that no item update
+                        // reads the index while it is rebuilt
+                        if (snapshot == null || snapshotSettings != settings) {
+                            startRetrieval(TimeRel.INITIAL);
+                            return;
+                        }
+                        feedItems = snapshot.items;
+                        feedItemIndex.rebuild(feedItems);
+                        pages.clear();
+                        pages.addAll(snapshot.pages);
+                        evictedTop.clear();
+                        evictedBottom.clear();
+                        feedUrls[TimeRel.EARLIER.value] = pages.getFirst().sinceUrl;
+                        feedUrls[TimeRel.LATER.value] = pages.getLast().untilUrl;
+                        notifyItemRangeInserted(0, feedItems.size());
+                        startRetrieval(TimeRel.EARLIER);
+                    }
+                });
+            }
+        }).start();
+    }
+
+    /**
+     * Saves the first pages of items to be displayed on the next start if the top of the timeline is held.
+     */
+    private void saveSnapshot() {
+        if (!evictedTop.isEmpty() || pages.isEmpty()) {
+            return;
+        }
+        ArrayList<Page> snapshotPages = new ArrayList<Page>(pages.subList(0, Math.min(pages.size(),
+                SNAPSHOT_PAGES)));
+        int itemCnt = 0;
+        for (Page page : snapshotPages) {
+            itemCnt += page.itemCnt;
+        }
+        TimelineSnapshot snapshot = new TimelineSnapshot(retrieval.identifier(), settings, new
+                ArrayList<BaseObject>(feedItems.subList(0, itemCnt)), snapshotPages);
+        TimelineSnapshot.save(activity.getApplicationContext(), retrieval.type(), snapshot);
+    }
+
+    /**
+     * Drops pages of items from the end of the timeline opposite to the page just retrieved until no more
+     * than the maximum amount of pages is held. The URLs of the dropped pages are kept to retrieve exactly
+     * these pages again once the user scrolls back to them.
+     *
+     * @param fromTop
+     *         true to drop pages from the top of the timeline, false to drop pages from the bottom
+     */
+    private void trimWindow(boolean fromTop) {
+        if (pages.size() <= windowPages) {
+            return;
+        }
+        while (pages.size() > windowPages) {
+            if (fromTop) {
+                Page page = pages.removeFirst();
+                evictedTop.push(page.thisUrl);
+                feedItems.subList(0, page.itemCnt).clear();
+                notifyItemRangeRemoved(0, page.itemCnt);
+                feedUrls[TimeRel.EARLIER.value] = pages.getFirst().sinceUrl;
+            } else {
+                Page page = pages.removeLast();
+                evictedBottom.push(page.thisUrl);
+                int start = feedItems.size() - page.itemCnt;
+                feedItems.subList(start, feedItems.size()).clear();
+                notifyItemRangeRemoved(start, page.itemCnt);
+                feedUrls[TimeRel.LATER.value] = pages.getLast().untilUrl;
+            }
+        }
+        feedItemIndex.rebuild(feedItems);
+        Log.d(getClass().getSimpleName(), "Trimmed timeline to " + feedItems.size() + " items");
+    }
+
+    /**
+     * Notifies observers of the changes between the previously displayed and the reloaded items, animating
+     * only what has been inserted, removed, moved or changed.
+     *
+     * @param diff
+     *         the difference between the lists or null if it could not be calculated
+     */
+    private void dispatchDiff(ListDiff diff) {
+        if (diff == null) {
+            notifyDataSetChanged();
+        } else {
+            diff.dispatchTo(this);
+        }
+    }
+
     /**
      * Refreshes the timeline using new settings.
      *
@@ -418,52 +663,23 @@ public class TimelineAdapter extends RecyclerView.Adapter<TimelineAdapter.FeedIt
                     // ignore the update if the feed is currently working
                     return;
                 }
-                int cntFeedItems = feedItems.size();
-                for (int i = 0; i < cntFeedItems; i++) {
-                    BaseObject baseObject = feedItems.get(i);
-                    if (baseObject instanceof Product) {
-                        Product p = (Product) baseObject;
-                        if (p.getId().equals(product.getId())) {
-                            final int position = i;
-                            activity.runOnUiThread(new Runnable() {
-                                @Override
-                                public void run() {
-                                    feedItems.set(position, product);
-                                    notifyItemChanged(position);
-                                }
-                            });
-                        }
-                    } else if (baseObject instanceof Opine) {
-                        // update the product contained in opinions
-                        final Opine o = (Opine) baseObject;
-                        if (o.getProduct().getId().equals(product.getId())) {
-                            final int position = i;
-                            activity.runOnUiThread(new Runnable() {
-                                @Override
-                                public void run() {
-                                    o.setProduct(product);
-                                    notifyItemChanged(position);
-                                }
-                            });
-                        }
-                    } else if (baseObject instanceof ProductImage) {
-                        // update the product contained in product images
-                        final ProductImage pi = (ProductImage) baseObject;
-                        if (pi.getProduct().getId().equals(product.getId())) {
-                            final int position = i;
-                            activity.runOnUiThread(new Runnable() {
-                                @Override
-                                public void run() {
-                                    pi.setProduct(product);
-                                    notifyItemChanged(position);
-                                }
-                            });
-                        }
-                    }
-                }
+                final List<Integer> positions = feedItemIndex.positionsOfProduct(product.getId());
                 activity.runOnUiThread(new Runnable() {
                     @Override
                     public void run() {
+                        for (int position : positions) {
+                            BaseObject baseObject = feedItems.get(position);
+                            if (baseObject instanceof Product) {
+                                feedItems.set(position, product);
+                            } else if (baseObject instanceof Opine) {
+                                // update the product contained in opinions
+                                ((Opine) baseObject).setProduct(product);
+                            } else if (baseObject instanceof ProductImage) {
+                                // update the product contained in product images
+                                ((ProductImage) baseObject).setProduct(product);
+                            }
+                            notifyItemChanged(position);
+                        }
                         loading.set(false);
                     }
                 });
@@ -506,31 +722,22 @@ public class TimelineAdapter extends RecyclerView.Adapter<TimelineAdapter.FeedIt
                     // ignore the update if the feed is currently working
                     return;
                 }
-                int cntFeedItems = feedItems.size();
-                for (int i = 0; i < cntFeedItems; i++) {
-                    BaseObject baseObject = feedItems.get(i);
-                    if (baseObject instanceof Opine) {
-                        Opine o = (Opine) baseObject;
-                        if (o.getId().equals(opinion.getId())) {
-                            final int position = i;
-                            if (opinion.getProduct() == null) {
-                                // an updated opinion may not return the product it belongs to - re-set
-                                opinion.setProduct(o.getProduct());
-                            }
-                            activity.runOnUiThread(new Runnable() {
-                                @Override
-                                public void run() {
-                                    feedItems.set(position, opinion);
-                                    notifyItemChanged(position);
-                                }
-                            });
-                            break;
-                        }
-                    }
-                }
+                final List<Integer> positions = feedItemIndex.positionsOfId(opinion.getId());
                 activity.runOnUiThread(new Runnable() {
                     @Override
                     public void run() {
+                        for (int position : positions) {
+                            BaseObject baseObject = feedItems.get(position);
+                            if (baseObject instanceof Opine) {
+                                if (opinion.getProduct() == null) {
+                                    // an updated opinion may not return the product it belongs to - re-set
+                                    opinion.setProduct(((Opine) baseObject).getProduct());
+                                }
+                                feedItems.set(position, opinion);
+                                notifyItemChanged(position);
+                                break;
+                            }
+                        }
                         loading.set(false);
                     }
                 });
@@ -554,29 +761,21 @@ public class TimelineAdapter extends RecyclerView.Adapter<TimelineAdapter.FeedIt
                         // ignore the update if the feed is currently working
                         return;
                     }
-                    int cntFeedItems = feedItems.size();
-                    for (int i = 0; i < cntFeedItems; i++) {
-                        BaseObject baseObject = feedItems.get(i);
-                        if (baseObject instanceof Product) {
-                            Product p = (Product) baseObject;
-                            if (p.getGtin().equals(image.getGtin())) {
-                                if (triggersDefaultImageChange(p.getDefaultImage(), image) == 1) {
-                                    // new image is the new default
-                                    p.setDefaultImage(image);
-                                    final int position = i;
-                                    activity.runOnUiThread(new Runnable() {
-                                        @Override
-                                        public void run() {
-                                            notifyItemChanged(position);
-                                        }
-                                    });
-                                }
-                            }
-                        }
-                    }
+                    final List<Integer> positions = feedItemIndex.positionsOfGtin(image.getGtin());
                     activity.runOnUiThread(new Runnable() {
                         @Override
                         public void run() {
+                            for (int position : positions) {
+                                BaseObject baseObject = feedItems.get(position);
+                                if (baseObject instanceof Product) {
+                                    Product p = (Product) baseObject;
+                                    if (triggersDefaultImageChange(p.getDefaultImage(), image) == 1) {
+                                        // new image is the new default
+                                        p.setDefaultImage(image);
+                                        notifyItemChanged(position);
+                                    }
+                                }
+                            }
                             loading.set(false);
                         }
                     });
@@ -597,70 +796,29 @@ public class TimelineAdapter extends RecyclerView.Adapter<TimelineAdapter.FeedIt
                     // ignore the update if the feed is currently working
                     return;
                 }
-                int cntFeedItems = feedItems.size();
-                for (int i = 0; i < cntFeedItems; i++) {
-                    BaseObject baseObject = feedItems.get(i);
-                    if (baseObject instanceof ProductImage) {
-                        ProductImage img = (ProductImage) baseObject;
-                        if (img.getId().equals(image.getId())) {
-                            final int position = i;
-                            if (image.getProduct() == null) {
-                                // an updated image may not return the product it belongs to - re-set
-                                image.setProduct(img.getProduct());
-                            }
-                            activity.runOnUiThread(new Runnable() {
-                                @Override
-                                public void run() {
-                                    feedItems.set(position, image);
-                                    notifyItemChanged(position);
+                final List<Integer> imagePositions = feedItemIndex.positionsOfId(image.getId());
+                final List<Integer> gtinPositions = feedItemIndex.positionsOfGtin(image.getGtin());
+                activity.runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int position : imagePositions) {
+                            BaseObject baseObject = feedItems.get(position);
+                            if (baseObject instanceof ProductImage) {
+                                if (image.getProduct() == null) {
+                                    // an updated image may not return the product it belongs to - re-set
+                                    image.setProduct(((ProductImage) baseObject).getProduct());
                                 }
-                            });
+                                feedItems.set(position, image);
+                                notifyItemChanged(position);
+                            }
                         }
-                    } else if (baseObject instanceof Product) {
-                        final Product p = (Product) baseObject;
-                        if (p.getGtin().equals(image.getGtin())) {
-                            final int position = i;
-                            int defaultImageChange = triggersDefaultImageChange(p.getDefaultImage(), image);
-                            Log.v("TimelineICallback", "Triggers default image change: " +
-                                    defaultImageChange);
-                            if (defaultImageChange == 1) {
-                                // updated image is the new default
-                                p.setDefaultImage(image);
-                                activity.runOnUiThread(new Runnable() {
-                                    @Override
-                                    public void run() {
-                                        notifyItemChanged(position);
-                                    }
-                                });
-                            } else if (defaultImageChange == -1 && p.getImageCount() > 1) {
-                                // updated image was the default before but may not be anymore
-                                ProductService.getProductForGtin(client, p.getGtin(), null, false, null,
-                                        new PLYCompletion<Product>() {
-                                            @Override
-                                            public void onSuccess(Product result) {
-                                            }
-
-                                            @Override
-                                            public void onPostSuccess(Product result) {
-                                                ProductImage newDefaultImage = result.getDefaultImage();
-                                                p.setDefaultImage(newDefaultImage);
-                                                notifyItemChanged(position);
-                                            }
-
-                                            @Override
-                                            public void onError(PLYAndroid.QueryError error) {
-                                                Log.w(TimelineAdapter.class.getSimpleName(), error
-                                                        .getMessage());
-                                            }
-                                        });
+                        for (int position : gtinPositions) {
+                            BaseObject baseObject = feedItems.get(position);
+                            if (baseObject instanceof Product) {
+                                updateDefaultImage((Product) baseObject, position, image);
                             }
+                            // TODO update images in opinions once implemented
                         }
-                    }
-                    // TODO update images in opinions once implemented
-                }
-                activity.runOnUiThread(new Runnable() {
-                    @Override
-                    public void run() {
                         loading.set(false);
                     }
                 });
@@ -669,6 +827,46 @@ public class TimelineAdapter extends RecyclerView.Adapter<TimelineAdapter.FeedIt
         DataChangeListener.addOnImageUpdateListener(onImageUpdateListener);
     }
 
+    /**
+     * Updates the default image of a product item if an updated image makes or unmakes the default.
+     *
+     * @param p
+     *         the product displayed
+     * @param position
+     *         the position of the product in the feed
+     * @param image
+     *         the updated image of the product
+     */
+    private void updateDefaultImage(final Product p, final int position, ProductImage image) {
+        int defaultImageChange = triggersDefaultImageChange(p.getDefaultImage(), image);
+        Log.v("TimelineICallback", "Triggers default image change: " + defaultImageChange);
+        if (defaultImageChange == 1) {
+            // updated image is the new default
+            p.setDefaultImage(image);
+            notifyItemChanged(position);
+        } else if (defaultImageChange == -1 && p.getImageCount() > 1) {
+            // updated image was the default before but may not be anymore
+            ProductService.getProductForGtin(client, p.getGtin(), null, false, null, new
+                    PLYCompletion<Product>() {
+                @Override
+                public void onSuccess(Product result) {
+                }
+
+                @Override
+                public void onPostSuccess(Product result) {
+                    ProductImage newDefaultImage = result.getDefaultImage();
+                    p.setDefaultImage(newDefaultImage);
+                    notifyItemChanged(position);
+                }
+
+                @Override
+                public void onError(PLYAndroid.QueryError error) {
+                    Log.w(TimelineAdapter.class.getSimpleName(), error.getMessage());
+                }
+            });
+        }
+    }
+
     /**
      * Destroys listeners to stop being notified of any updates.
      */
@@ -705,6 +903,43 @@ public class TimelineAdapter extends RecyclerView.Adapter<TimelineAdapter.FeedIt
         }
     }
 
+    /**
+     * A page of items retrieved at once and the URLs to retrieve it and the items around it.
+     *
+     * The timeline holds the newest items at the top. The URLs of a page are used as follows:
+     * <ul>
+     * <li>{@code untilUrl} retrieves the page directly below the last item, so pages retrieved downwards are
+     * contiguous</li>
+     * <li>{@code sinceUrl} retrieves up to a page of the newest items above the first item - if the page is
+     * full, items between it and the first item may be missing and the timeline is reloaded instead</li>
+     * <li>{@code thisUrl} retrieves the same page again and is used to restore pages dropped to keep the
+     * window of held pages small, in either direction</li>
+     * </ul>
+     *
+     * Pages are persisted as part of {@link TimelineSnapshot}.
+     */
+    public static class Page implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        final int itemCnt;
+        final String thisUrl;
+        final String sinceUrl;
+        final String untilUrl;
+
+        private Page(ResultSetWithCursor result, int itemCnt) {
+            this(itemCnt, result.getThisResultsUrl(), result.getSinceThisResultsUrl(), result
+                    .getUntilThisResultsUrl());
+        }
+
+        private Page(int itemCnt, String thisUrl, String sinceUrl, String untilUrl) {
+            this.itemCnt = itemCnt;
+            this.thisUrl = thisUrl;
+            this.sinceUrl = sinceUrl;
+            this.untilUrl = untilUrl;
+        }
+    }
+
     /**
      * Enum for the type of timeline.
      */
@@ -25,6 +25,7 @@
 
 package com.productlayer.android.common.fragment;
 
+import android.app.Activity;
 import android.content.Context;
 import android.os.Bundle;
 import android.support.v7.widget.GridLayoutManager;
@@ -38,12 +39,17 @@ import com.productlayer.android.common.R;
 import com.productlayer.android.common.adapter.ProductDetailsAdapter;
 import com.productlayer.android.common.global.ObjectCache;
 import com.productlayer.android.common.handler.DataChangeListener;
+import com.productlayer.android.common.handler.HasPLYAndroidHolder;
+import com.productlayer.android.common.handler.PLYAndroidHolder;
 import com.productlayer.android.common.util.SystemBarsUtil;
+import com.productlayer.android.sdk.PLYAndroid;
 import com.productlayer.core.beans.Category;
 import com.productlayer.core.beans.Product;
 
 /**
  * Displays detailed information of a product.
+ *
+ * Requires the activity to implement {@link HasPLYAndroidHolder}.
  */
 public class ProductDetailsFragment extends NamedFragment {
 
@@ -53,6 +59,7 @@ public class ProductDetailsFragment extends NamedFragment {
 
     private RecyclerView detailsView;
 
+    private PLYAndroid client;
     private Product product;
 
     // listener would be garbage-collected without reference
@@ -96,6 +103,22 @@ public class ProductDetailsFragment extends NamedFragment {
 
     // FRAGMENT LIFECYCLE - START //
 
+    @Override
+    public void onAttach(Context context) {
+        super.onAttach(context);
+        Activity activity = getActivity();
+        PLYAndroidHolder plyAndroidHolder;
+        try {
+            plyAndroidHolder = ((HasPLYAndroidHolder) activity).getPLYAndroidHolder();
+        } catch (ClassCastException e) {
+            throw new ClassCastException(activity + " must implement HasPLYAndroidHolder");
+        }
+        client = plyAndroidHolder.getPLYAndroid();
+        if (client == null) {
+            throw new RuntimeException("PLYAndroid must bet set before creating fragment " + this);
+        }
+    }
+
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -125,9 +148,10 @@ public class ProductDetailsFragment extends NamedFragment {
     @Override
     public void onActivityCreated(Bundle savedInstanceState) {
         super.onActivityCreated(savedInstanceState);
-        // categories ought to be cached by the main activity
+        // categories and their translations ought to be warmed up by the activity (see ObjectCacheWarmUp)
         Category[] categories = ObjectCache.getCategories(getContext(), null, true, false);
-        ProductDetailsAdapter detailsAdapter = new ProductDetailsAdapter(getContext(), product, categories);
+        ProductDetailsAdapter detailsAdapter = new ProductDetailsAdapter(getContext(), client, product,
+                categories);
         detailsView.setAdapter(detailsAdapter);
         // TODO base the amount of columns on the width of the screen
         GridLayoutManager gridLayoutManager = new GridLayoutManager(getContext(), 1);
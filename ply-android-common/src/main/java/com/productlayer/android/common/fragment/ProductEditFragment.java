@@ -55,7 +55,10 @@ import com.productlayer.android.common.adapter.BrandOwnerAdapter;
 import com.productlayer.android.common.dialog.CategorySelectionDialogFragment;
 import com.productlayer.android.common.dialog.NewProductDialogFragment;
 import com.productlayer.android.common.global.LoadingIndicator;
+import com.productlayer.android.common.global.LocalizationCache;
 import com.productlayer.android.common.global.ObjectCache;
+import com.productlayer.android.common.global.ObjectCacheWarmUp;
+import com.productlayer.android.common.global.UploadQueue;
 import com.productlayer.android.common.handler.AppBarHandler;
 import com.productlayer.android.common.handler.DataChangeListener;
 import com.productlayer.android.common.handler.HasAppBarHandler;
@@ -68,7 +71,7 @@ import com.productlayer.android.common.util.CameraUtil;
 import com.productlayer.android.common.util.LocaleUtil;
 import com.productlayer.android.common.util.MetricsUtil;
 import com.productlayer.android.common.util.PhotoUtil;
-import com.productlayer.android.common.util.PicassoTarget;
+import com.productlayer.android.common.util.PicassoRoundedCorners;
 import com.productlayer.android.common.util.SnackbarUtil;
 import com.productlayer.android.common.view.FocusAutoCompleteTextView;
 import com.productlayer.android.sdk.PLYAndroid;
@@ -82,7 +85,6 @@ import com.productlayer.core.beans.ProductImage;
 import com.productlayer.core.error.PLYStatusCodes;
 import com.productlayer.core.utils.GTINValidator;
 import com.squareup.picasso.Picasso;
-import com.squareup.picasso.Target;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -125,7 +127,6 @@ public class ProductEditFragment extends NamedFragment {
     private FocusAutoCompleteTextView brand;
     private FocusAutoCompleteTextView brandOwner;
     private Button selectCategory;
-    private Target productImageTarget;
 
     /**
      * Constructs a new instance with the specified parameters. The parameters passed this way survive
@@ -230,26 +231,34 @@ public class ProductEditFragment extends NamedFragment {
         }
         // this fragment adds actions to the app bar
         setHasOptionsMenu(true);
-        // populate category list items
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                Activity activity = getActivity();
-                if (activity == null) {
-                    return;
-                }
-                Category[] categoryArr = ObjectCache.getCategories(activity, client, false, false);
-                if (categoryArr != null) {
-                    categories = CategoryListItem.fromCategories(categoryArr);
-                    activity.runOnUiThread(new Runnable() {
-                        @Override
-                        public void run() {
-                            setCategoryButtonTextFromKey();
-                        }
-                    });
-                }
+        // populate category list items (right away if they have been warmed up)
+        if (ObjectCacheWarmUp.isReady(ObjectCacheWarmUp.Dataset.CATEGORIES)) {
+            Category[] categoryArr = ObjectCache.getCategories(getActivity(), client, true, false);
+            if (categoryArr != null) {
+                categories = CategoryListItem.fromCategories(categoryArr);
             }
-        }).start();
+        }
+        if (categories == null) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Activity activity = getActivity();
+                    if (activity == null) {
+                        return;
+                    }
+                    Category[] categoryArr = ObjectCache.getCategories(activity, client, false, false);
+                    if (categoryArr != null) {
+                        categories = CategoryListItem.fromCategories(categoryArr);
+                        activity.runOnUiThread(new Runnable() {
+                            @Override
+                            public void run() {
+                                setCategoryButtonTextFromKey();
+                            }
+                        });
+                    }
+                }
+            }).start();
+        }
         // retrieve suggested brands and brand owners
         ProductService.getBrandOwnerSuggestions(client, gtin, new PLYCompletion<BrandOwner[]>() {
             @Override
@@ -382,8 +391,8 @@ public class ProductEditFragment extends NamedFragment {
                         int imageHeightPx = MetricsUtil.inPx(128);
                         String productImageUrl = ImageService.getImageForSizeURL(client, defaultImage
                                 .getImageFileId(), imageWidthPx, imageHeightPx, true, null);
-                        productImageTarget = PicassoTarget.roundedCornersImage(activity, productImage);
-                        Picasso.with(activity).load(productImageUrl).into(productImageTarget);
+                        Picasso.with(activity).load(productImageUrl).transform(new PicassoRoundedCorners
+                                (activity)).noFade().into(productImage);
                     }
                 }, 100);
             }
@@ -395,6 +404,14 @@ public class ProductEditFragment extends NamedFragment {
         super.onStart();
         // get all available brands and brand owners for autocompletion
         // done after everything is visible due to expensive nature of call if not cached
+        if (!allBrandsLoaded && ObjectCacheWarmUp.isReady(ObjectCacheWarmUp.Dataset.BRANDS)) {
+            allBrandsLoaded = true;
+            addSuggestedBrands();
+        }
+        if (!allBrandOwnersLoaded && ObjectCacheWarmUp.isReady(ObjectCacheWarmUp.Dataset.BRAND_OWNERS)) {
+            allBrandOwnersLoaded = true;
+            addSuggestedBrandOwners();
+        }
         if (!allBrandsLoaded) {
             new Thread(new Runnable() {
                 @Override
@@ -700,7 +717,8 @@ public class ProductEditFragment extends NamedFragment {
     }
 
     /**
-     * Uploads an image for a product. Attempts to create the product first if it has not been created yet.
+     * Queues an image of a product for upload. Attempts to create the product first if it has not been
+     * created yet.
      */
     private void uploadProductImage() {
         Activity activity = getActivity();
@@ -708,40 +726,42 @@ public class ProductEditFragment extends NamedFragment {
             return;
         }
         final String imagePath = PhotoUtil.getPhotoPathCache(gtin, activity);
-        Runnable uploadProductImage = new Runnable() {
+        final Context context = activity.getApplicationContext();
+        final PLYCompletion<ProductImage> completion = new PLYCompletion<ProductImage>() {
             @Override
-            public void run() {
-                // TODO limit file size
-                ImageService.uploadProductImage(sequentialClient, gtin, imagePath, new
-                        PLYCompletion<ProductImage>() {
-                    @Override
-                    public void onSuccess(ProductImage result) {
-                        Log.d("UploadPImageCallback", "New image for product with GTIN " + gtin + " " +
-                                "uploaded");
-                        LoadingIndicator.hide();
-                        if (isNewProduct) {
-                            SnackbarUtil.make(getActivity(), getView(), R.string.image_uploaded_more_info,
-                                    Snackbar.LENGTH_LONG).show();
-                        } else {
-                            SnackbarUtil.make(getActivity(), getView(), R.string.image_uploaded, Snackbar
-                                    .LENGTH_LONG).show();
-                        }
-                        DataChangeListener.imageCreate(result);
-                    }
+            public void onSuccess(ProductImage result) {
+                Log.d("UploadPImageCallback", "New image for product with GTIN " + gtin + " " +
+                        "uploaded");
+                LoadingIndicator.hide();
+                if (isNewProduct) {
+                    SnackbarUtil.make(getActivity(), getView(), R.string.image_uploaded_more_info,
+                            Snackbar.LENGTH_LONG).show();
+                } else {
+                    SnackbarUtil.make(getActivity(), getView(), R.string.image_uploaded, Snackbar
+                            .LENGTH_LONG).show();
+                }
+                DataChangeListener.imageCreate(result);
+            }
 
-                    @Override
-                    public void onPostSuccess(ProductImage result) {
-                        loadProductImage(imagePath, productImage);
-                    }
+            @Override
+            public void onPostSuccess(ProductImage result) {
+                loadProductImage(imagePath, productImage);
+            }
 
-                    @Override
-                    public void onError(PLYAndroid.QueryError error) {
-                        Log.d("UploadPImageCallback", error.getMessage());
-                        LoadingIndicator.hide();
-                        SnackbarUtil.make(getActivity(), getView(), error.getMessage(), Snackbar
-                                .LENGTH_LONG).show();
-                    }
-                });
+            @Override
+            public void onError(PLYAndroid.QueryError error) {
+                Log.d("UploadPImageCallback", error.getMessage());
+                LoadingIndicator.hide();
+                SnackbarUtil.make(getActivity(), getView(), error.getMessage(), Snackbar
+                        .LENGTH_LONG).show();
+            }
+        };
+        Runnable uploadProductImage = new Runnable() {
+            @Override
+            public void run() {
+                // uploads do not need to be ordered with product updates, only with product creation
+                UploadQueue.enqueueProductImage(context, client, gtin, imagePath,
+                        LoadingIndicator.UPLOAD_PROGRESS_LISTENER, completion);
             }
         };
         if (dbProduct == null) {
@@ -850,7 +870,11 @@ public class ProductEditFragment extends NamedFragment {
     private void setCategoryButtonTextFromKey() {
         setSuggestedCategory();
         if (selectedCategoryKey != null && selectCategory != null) {
-            String selectedCategoryName = CategoryListItem.getName(selectedCategoryKey, categories);
+            String selectedCategoryName = LocalizationCache.getCategoryName(getActivity(), client,
+                    selectedCategoryKey);
+            if (selectedCategoryName == null) {
+                selectedCategoryName = CategoryListItem.getName(selectedCategoryKey, categories);
+            }
             if (selectedCategoryName != null) {
                 selectCategory.setText(selectedCategoryName);
             }
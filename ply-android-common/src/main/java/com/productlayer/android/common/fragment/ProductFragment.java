@@ -46,6 +46,7 @@ import com.productlayer.android.common.R;
 import com.productlayer.android.common.adapter.NamedFragmentPagerAdapter;
 import com.productlayer.android.common.adapter.TimelineAdapter;
 import com.productlayer.android.common.global.LoadingIndicator;
+import com.productlayer.android.common.global.UploadQueue;
 import com.productlayer.android.common.handler.AppBarHandler;
 import com.productlayer.android.common.handler.DataChangeListener;
 import com.productlayer.android.common.handler.FloatingActionButtonHandler;
@@ -59,6 +60,7 @@ import com.productlayer.android.common.handler.NavigationHandler;
 import com.productlayer.android.common.handler.PLYAndroidHolder;
 import com.productlayer.android.common.handler.TimelineSettingsHandler;
 import com.productlayer.android.common.handler.UserHandler;
+import com.productlayer.android.common.util.CacheUtil;
 import com.productlayer.android.common.util.ColorUtil;
 import com.productlayer.android.common.util.MetricsUtil;
 import com.productlayer.android.common.util.PhotoUtil;
@@ -73,7 +75,6 @@ import com.productlayer.android.sdk.services.ProductService;
 import com.productlayer.core.beans.Product;
 import com.productlayer.core.beans.ProductImage;
 import com.productlayer.core.beans.User;
-import com.squareup.picasso.MemoryPolicy;
 import com.squareup.picasso.NetworkPolicy;
 import com.squareup.picasso.Picasso;
 
@@ -409,19 +410,21 @@ public class ProductFragment extends NamedFragment {
         if (useCache) {
             Picasso.with(context).load(imageUrl).into(backdrop);
         } else {
-            Picasso.with(context).invalidate(imageUrl);
-            Picasso.with(context).load(imageUrl).memoryPolicy(MemoryPolicy.NO_CACHE).networkPolicy
-                    (NetworkPolicy.NO_CACHE).into(backdrop);
+            // evict the image in all sizes, it may be shown elsewhere as well (f.e. in the timeline)
+            String imageUrlPrefix = ImageService.getImageURLPrefix(client, image.getImageFileId());
+            CacheUtil.invalidatePicassoImages(imageUrlPrefix != null ? imageUrlPrefix : imageUrl);
+            // disk cache eviction runs in the background, skip it to avoid a race
+            Picasso.with(context).load(imageUrl).networkPolicy(NetworkPolicy.NO_CACHE).into(backdrop);
         }
     }
 
     /**
-     * Uploads a new product image.
+     * Queues a new product image for upload.
      */
-    private void uploadProductImage(String imagePath) {
+    private void uploadProductImage(final String imagePath) {
         final String gtin = product.getGtin();
-        // TODO limit file size
-        ImageService.uploadProductImage(client, gtin, imagePath, new PLYCompletion<ProductImage>() {
+        final Context context = getActivity().getApplicationContext();
+        final PLYCompletion<ProductImage> completion = new PLYCompletion<ProductImage>() {
             @Override
             public void onSuccess(ProductImage result) {
                 Log.d("UploadPImageCallback", "New image for product with GTIN " + gtin + " uploaded");
@@ -437,7 +440,9 @@ public class ProductFragment extends NamedFragment {
                 LoadingIndicator.hide();
                 SnackbarUtil.make(getActivity(), getView(), error.getMessage(), Snackbar.LENGTH_LONG).show();
             }
-        });
+        };
+        UploadQueue.enqueueProductImage(context, client, gtin, imagePath, LoadingIndicator
+                .UPLOAD_PROGRESS_LISTENER, completion);
     }
 
     /**
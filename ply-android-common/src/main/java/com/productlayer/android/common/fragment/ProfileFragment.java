@@ -43,7 +43,9 @@ import android.widget.TextView;
 
 import com.productlayer.android.common.R;
 import com.productlayer.android.common.adapter.NamedFragmentPagerAdapter;
+import com.productlayer.android.common.global.AvatarCache;
 import com.productlayer.android.common.global.LoadingIndicator;
+import com.productlayer.android.common.global.UploadQueue;
 import com.productlayer.android.common.handler.AppBarHandler;
 import com.productlayer.android.common.handler.HasAppBarHandler;
 import com.productlayer.android.common.handler.HasNavigationHandler;
@@ -56,10 +58,11 @@ import com.productlayer.android.common.handler.TimelineSettingsHandler;
 import com.productlayer.android.common.handler.UserHandler;
 import com.productlayer.android.common.model.Level;
 import com.productlayer.android.common.util.CacheUtil;
+import com.productlayer.android.common.util.DerivedImageCache;
 import com.productlayer.android.common.util.MetricsUtil;
 import com.productlayer.android.common.util.PhotoUtil;
 import com.productlayer.android.common.util.PicassoBlur;
-import com.productlayer.android.common.util.PicassoTarget;
+import com.productlayer.android.common.util.PicassoRoundedCorners;
 import com.productlayer.android.common.util.SnackbarUtil;
 import com.productlayer.android.common.util.StorageUtil;
 import com.productlayer.android.common.util.SystemBarsUtil;
@@ -73,9 +76,7 @@ import com.productlayer.core.beans.User;
 import com.productlayer.core.beans.UserAvatarImage;
 import com.squareup.picasso.MemoryPolicy;
 import com.squareup.picasso.NetworkPolicy;
-import com.squareup.picasso.Picasso;
 import com.squareup.picasso.RequestCreator;
-import com.squareup.picasso.Target;
 
 import java.io.File;
 
@@ -119,9 +120,6 @@ public class ProfileFragment extends NamedFragment {
     private View avatarScrim;
     private ImageView takePhotoImage;
     private FollowView followView;
-    // target would be garbage-collected without reference
-    @SuppressWarnings("FieldCanBeLocal")
-    private Target avatarTarget;
 
     private NamedFragmentPagerAdapter pagerAdapter;
 
@@ -369,8 +367,9 @@ public class ProfileFragment extends NamedFragment {
         if (PhotoUtil.onActivityResult(requestCode, resultCode, data, getContext(), tempPath)) {
             // upload avatar
             LoadingIndicator.show();
-            ImageService.updateUserAvatar(client, user.getId(), tempPath, new
-                    PLYCompletion<UserAvatarImage>() {
+            final String userID = user.getId();
+            final Context context = activity.getApplicationContext();
+            final PLYCompletion<UserAvatarImage> completion = new PLYCompletion<UserAvatarImage>() {
                 @Override
                 public void onSuccess(UserAvatarImage result) {
                     Log.d("UploadAvatarCallback", "New avatar image uploaded");
@@ -382,9 +381,15 @@ public class ProfileFragment extends NamedFragment {
                     }
                     user.setAvatar(result);
                     StorageUtil.deleteFile(new File(tempPath));
-                    // clear memory and disk cache
-                    CacheUtil.clearPicassoMemoryCache();
-                    CacheUtil.clearPicassoDiskCache();
+                    // evict the previous avatar in all sizes from memory and disk cache
+                    AvatarCache.invalidate(userID);
+                    String avatarUrlPrefix = ImageService.getUserAvatarURLPrefix(client, userID);
+                    if (avatarUrlPrefix != null) {
+                        CacheUtil.invalidatePicassoImages(avatarUrlPrefix);
+                    } else {
+                        CacheUtil.clearPicassoMemoryCache();
+                        CacheUtil.clearPicassoDiskCache();
+                    }
                     // TODO reload toolbar and navigation drawer CurrentUser avatar
                 }
 
@@ -401,7 +406,9 @@ public class ProfileFragment extends NamedFragment {
                     SnackbarUtil.make(getActivity(), getView(), error.getMessage(), Snackbar.LENGTH_LONG)
                             .show();
                 }
-            });
+            };
+            UploadQueue.enqueueUserAvatar(context, client, userID, tempPath, LoadingIndicator
+                    .UPLOAD_PROGRESS_LISTENER, completion);
         }
     }
 
@@ -456,15 +463,16 @@ public class ProfileFragment extends NamedFragment {
         avatar.setBackgroundDrawable(getResources().getDrawable(borderDrawable));
         // load avatar image
         String imageUrl = ImageService.getUserAvatarURL(client, user.getId(), avatarSize);
-        RequestCreator rcAvatar = Picasso.with(getContext()).load(imageUrl);
+        // derived images are cached on disk to skip downloading and transforming on the next visit
+        RequestCreator rcAvatar = DerivedImageCache.load(getContext(), imageUrl, new PicassoRoundedCorners
+                (getContext()), useCache).noFade();
         if (!useCache) {
             rcAvatar.memoryPolicy(MemoryPolicy.NO_CACHE).networkPolicy(NetworkPolicy.NO_CACHE);
         }
-        avatarTarget = PicassoTarget.roundedCornersImage(getContext(), avatar);
-        rcAvatar.into(avatarTarget);
+        rcAvatar.into(avatar);
         // load blurred avatar as backdrop image
-        RequestCreator rcBackdrop = Picasso.with(getContext()).load(imageUrl).transform(new PicassoBlur
-                (getContext()));
+        RequestCreator rcBackdrop = DerivedImageCache.load(getContext(), imageUrl, new PicassoBlur
+                (getContext()), useCache);
         if (!useCache) {
             rcBackdrop.memoryPolicy(MemoryPolicy.NO_CACHE).networkPolicy(NetworkPolicy.NO_CACHE);
         }
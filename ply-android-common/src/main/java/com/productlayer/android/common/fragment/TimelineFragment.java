@@ -44,6 +44,7 @@ import com.productlayer.android.common.handler.HasNavigationHandler;
 import com.productlayer.android.common.handler.HasPLYAndroidHolder;
 import com.productlayer.android.common.handler.HasTimelineSettingsHandler;
 import com.productlayer.android.common.handler.HasUserHandler;
+import com.productlayer.android.common.handler.ImagePrefetchScrollListener;
 import com.productlayer.android.common.handler.NavigationHandler;
 import com.productlayer.android.common.handler.PLYAndroidHolder;
 import com.productlayer.android.common.handler.TimelineSettingsHandler;
@@ -64,6 +65,9 @@ public abstract class TimelineFragment extends NamedFragment {
     // TODO make configurable by extending classes and set loaded entries based on phone cpu/memory
     private static final int LOAD_ITEMS = 20;
     private static final int MIN_WIDTH_DP_PER_COL = 250;
+    private static final int PREFETCH_ROWS = 3;
+    // pages of LOAD_ITEMS held around the viewport, farther pages are dropped and retrieved again if needed
+    private static final int WINDOW_PAGES = 8;
 
     private static final int AVATAR_SIZE_DP = 48;
 
@@ -74,6 +78,7 @@ public abstract class TimelineFragment extends NamedFragment {
     private RecyclerView feedView;
 
     private TimelineAdapter feedAdapter;
+    private ImagePrefetchScrollListener imagePrefetcher;
 
     private int unusedHeightPx;
 
@@ -145,6 +150,7 @@ public abstract class TimelineFragment extends NamedFragment {
         feedAdapter = new TimelineAdapter(activity, navigationHandler, userHandler, client, setupRetrieval
                 (), LOAD_ITEMS, timelineSettingsHandler.getTimelineSettings(getSettingsTag(),
                 getDefaultSettings()));
+        feedAdapter.setWindowPages(WINDOW_PAGES);
     }
 
     @Override
@@ -177,6 +183,10 @@ public abstract class TimelineFragment extends NamedFragment {
         feedView.setAdapter(feedAdapter);
         feedView.setHasFixedSize(true);
         feedView.setLayoutManager(gridLayoutManager);
+        // prefetch the images of upcoming items and pause loading images while flinging
+        imagePrefetcher = new ImagePrefetchScrollListener(getActivity().getApplicationContext(),
+                gridLayoutManager, feedAdapter, gridColumns * PREFETCH_ROWS);
+        feedView.addOnScrollListener(imagePrefetcher);
         // listen to scroll events to load more items
         feedView.addOnScrollListener(new EdgeScrollListener(gridLayoutManager, gridColumns) {
             @Override
@@ -207,6 +217,7 @@ public abstract class TimelineFragment extends NamedFragment {
         super.onDestroyView();
         // despite the recyclerview being destroyed it needs to be reset first to avoid memory leaks
         feedView.clearOnScrollListeners();
+        imagePrefetcher.release();
         feedView.setAdapter(null);
     }
 
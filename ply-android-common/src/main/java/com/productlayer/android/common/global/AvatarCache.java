@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2015, ProductLayer GmbH All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.productlayer.android.common.global;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.drawable.Drawable;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+import android.widget.ImageView;
+
+import com.productlayer.android.common.util.PicassoRoundedCorners;
+import com.productlayer.android.sdk.PLYAndroid;
+import com.productlayer.android.sdk.services.ImageService;
+import com.squareup.picasso.MemoryPolicy;
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.Target;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Keeps the rounded avatars of users in a memory partition of its own, keyed by user ID and size. As
+ * timelines show the same few authors over and over, avatars are not evicted by the many product images
+ * passing through Picasso's memory cache - only by other avatars or memory pressure once in the background.
+ *
+ * Concurrent requests for the same avatar are merged into a single load whose result is handed to all views
+ * waiting for it. The avatars of a page of items may be preloaded as soon as the page arrives.
+ *
+ * All methods except {@link #invalidate} must be called on the UI thread.
+ */
+public class AvatarCache {
+
+    private static final int MEMORY_DIVISOR = 32;
+    private static final int MAX_URLS = 256;
+
+    private static final LruCache<String, Bitmap> avatars = new LruCache<String, Bitmap>((int) Math.min
+            (Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / MEMORY_DIVISOR)) {
+        @Override
+        protected int sizeOf(String key, Bitmap bitmap) {
+            return bitmap.getRowBytes() * bitmap.getHeight();
+        }
+    };
+    private static final LruCache<String, String> urls = new LruCache<String, String>(MAX_URLS);
+
+    private static final Map<String, AvatarRequest> pending = new HashMap<String, AvatarRequest>();
+    private static final WeakHashMap<ImageView, String> boundViews = new WeakHashMap<ImageView, String>();
+
+    private static boolean callbacksRegistered;
+
+    /**
+     * Gets the URL of a user's avatar, remembering it for subsequent calls.
+     *
+     * @param client
+     *         the PLYAndroid SDK client configured to handle communications with the ProductLayer API server
+     * @param userID
+     *         the identifier of the user
+     * @param sizePx
+     *         the width/height of the avatar in px
+     * @return the URL of the avatar
+     */
+    public static String getAvatarURL(PLYAndroid client, String userID, int sizePx) {
+        String key = key(userID, sizePx);
+        String url = urls.get(key);
+        if (url == null) {
+            url = ImageService.getUserAvatarURL(client, userID, sizePx);
+            urls.put(key, url);
+        }
+        return url;
+    }
+
+    /**
+     * Displays a user's avatar in an image view. Shows it right away if cached, else clears the view and
+     * displays the avatar once loaded unless the view has been bound to another avatar in the meantime.
+     *
+     * @param context
+     *         the application context
+     * @param view
+     *         the view to display the avatar in
+     * @param userID
+     *         the identifier of the user
+     * @param sizePx
+     *         the width/height of the avatar in px
+     * @param url
+     *         the URL of the avatar, see {@link #getAvatarURL}
+     */
+    public static void bind(Context context, ImageView view, String userID, int sizePx, String url) {
+        String key = key(userID, sizePx);
+        boundViews.put(view, key);
+        Bitmap bitmap = avatars.get(key);
+        if (bitmap != null) {
+            view.setImageBitmap(bitmap);
+            return;
+        }
+        view.setImageBitmap(null);
+        load(context, key, url);
+    }
+
+    /**
+     * Stops displaying any avatar in an image view once loaded.
+     *
+     * @param view
+     *         the view to unbind
+     */
+    public static void unbind(ImageView view) {
+        boundViews.remove(view);
+    }
+
+    /**
+     * Loads the avatars of the specified users into the cache unless already cached or being loaded.
+     *
+     * @param context
+     *         the application context
+     * @param client
+     *         the PLYAndroid SDK client configured to handle communications with the ProductLayer API server
+     * @param userIDs
+     *         the identifiers of the users
+     * @param sizePx
+     *         the width/height of the avatars in px
+     */
+    public static void preload(Context context, PLYAndroid client, Iterable<String> userIDs, int sizePx) {
+        for (String userID : userIDs) {
+            String key = key(userID, sizePx);
+            if (avatars.get(key) == null) {
+                load(context, key, getAvatarURL(client, userID, sizePx));
+            }
+        }
+    }
+
+    /**
+     * Removes a user's avatars in all sizes from the cache, f.e. after it has been replaced. May be called
+     * from any thread.
+     *
+     * @param userID
+     *         the identifier of the user
+     */
+    public static void invalidate(String userID) {
+        String prefix = userID + "@";
+        for (String key : avatars.snapshot().keySet()) {
+            if (key.startsWith(prefix)) {
+                avatars.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Starts loading an avatar unless a load is already in progress.
+     */
+    private static void load(Context context, String key, String url) {
+        if (pending.containsKey(key)) {
+            return;
+        }
+        registerCallbacks(context);
+        AvatarRequest request = new AvatarRequest(key);
+        // Picasso holds targets weakly, the map keeps the request alive until completion
+        pending.put(key, request);
+        Picasso.with(context).load(url).transform(new PicassoRoundedCorners(context)).memoryPolicy
+                (MemoryPolicy.NO_STORE).into(request);
+    }
+
+    /**
+     * Drops avatars when the app is in the background and memory gets low.
+     */
+    private static void registerCallbacks(Context context) {
+        if (callbacksRegistered) {
+            return;
+        }
+        callbacksRegistered = true;
+        context.getApplicationContext().registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                if (level >= TRIM_MEMORY_MODERATE) {
+                    avatars.evictAll();
+                } else if (level >= TRIM_MEMORY_BACKGROUND) {
+                    avatars.trimToSize(avatars.maxSize() / 2);
+                }
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+                avatars.evictAll();
+            }
+        });
+    }
+
+    private static String key(String userID, int sizePx) {
+        return userID + "@" + sizePx;
+    }
+
+    private static class AvatarRequest implements Target {
+
+        private final String key;
+
+        AvatarRequest(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void onBitmapLoaded(Bitmap bitmap, Picasso.LoadedFrom from) {
+            pending.remove(key);
+            avatars.put(key, bitmap);
+            for (Map.Entry<ImageView, String> entry : boundViews.entrySet()) {
+                if (key.equals(entry.getValue())) {
+                    entry.getKey().setImageBitmap(bitmap);
+                }
+            }
+        }
+
+        @Override
+        public void onBitmapFailed(Drawable errorDrawable) {
+            pending.remove(key);
+            Log.w(AvatarCache.class.getSimpleName(), "Error loading avatar " + key);
+        }
+
+        @Override
+        public void onPrepareLoad(Drawable placeHolderDrawable) {
+        }
+    }
+}
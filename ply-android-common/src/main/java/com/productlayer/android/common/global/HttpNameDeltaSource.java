@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2015, ProductLayer GmbH All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.productlayer.android.common.global;
+
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import org.json.JSONArray;
+
+import java.net.HttpURLConnection;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retrieves additions to name lists from a delta endpoint answering {@code GET <baseURL>/<list>?since=<ms>}
+ * with a JSON array of the names added since that time and the server time in the {@code Date} header. Any
+ * other response makes {@link ObjectCache} fall back to retrieving the full list.
+ */
+public class HttpNameDeltaSource implements NameDeltaSource {
+
+    private static final int TIMEOUT_SECONDS = 15;
+
+    private final String baseURL;
+    private final OkHttpClient httpClient;
+
+    /**
+     * @param baseURL
+     *         the URL of the delta endpoint without trailing slash
+     */
+    public HttpNameDeltaSource(String baseURL) {
+        this.baseURL = baseURL;
+        httpClient = new OkHttpClient();
+        httpClient.setConnectTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        httpClient.setReadTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public Delta getAdditions(String list, long since) throws Exception {
+        Request request = new Request.Builder().url(baseURL + "/" + list + "?since=" + since).build();
+        Response response = httpClient.newCall(request).execute();
+        try {
+            Date serverTime = response.headers().getDate("Date");
+            if (response.code() != HttpURLConnection.HTTP_OK || serverTime == null) {
+                return null;
+            }
+            JSONArray names = new JSONArray(response.body().string());
+            String[] additions = new String[names.length()];
+            for (int i = 0; i < additions.length; i++) {
+                additions[i] = names.optString(i, null);
+            }
+            return new Delta(additions, serverTime.getTime());
+        } finally {
+            response.body().close();
+        }
+    }
+}
@@ -27,8 +27,10 @@ package com.productlayer.android.common.global;
 
 import android.os.Handler;
 import android.view.View;
+import android.widget.ProgressBar;
 
 import com.productlayer.android.common.util.ThreadUtil;
+import com.productlayer.android.sdk.PLYUploadProgressListener;
 
 import java.lang.ref.WeakReference;
 
@@ -38,6 +40,18 @@ import java.lang.ref.WeakReference;
  */
 public class LoadingIndicator {
 
+    /**
+     * Shows the progress of uploads in the loading indicator.
+     */
+    public static final PLYUploadProgressListener UPLOAD_PROGRESS_LISTENER = new PLYUploadProgressListener() {
+        @Override
+        public void onProgress(String uploadID, long bytesUploaded, long bytesTotal) {
+            showProgress(bytesUploaded, bytesTotal);
+        }
+    };
+
+    private static final int PROGRESS_MAX = 1000;
+
     private static WeakReference<View> loadingIndicatorRef;
 
     private static Handler mainHandler;
@@ -79,6 +93,32 @@ public class LoadingIndicator {
         }
     }
 
+    /**
+     * Brings the loading indicator to the front and makes it {@link View#VISIBLE}. If the loading indicator
+     * is a {@link ProgressBar} it displays the progress of the operation until hidden.
+     *
+     * Must be run on the UI thread.
+     *
+     * @param done
+     *         the amount of work done
+     * @param total
+     *         the total amount of work
+     */
+    public static void showProgress(long done, long total) {
+        View loadingIndicator = getLoadingIndicator();
+        if (loadingIndicator == null) {
+            return;
+        }
+        if (loadingIndicator instanceof ProgressBar && total > 0) {
+            ProgressBar progressBar = (ProgressBar) loadingIndicator;
+            progressBar.setIndeterminate(false);
+            progressBar.setMax(PROGRESS_MAX);
+            progressBar.setProgress((int) (Math.min(done, total) * PROGRESS_MAX / total));
+        }
+        loadingIndicator.bringToFront();
+        loadingIndicator.setVisibility(View.VISIBLE);
+    }
+
     /**
      * Sets the loading indicator's visibility to {@link View#GONE}.
      */
@@ -88,17 +128,25 @@ public class LoadingIndicator {
             return;
         }
         if (ThreadUtil.isMainThread()) {
-            loadingIndicator.setVisibility(View.GONE);
+            hide(loadingIndicator);
         } else {
             mainHandler.post(new Runnable() {
                 @Override
                 public void run() {
-                    loadingIndicator.setVisibility(View.GONE);
+                    hide(loadingIndicator);
                 }
             });
         }
     }
 
+    private static void hide(View loadingIndicator) {
+        loadingIndicator.setVisibility(View.GONE);
+        if (loadingIndicator instanceof ProgressBar) {
+            // any progress shown belongs to the operation that has just finished
+            ((ProgressBar) loadingIndicator).setIndeterminate(true);
+        }
+    }
+
     /**
      * @return the loading indicator view or null if none set
      */
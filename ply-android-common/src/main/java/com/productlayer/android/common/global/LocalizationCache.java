@@ -0,0 +1,571 @@
+/*
+ * Copyright (c) 2015, ProductLayer GmbH All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.productlayer.android.common.global;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.productlayer.android.common.util.CacheStats;
+import com.productlayer.android.common.util.VersionUtil;
+import com.productlayer.android.sdk.PLYAndroid;
+import com.productlayer.android.sdk.PLYCompletion;
+import com.productlayer.android.sdk.services.LocalizationService;
+import com.productlayer.android.sdk.services.ProductService;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caches localization dictionaries retrieved from the ProductLayer API per language on disk.
+ *
+ * Each dictionary is stored in a compact binary file of sorted keys which is memory-mapped on first use.
+ * Single keys are looked up using binary search on the mapped file without loading the whole dictionary onto
+ * the heap. Files are tagged with the app's version code and are retrieved again after an app update.
+ */
+public class LocalizationCache {
+
+    private static final String CACHE_DIR = "localizationCache";
+    private static final String FILE_EXTENSION = ".dict";
+
+    private static final int MAGIC = 0x504c4443; // "PLDC"
+    private static final int FORMAT_VERSION = 1;
+    private static final int INDEX_FORMAT_VERSION = 4;
+    private static final int INDEX_DATA_VERSION = 8;
+    private static final int INDEX_COUNT = 12;
+    private static final int HEADER_SIZE = 16;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final Map<String, ByteBuffer> mappedDictionaries = new ConcurrentHashMap<String,
+            ByteBuffer>();
+    // one lock per dictionary and language so that concurrent loads do not fetch and write it twice
+    private static final ConcurrentMap<String, Object> loadLocks = new ConcurrentHashMap<String, Object>();
+
+    /**
+     * Gets the translation of a single key. Loads the dictionary first if it has not been loaded yet.
+     *
+     * Both disk and network access are blocking - do not run on the UI thread unless the dictionary is sure
+     * to have been loaded (see {@link #isLoaded}).
+     *
+     * @param context
+     *         the application context
+     * @param client
+     *         the ProductLayer Android SDK client
+     * @param dictionary
+     *         the dictionary to look up the key in
+     * @param language
+     *         the language of the translation in ISO 639-1 format
+     * @param key
+     *         the key to translate
+     * @param fromCacheOnly
+     *         true to check the cache only and to not run any network query
+     * @return the translation or null if not found or on any error
+     */
+    public static String get(Context context, PLYAndroid client, Dictionary dictionary, String language,
+            String key, boolean fromCacheOnly) {
+        String name = getName(dictionary, language);
+        ByteBuffer buffer = mappedDictionaries.get(name);
+        if (buffer == null) {
+            if (!load(context, client, dictionary, language, fromCacheOnly)) {
+                return null;
+            }
+            buffer = mappedDictionaries.get(name);
+        }
+        long timeStart = System.nanoTime();
+        String translation = lookUp(buffer, key);
+        if (translation != null) {
+            CacheStats.recordHit(name, CacheStats.Tier.MEMORY, System.nanoTime() - timeStart, 0);
+        } else {
+            CacheStats.recordMiss(name, CacheStats.Tier.MEMORY, System.nanoTime() - timeStart);
+        }
+        return translation;
+    }
+
+    /**
+     * Looks up the translated name of a category key in the category dictionary if it has been loaded (see
+     * {@link ObjectCacheWarmUp}). Does not block on disk or network access.
+     *
+     * @param context
+     *         the application context
+     * @param client
+     *         the PLYAndroid client whose language to translate to
+     * @param key
+     *         the key to look up
+     * @return the translated name or null if not found or if the dictionary has not been loaded
+     */
+    public static String getCategoryName(Context context, PLYAndroid client, String key) {
+        String language = client.getLanguage();
+        if (!isLoaded(Dictionary.CATEGORIES, language)) {
+            return null;
+        }
+        return get(context, client, Dictionary.CATEGORIES, language, key, true);
+    }
+
+    /**
+     * Loads a dictionary, mapping it from disk or retrieving it remotely using the ProductLayer API if it is
+     * not cached or has been cached by a different version of the app.
+     *
+     * Both disk and network access are blocking - do not run on the UI thread!
+     *
+     * @param context
+     *         the application context
+     * @param client
+     *         the ProductLayer Android SDK client
+     * @param dictionary
+     *         the dictionary to load
+     * @param language
+     *         the language of the dictionary in ISO 639-1 format
+     * @param fromCacheOnly
+     *         true to check the cache only and to not run any network query
+     * @return true if the dictionary is available for look-ups, false else
+     */
+    public static boolean load(Context context, PLYAndroid client, Dictionary dictionary, String language,
+            boolean fromCacheOnly) {
+        String name = getName(dictionary, language);
+        if (mappedDictionaries.containsKey(name)) {
+            return true;
+        }
+        Object lock = new Object();
+        Object existingLock = loadLocks.putIfAbsent(name, lock);
+        synchronized (existingLock != null ? existingLock : lock) {
+            if (mappedDictionaries.containsKey(name)) {
+                // loaded while waiting for the lock
+                return true;
+            }
+            return mapOrFetch(context, client, dictionary, language, name);
+        }
+    }
+
+    /**
+     * Maps a dictionary from disk or retrieves and writes it if it is not cached or outdated. Must be called
+     * while holding the load lock of the dictionary.
+     *
+     * @return true if the dictionary is available for look-ups, false else
+     */
+    private static boolean mapOrFetch(Context context, PLYAndroid client, Dictionary dictionary, String
+            language, String name) {
+        int dataVersion = VersionUtil.getVersionCode(context);
+        File file = new File(getCacheDir(context), name + FILE_EXTENSION);
+        long timeStart = System.nanoTime();
+        ByteBuffer buffer = map(file, dataVersion);
+        if (buffer != null) {
+            CacheStats.recordHit(name, CacheStats.Tier.DISK, System.nanoTime() - timeStart, buffer.limit());
+        } else {
+            CacheStats.recordMiss(name, CacheStats.Tier.DISK, System.nanoTime() - timeStart);
+            if (fromCacheOnly) {
+                Log.d(LocalizationCache.class.getSimpleName(), name + " not found in cache, returning null");
+                return false;
+            }
+            // remote retrieval
+            timeStart = System.nanoTime();
+            Map<String, String> translations;
+            try {
+                translations = dictionary.fetch(client, language);
+            } catch (Exception e) {
+                translations = null;
+            }
+            if (translations == null) {
+                CacheStats.recordMiss(name, CacheStats.Tier.NETWORK, System.nanoTime() - timeStart);
+                return false;
+            }
+            CacheStats.recordHit(name, CacheStats.Tier.NETWORK, System.nanoTime() - timeStart, 0);
+            try {
+                write(file, dataVersion, translations);
+            } catch (IOException e) {
+                Log.w(LocalizationCache.class.getSimpleName(), "Error writing " + name + " to cache", e);
+                return false;
+            }
+            buffer = map(file, dataVersion);
+            if (buffer == null) {
+                return false;
+            }
+        }
+        mappedDictionaries.put(name, buffer);
+        Log.d(LocalizationCache.class.getSimpleName(), "Mapped " + name + " with " + buffer.getInt
+                (INDEX_COUNT) + " keys");
+        return true;
+    }
+
+    /**
+     * @param dictionary
+     *         the dictionary to check
+     * @param language
+     *         the language of the dictionary in ISO 639-1 format
+     * @return true if the dictionary has been loaded and look-ups do not block on network access
+     */
+    public static boolean isLoaded(Dictionary dictionary, String language) {
+        return mappedDictionaries.containsKey(getName(dictionary, language));
+    }
+
+    /**
+     * Removes all cached dictionaries from memory and disk. Disk access is blocking - do not run on the UI
+     * thread!
+     *
+     * @param context
+     *         the application context
+     */
+    public static void clear(Context context) {
+        mappedDictionaries.clear();
+        File[] files = getCacheDir(context).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Writes translations to a dictionary file, replacing it atomically.
+     *
+     * The file consists of a header (magic number, format version, data version, key count), a table of
+     * offsets to each entry relative to the end of the table and the entries themselves sorted by key. Each
+     * entry is made up of a length-prefixed UTF-8 key and a length-prefixed UTF-8 value (length -1 for null).
+     *
+     * @param file
+     *         the file to write
+     * @param dataVersion
+     *         the version to tag the file with
+     * @param translations
+     *         the keys and their translations
+     * @throws IOException
+     *         on any error writing the file
+     */
+    private static void write(File file, int dataVersion, Map<String, String> translations) throws
+            IOException {
+        TreeMap<String, String> sorted = new TreeMap<String, String>();
+        for (Map.Entry<String, String> entry : translations.entrySet()) {
+            if (entry.getKey() != null) {
+                sorted.put(entry.getKey(), entry.getValue());
+            }
+        }
+        int count = sorted.size();
+        byte[][] keys = new byte[count][];
+        byte[][] values = new byte[count][];
+        int i = 0;
+        for (Map.Entry<String, String> entry : sorted.entrySet()) {
+            keys[i] = entry.getKey().getBytes(UTF_8);
+            values[i] = entry.getValue() == null ? null : entry.getValue().getBytes(UTF_8);
+            i++;
+        }
+        //noinspection ResultOfMethodCallIgnored
+        file.getParentFile().mkdirs();
+        // a unique temporary file so that no other writer can interleave with this one
+        File tmpFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+        boolean written = false;
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(dataVersion);
+            out.writeInt(count);
+            int offset = 0;
+            for (i = 0; i < count; i++) {
+                out.writeInt(offset);
+                offset += 8 + keys[i].length + (values[i] == null ? 0 : values[i].length);
+            }
+            for (i = 0; i < count; i++) {
+                out.writeInt(keys[i].length);
+                out.write(keys[i]);
+                if (values[i] == null) {
+                    out.writeInt(-1);
+                } else {
+                    out.writeInt(values[i].length);
+                    out.write(values[i]);
+                }
+            }
+            written = true;
+        } finally {
+            out.close();
+            if (!written) {
+                //noinspection ResultOfMethodCallIgnored
+                tmpFile.delete();
+            }
+        }
+        if (!tmpFile.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            tmpFile.delete();
+            throw new IOException("Unable to rename " + tmpFile.getPath());
+        }
+    }
+
+    /**
+     * Maps a dictionary file into memory and validates its header.
+     *
+     * @param file
+     *         the file to map
+     * @param dataVersion
+     *         the version the file must have been tagged with
+     * @return the read-only mapped file or null if it does not exist, is invalid or outdated
+     */
+    private static ByteBuffer map(File file, int dataVersion) {
+        if (!file.isFile()) {
+            return null;
+        }
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(file, "r");
+            FileChannel channel = randomAccessFile.getChannel();
+            // the mapping stays valid after closing the channel
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt
+                    (INDEX_FORMAT_VERSION) != FORMAT_VERSION) {
+                Log.w(LocalizationCache.class.getSimpleName(), "Invalid dictionary file " + file.getPath());
+                return null;
+            }
+            if (buffer.getInt(INDEX_DATA_VERSION) != dataVersion) {
+                Log.d(LocalizationCache.class.getSimpleName(), "Outdated dictionary file " + file.getPath());
+                return null;
+            }
+            return buffer;
+        } catch (IOException e) {
+            Log.w(LocalizationCache.class.getSimpleName(), "Error mapping " + file.getPath(), e);
+            return null;
+        } finally {
+            if (randomAccessFile != null) {
+                try {
+                    randomAccessFile.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Looks up a key in a mapped dictionary file using binary search. Uses absolute reads only and is thus
+     * safe to be called concurrently.
+     *
+     * @param buffer
+     *         the mapped dictionary file
+     * @param key
+     *         the key to look up
+     * @return the translation or null if not found
+     */
+    private static String lookUp(ByteBuffer buffer, String key) {
+        if (key == null) {
+            return null;
+        }
+        int count = buffer.getInt(INDEX_COUNT);
+        int dataStart = HEADER_SIZE + count * 4;
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int position = dataStart + buffer.getInt(HEADER_SIZE + mid * 4);
+            int cmp = readString(buffer, position).compareTo(key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return readString(buffer, position + 4 + buffer.getInt(position));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param buffer
+     *         the mapped dictionary file
+     * @param position
+     *         the absolute position of the length-prefixed string
+     * @return the decoded string or null if the stored length is negative
+     */
+    private static String readString(ByteBuffer buffer, int position) {
+        int length = buffer.getInt(position);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(position + 4 + i);
+        }
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * @param dictionary
+     *         the dictionary
+     * @param language
+     *         the language of the dictionary
+     * @return the unique name of the dictionary in the specified language
+     */
+    private static String getName(Dictionary dictionary, String language) {
+        return dictionary.name + "_" + language;
+    }
+
+    /**
+     * @param context
+     *         the application context
+     * @return the directory holding the dictionary files
+     */
+    private static File getCacheDir(Context context) {
+        return new File(context.getFilesDir(), CACHE_DIR);
+    }
+
+    /**
+     * A localization dictionary retrievable per language from the ProductLayer API.
+     */
+    public static abstract class Dictionary {
+
+        /**
+         * Translations of category keys.
+         */
+        public static final Dictionary CATEGORIES = new Dictionary("categories") {
+            @Override
+            Map<String, String> fetch(PLYAndroid client, String language) throws Exception {
+                return ProductService.getLocalizedCategories(client, language, new LogCompletion<Map<String,
+                        String>>(name)).get();
+            }
+        };
+
+        /**
+         * Translations of characteristics keys.
+         */
+        public static final Dictionary CHARACTERISTICS = new Dictionary("characteristics") {
+            @Override
+            Map<String, String> fetch(PLYAndroid client, String language) throws Exception {
+                return ProductService.getLocalizedCharacteristics(client, language, new
+                        LogCompletion<Map<String, String>>(name)).get();
+            }
+        };
+
+        /**
+         * Translations of nutrition keys.
+         */
+        public static final Dictionary NUTRITION = new Dictionary("nutrition") {
+            @Override
+            Map<String, String> fetch(PLYAndroid client, String language) throws Exception {
+                return ProductService.getLocalizedNutrition(client, language, new LogCompletion<Map<String,
+                        String>>(name)).get();
+            }
+        };
+
+        /**
+         * Translations of the app strings of the ProductLayer API, parsed from its Java properties file.
+         */
+        public static final Dictionary STRINGS = new Dictionary("strings") {
+            @Override
+            Map<String, String> fetch(PLYAndroid client, String language) throws Exception {
+                String propertiesFile = LocalizationService.getLocalizedPropertiesFile(client, language, new
+                        LogCompletion<String>(name)).get();
+                if (propertiesFile == null) {
+                    return null;
+                }
+                Properties properties = new Properties();
+                properties.load(new StringReader(propertiesFile));
+                Map<String, String> translations = new HashMap<String, String>();
+                for (String key : properties.stringPropertyNames()) {
+                    translations.put(key, properties.getProperty(key));
+                }
+                return translations;
+            }
+        };
+
+        final String name;
+
+        /**
+         * @param name
+         *         the unique name of the dictionary, used as part of the file name
+         */
+        Dictionary(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Creates a dictionary of all localized keys belonging to a domain.
+         *
+         * @param domain
+         *         the root domain, e.g.: pl-prod
+         * @return the dictionary of the domain's keys
+         */
+        public static Dictionary forDomain(final String domain) {
+            return new Dictionary("keys_" + domain.replaceAll("[^a-zA-Z0-9_-]", "_")) {
+                @Override
+                Map<String, String> fetch(PLYAndroid client, String language) throws Exception {
+                    return LocalizationService.getLocalizedKeys(client, domain, true, language, new
+                            LogCompletion<Map<String, String>>(name)).get();
+                }
+            };
+        }
+
+        /**
+         * Retrieves the dictionary using the ProductLayer API.
+         *
+         * @param client
+         *         the ProductLayer Android SDK client
+         * @param language
+         *         the language of the dictionary
+         * @return the keys and their translations
+         * @throws Exception
+         *         on any error during retrieval
+         */
+        abstract Map<String, String> fetch(PLYAndroid client, String language) throws Exception;
+    }
+
+    /**
+     * Logs the outcome of a dictionary retrieval.
+     *
+     * @param <T>
+     *         the type of the retrieved dictionary
+     */
+    private static class LogCompletion<T> extends PLYCompletion<T> {
+
+        private final String name;
+
+        /**
+         * @param name
+         *         the name of the dictionary to log
+         */
+        LogCompletion(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void onSuccess(T result) {
+            Log.d("GetDictionary", "Retrieved " + name);
+        }
+
+        @Override
+        public void onError(PLYAndroid.QueryError error) {
+            Log.d("GetDictionary", error.getMessage());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2015, ProductLayer GmbH All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.productlayer.android.common.global;
+
+/**
+ * Source of the names added to an append-only list of names since a point in time. Lets {@link ObjectCache}
+ * synchronize brand and brand owner names without retrieving the full lists.
+ */
+public interface NameDeltaSource {
+
+    String LIST_BRANDS = "brands";
+    String LIST_BRAND_OWNERS = "brand_owners";
+
+    /**
+     * Retrieves the names added to a list since a point in time. Network access is blocking - do not run on
+     * the UI thread!
+     *
+     * @param list
+     *         the name of the list, {@link #LIST_BRANDS} or {@link #LIST_BRAND_OWNERS}
+     * @param since
+     *         the server time of a previous retrieval in milliseconds since the epoch or 0 for all names
+     * @return the names added since then, may include names already known, along with the current server
+     * time; null if the source cannot tell, in which case the full list is retrieved instead
+     * @throws Exception
+     *         on any error retrieving the names, in which case the full list is retrieved instead
+     */
+    Delta getAdditions(String list, long since) throws Exception;
+
+    /**
+     * Names added to a list along with the server time up to which they are complete. The server time is
+     * passed as {@code since} to the next retrieval so that the device clock does not matter.
+     */
+    class Delta {
+
+        public final String[] names;
+        public final long serverTime;
+
+        /**
+         * @param names
+         *         the names added to the list
+         * @param serverTime
+         *         the time of the server at retrieval in milliseconds since the epoch
+         */
+        public Delta(String[] names, long serverTime) {
+            this.names = names;
+            this.serverTime = serverTime;
+        }
+    }
+
+}
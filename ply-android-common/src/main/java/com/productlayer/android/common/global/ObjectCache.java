@@ -28,6 +28,7 @@ package com.productlayer.android.common.global;
 import android.content.Context;
 import android.util.Log;
 
+import com.productlayer.android.common.util.CacheStats;
 import com.productlayer.android.common.util.CacheUtil;
 import com.productlayer.android.sdk.PLYAndroid;
 import com.productlayer.android.sdk.PLYCompletion;
@@ -35,7 +36,12 @@ import com.productlayer.android.sdk.services.CategoryService;
 import com.productlayer.android.sdk.services.ProductService;
 import com.productlayer.core.beans.Category;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
@@ -43,20 +49,45 @@ import java.util.concurrent.Future;
 /**
  * Methods to retrieve and cache seldomly changing and globally used data retrieved from the ProductLayer
  * API.
+ *
+ * Brand and brand owner names are only synchronized incrementally if a {@link NameDeltaSource} is set using
+ * {@link #setNameDeltaSource}, f.e. an {@link HttpNameDeltaSource} for a server offering a delta endpoint.
+ * The ProductLayer API does not offer one, so by default the full lists are retrieved on each
+ * synchronization and diffed against the local copies.
  */
 public class ObjectCache {
 
     private static final String TAG_CATEGORIES = "categories";
     private static final int MAX_AGE_CATEGORIES = 7 * 86400; // 7 days
 
-    private static final String TAG_BRANDS = "brands";
-    private static final int MAX_AGE_BRANDS = 86400; // 1 day
+    private static final String TAG_BRANDS = "brands_synced";
+    private static final int MAX_AGE_BRANDS = 86400; // 1 day (interval between delta syncs)
+
+    private static final String TAG_BRAND_OWNERS = "brand_owners_synced";
+    private static final int MAX_AGE_BRAND_OWNERS = 86400; // 1 day (interval between delta syncs)
 
-    private static final String TAG_BRAND_OWNERS = "brand_owners";
-    private static final int MAX_AGE_BRAND_OWNERS = 86400; // 1 day
+    private static final String TAG_SUFFIX_SYNC_TIME = "_time";
+    private static final String TAG_SUFFIX_SYNC_CURSOR = "_cursor";
+    // additions are requested since the server time of the last sync minus this margin to cover names
+    // stored with an earlier time stamp only after that sync
+    private static final long SYNC_OVERLAP_MS = 3600 * 1000; // 1 hour
 
     private static Map<String, Object> memCache = new ConcurrentHashMap<String, Object>();
 
+    private static volatile NameDeltaSource nameDeltaSource;
+
+    /**
+     * Sets the source to synchronize additions to the brand and brand owner name lists from. Without a
+     * source, or if it fails, the full lists are retrieved and diffed against the local copies. Not set by
+     * default.
+     *
+     * @param source
+     *         the source of additions to name lists or null to always retrieve the full lists
+     */
+    public static void setNameDeltaSource(NameDeltaSource source) {
+        nameDeltaSource = source;
+    }
+
     /**
      * Gets all categories either from the (memory or disk) cache or remotely using the ProductLayer API. The
      * latter saves the retrieved categories in the local cache.
@@ -99,8 +130,9 @@ public class ObjectCache {
     }
 
     /**
-     * Gets all brand names either from the (memory or disk) cache or remotely using the ProductLayer API. The
-     * latter saves the retrieved brand names in the local cache.
+     * Gets all brand names from the (memory or disk) cache, synchronizing any additions using the
+     * ProductLayer API once the local copy is older than a day. New brand names are merged into the local
+     * copy.
      *
      * Both disk and network access are blocking - do not run on the UI thread unless you know what you are
      * doing (i.e. variable needs to be available and is sure to have been cached in memory)!
@@ -112,8 +144,8 @@ public class ObjectCache {
      * @param fromCacheOnly
      *         true to check the cache only and to not run any network query
      * @param forceRefresh
-     *         true to skip checking the local cache
-     * @return an array of all brand names or null on any error
+     *         true to synchronize additions regardless of the age of the local copy
+     * @return a sorted array of all brand names or null if neither cached nor retrievable
      */
     public static String[] getBrands(final Context context, final PLYAndroid client, boolean fromCacheOnly,
             boolean forceRefresh) {
@@ -136,12 +168,14 @@ public class ObjectCache {
                 }
             };
         }
-        return get(context, fromCacheOnly, forceRefresh, TAG_BRANDS, MAX_AGE_BRANDS, serviceCall);
+        return getSynced(context, fromCacheOnly, forceRefresh, TAG_BRANDS, NameDeltaSource.LIST_BRANDS,
+                MAX_AGE_BRANDS, serviceCall);
     }
 
     /**
-     * Gets all brand owner names either from the (memory or disk) cache or remotely using the ProductLayer
-     * API. The latter saves the retrieved brand owner names in the local cache.
+     * Gets all brand owner names from the (memory or disk) cache, synchronizing any additions using the
+     * ProductLayer API once the local copy is older than a day. New brand owner names are merged into the
+     * local copy.
      *
      * Both disk and network access are blocking - do not run on the UI thread unless you know what you are
      * doing (i.e. variable needs to be available and is sure to have been cached in memory)!
@@ -153,8 +187,8 @@ public class ObjectCache {
      * @param fromCacheOnly
      *         true to check the cache only and to not run any network query
      * @param forceRefresh
-     *         true to skip checking the local cache
-     * @return an array of all brand owner names or null on any error
+     *         true to synchronize additions regardless of the age of the local copy
+     * @return a sorted array of all brand owner names or null if neither cached nor retrievable
      */
     public static String[] getBrandOwners(final Context context, final PLYAndroid client, boolean
             fromCacheOnly, boolean forceRefresh) {
@@ -177,7 +211,8 @@ public class ObjectCache {
                 }
             };
         }
-        return get(context, fromCacheOnly, forceRefresh, TAG_BRAND_OWNERS, MAX_AGE_BRAND_OWNERS, serviceCall);
+        return getSynced(context, fromCacheOnly, forceRefresh, TAG_BRAND_OWNERS, NameDeltaSource
+                .LIST_BRAND_OWNERS, MAX_AGE_BRAND_OWNERS, serviceCall);
     }
 
     /**
@@ -208,11 +243,15 @@ public class ObjectCache {
         T object = null;
         if (!forceRefresh) {
             // check if already looked up
-            if (memCache.containsKey(tag)) {
+            long timeStart = System.nanoTime();
+            //noinspection unchecked
+            object = (T) memCache.get(tag);
+            if (object != null) {
+                CacheStats.recordHit(tag, CacheStats.Tier.MEMORY, System.nanoTime() - timeStart, 0);
                 Log.d(ObjectCache.class.getSimpleName(), "Requested " + tag + " from memory");
-                //noinspection unchecked
-                return (T) memCache.get(tag);
+                return object;
             }
+            CacheStats.recordMiss(tag, CacheStats.Tier.MEMORY, System.nanoTime() - timeStart);
             // look up in disk cache
             try {
                 //noinspection unchecked
@@ -234,24 +273,231 @@ public class ObjectCache {
             return null;
         }
         // remote retrieval
+        long timeStart = System.nanoTime();
         try {
             Future<T> objectFuture = serviceCall.call();
             object = objectFuture.get();
         } catch (Exception e) {
-            return null;
+            object = null;
         }
         if (object == null) {
+            CacheStats.recordMiss(tag, CacheStats.Tier.NETWORK, System.nanoTime() - timeStart);
             return null;
         }
+        CacheStats.recordHit(tag, CacheStats.Tier.NETWORK, System.nanoTime() - timeStart, 0);
         // save in local cache in the background
         final T finalObject = object;
         new Thread(new Runnable() {
             @Override
             public void run() {
-                CacheUtil.saveToDiskCache(context, tag, finalObject);
+                CacheUtil.saveToDiskCache(context, tag, finalObject, true);
             }
         }).start();
         memCache.put(tag, object);
         return object;
     }
+
+    /**
+     * Gets an append-only list of names from the (memory or disk) cache and synchronizes additions to it once
+     * it is older than {@code syncInterval}. The local copy is kept sorted and is stored separately from the
+     * time of its last synchronization so that a sync without additions does not rewrite the list. The time
+     * of the last synchronization is taken from the device clock and only decides when to synchronize next,
+     * additions are requested since the server time returned by the {@link NameDeltaSource}.
+     *
+     * If synchronization fails the stale local copy is returned.
+     *
+     * Both disk and network access are blocking - do not run on the UI thread unless you know what you are
+     * doing (i.e. variable needs to be available and is sure to have been cached in memory)!
+     *
+     * @param context
+     *         the application context
+     * @param fromCacheOnly
+     *         true to check the cache only and to not run any network query
+     * @param forceRefresh
+     *         true to synchronize regardless of the time of the last synchronization
+     * @param tag
+     *         the unique tag associated with the list
+     * @param list
+     *         the name of the list at the {@link NameDeltaSource}
+     * @param syncInterval
+     *         the amount of seconds after which additions are to be synchronized
+     * @param serviceCall
+     *         the call to the SDK service returning a Future of all names
+     * @return the sorted local copy of the list or null if neither cached nor retrievable
+     */
+    private static String[] getSynced(final Context context, boolean fromCacheOnly, boolean forceRefresh,
+            final String tag, String list, long syncInterval, Callable<Future<String[]>> serviceCall) {
+        final String syncTimeTag = tag + TAG_SUFFIX_SYNC_TIME;
+        final String syncCursorTag = tag + TAG_SUFFIX_SYNC_CURSOR;
+        long timeStart = System.nanoTime();
+        String[] names = (String[]) memCache.get(tag);
+        Long syncTime = (Long) memCache.get(syncTimeTag);
+        Long syncCursor = (Long) memCache.get(syncCursorTag);
+        if (names != null) {
+            CacheStats.recordHit(tag, CacheStats.Tier.MEMORY, System.nanoTime() - timeStart, 0);
+        } else {
+            CacheStats.recordMiss(tag, CacheStats.Tier.MEMORY, System.nanoTime() - timeStart);
+            // look up in disk cache regardless of age, the list only ever grows
+            try {
+                names = (String[]) CacheUtil.getFromDiskCache(context, tag, Long.MAX_VALUE / 1000);
+                // the sync time is bookkeeping and not reported as a cache entry
+                syncTime = (Long) CacheUtil.getFromDiskCache(context, syncTimeTag, Long.MAX_VALUE / 1000,
+                        false);
+                syncCursor = (Long) CacheUtil.getFromDiskCache(context, syncCursorTag, Long.MAX_VALUE /
+                        1000, false);
+            } catch (Exception e) {
+                Log.w(ObjectCache.class.getSimpleName(), "Error getting " + tag + " from cache", e);
+            }
+            if (names != null) {
+                Log.d(ObjectCache.class.getSimpleName(), "Requested " + tag + " from disk cache");
+                memCache.put(tag, names);
+                if (syncTime != null) {
+                    memCache.put(syncTimeTag, syncTime);
+                }
+                if (syncCursor != null) {
+                    memCache.put(syncCursorTag, syncCursor);
+                }
+            }
+        }
+        long timeCurrent = System.currentTimeMillis();
+        boolean syncDue = names == null || syncTime == null || forceRefresh || timeCurrent - syncTime >
+                syncInterval * 1000;
+        if (!syncDue || fromCacheOnly) {
+            return names;
+        }
+        // remote retrieval of additions
+        timeStart = System.nanoTime();
+        Additions result = getAdditions(names, syncCursor, list, serviceCall);
+        String[] additions = result == null ? null : result.names;
+        if (additions == null) {
+            CacheStats.recordMiss(tag, CacheStats.Tier.NETWORK, System.nanoTime() - timeStart);
+            Log.d(ObjectCache.class.getSimpleName(), "Synchronizing " + tag + " failed");
+            return names;
+        }
+        CacheStats.recordHit(tag, CacheStats.Tier.NETWORK, System.nanoTime() - timeStart, 0);
+        Log.d(ObjectCache.class.getSimpleName(), "Synchronized " + tag + ": " + additions.length + " " +
+                "additions");
+        final Long finalSyncTime = timeCurrent;
+        final String[] merged;
+        if (additions.length == 0 && names != null) {
+            merged = null;
+        } else {
+            merged = merge(names, additions);
+            memCache.put(tag, merged);
+        }
+        memCache.put(syncTimeTag, finalSyncTime);
+        final Long finalSyncCursor = result.cursor;
+        if (finalSyncCursor != null) {
+            memCache.put(syncCursorTag, finalSyncCursor);
+        }
+        // save in local cache in the background
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                if (merged != null) {
+                    CacheUtil.saveToDiskCache(context, tag, merged, true);
+                }
+                CacheUtil.saveToDiskCache(context, syncTimeTag, finalSyncTime);
+                if (finalSyncCursor != null) {
+                    CacheUtil.saveToDiskCache(context, syncCursorTag, finalSyncCursor);
+                }
+            }
+        }).start();
+        return merged == null ? names : merged;
+    }
+
+    /**
+     * Determines the names not yet contained in the sorted local copy.
+     *
+     * Asks the {@link NameDeltaSource} for the names added since the server time of the last
+     * synchronization, or for all names if there is no local copy or no server time yet. The ProductLayer
+     * API does not offer a since-parameter for name lists, so without a delta source, or if it fails, the
+     * full list is retrieved and diffed against the local copy.
+     *
+     * @param known
+     *         the sorted local copy (null if none)
+     * @param syncCursor
+     *         the server time of the last synchronization via the delta source (null if unknown)
+     * @param list
+     *         the name of the list at the delta source
+     * @param serviceCall
+     *         the call to the SDK service returning a Future of all names
+     * @return the names missing in {@code known} (unsorted) along with the server time to synchronize from
+     * next, or null on any error
+     */
+    private static Additions getAdditions(String[] known, Long syncCursor, String list,
+            Callable<Future<String[]>> serviceCall) {
+        String[] remote = null;
+        Long cursor = syncCursor;
+        NameDeltaSource source = nameDeltaSource;
+        if (source != null) {
+            long since = known == null || syncCursor == null ? 0 : syncCursor - SYNC_OVERLAP_MS;
+            try {
+                NameDeltaSource.Delta delta = source.getAdditions(list, since);
+                if (delta != null) {
+                    remote = delta.names;
+                    cursor = delta.serverTime;
+                }
+            } catch (Exception e) {
+                Log.w(ObjectCache.class.getSimpleName(), "Error getting additions to " + list, e);
+            }
+        }
+        if (remote == null) {
+            Log.d(ObjectCache.class.getSimpleName(), "Retrieving full list of " + list);
+            try {
+                remote = serviceCall.call().get();
+            } catch (Exception e) {
+                return null;
+            }
+        }
+        if (remote == null) {
+            return null;
+        }
+        if (known == null) {
+            return new Additions(remote, cursor);
+        }
+        List<String> additions = new ArrayList<String>();
+        for (String name : remote) {
+            if (name != null && Arrays.binarySearch(known, name) < 0) {
+                additions.add(name);
+            }
+        }
+        return new Additions(additions.toArray(new String[additions.size()]), cursor);
+    }
+
+    /**
+     * Merges additions into a sorted list of names, dropping any duplicates.
+     *
+     * @param known
+     *         the sorted local copy (null if none)
+     * @param additions
+     *         the names to add
+     * @return a new sorted array containing all names
+     */
+    private static String[] merge(String[] known, String[] additions) {
+        Set<String> merged = new TreeSet<String>();
+        if (known != null) {
+            merged.addAll(Arrays.asList(known));
+        }
+        for (String name : additions) {
+            if (name != null) {
+                merged.add(name);
+            }
+        }
+        return merged.toArray(new String[merged.size()]);
+    }
+
+    /**
+     * The names missing in a local copy of a list and the server time to synchronize additions from next.
+     */
+    private static class Additions {
+
+        final String[] names;
+        final Long cursor;
+
+        Additions(String[] names, Long cursor) {
+            this.names = names;
+            this.cursor = cursor;
+        }
+    }
 }
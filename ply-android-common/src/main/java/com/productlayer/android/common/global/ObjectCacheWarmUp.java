@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2015, ProductLayer GmbH All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.productlayer.android.common.global;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.Process;
+import android.util.Log;
+
+import com.productlayer.android.common.util.NetworkUtil;
+import com.productlayer.android.sdk.PLYAndroid;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Loads the reference datasets of {@link ObjectCache} and {@link LocalizationCache} in parallel and at low
+ * priority once the first frame of an activity has been drawn, so that screens depending on them do not need
+ * to block on their retrieval.
+ *
+ * On metered networks only datasets marked as small are retrieved remotely, the others are restored from the
+ * local cache if available.
+ */
+public class ObjectCacheWarmUp {
+
+    private static final int THREAD_POOL_SIZE = 3;
+
+    private static final Map<Dataset, Boolean> readiness = new ConcurrentHashMap<Dataset, Boolean>();
+
+    private static ExecutorService threadPool;
+
+    /**
+     * Schedules all datasets to be loaded after the first frame of {@code activity} has been drawn.
+     *
+     * @param activity
+     *         the activity about to display its first frame
+     * @param client
+     *         the ProductLayer Android SDK client
+     * @see #start(Activity, PLYAndroid, Dataset...)
+     */
+    public static void start(Activity activity, PLYAndroid client) {
+        start(activity, client, Dataset.values());
+    }
+
+    /**
+     * Schedules the specified datasets to be loaded after the first frame of {@code activity} has been drawn.
+     * Datasets that are already available in memory are skipped.
+     *
+     * @param activity
+     *         the activity about to display its first frame
+     * @param client
+     *         the ProductLayer Android SDK client
+     * @param datasets
+     *         the datasets to load
+     */
+    public static void start(Activity activity, final PLYAndroid client, final Dataset... datasets) {
+        final Context context = activity.getApplicationContext();
+        // runs after the next traversal, i.e. once the first frame is on its way
+        activity.getWindow().getDecorView().post(new Runnable() {
+            @Override
+            public void run() {
+                boolean metered = NetworkUtil.isActiveNetworkMetered(context);
+                ExecutorService executor = getThreadPool();
+                for (final Dataset dataset : datasets) {
+                    if (isReady(dataset)) {
+                        continue;
+                    }
+                    final boolean fromCacheOnly = metered && !dataset.loadOnMeteredNetwork;
+                    executor.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            load(context, client, dataset, fromCacheOnly);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * @param dataset
+     *         the dataset to check
+     * @return true if the dataset has been loaded into the memory cache of {@link ObjectCache} or has been
+     * mapped by {@link LocalizationCache}, false else
+     */
+    public static boolean isReady(Dataset dataset) {
+        Boolean ready = readiness.get(dataset);
+        return ready != null && ready;
+    }
+
+    /**
+     * Loads a single dataset into {@link ObjectCache} or {@link LocalizationCache} and records whether it is
+     * available.
+     *
+     * @param context
+     *         the application context
+     * @param client
+     *         the ProductLayer Android SDK client
+     * @param dataset
+     *         the dataset to load
+     * @param fromCacheOnly
+     *         true to check the cache only and to not run any network query
+     */
+    private static void load(Context context, PLYAndroid client, Dataset dataset, boolean fromCacheOnly) {
+        boolean ready;
+        switch (dataset) {
+            case CATEGORIES:
+                ready = ObjectCache.getCategories(context, client, fromCacheOnly, false) != null;
+                break;
+            case BRANDS:
+                ready = ObjectCache.getBrands(context, client, fromCacheOnly, false) != null;
+                break;
+            case BRAND_OWNERS:
+                ready = ObjectCache.getBrandOwners(context, client, fromCacheOnly, false) != null;
+                break;
+            case LOCALIZED_CATEGORIES:
+                ready = LocalizationCache.load(context, client, LocalizationCache.Dictionary.CATEGORIES,
+                        client.getLanguage(), fromCacheOnly);
+                break;
+            case LOCALIZED_NUTRITION:
+                ready = LocalizationCache.load(context, client, LocalizationCache.Dictionary.NUTRITION,
+                        client.getLanguage(), fromCacheOnly);
+                break;
+            default:
+                return;
+        }
+        readiness.put(dataset, ready);
+        Log.d(ObjectCacheWarmUp.class.getSimpleName(), "Warm-up of " + dataset + (ready ? " done" : " " +
+                "failed") + (fromCacheOnly ? " (metered network, cache only)" : ""));
+    }
+
+    /**
+     * @return the thread pool running warm-up tasks at background priority, created on first use
+     */
+    private static synchronized ExecutorService getThreadPool() {
+        if (threadPool == null) {
+            threadPool = Executors.newFixedThreadPool(THREAD_POOL_SIZE, new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    return new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            r.run();
+                        }
+                    }, "ObjectCacheWarmUp");
+                }
+            });
+        }
+        return threadPool;
+    }
+
+    /**
+     * The reference datasets that may be warmed up.
+     */
+    public enum Dataset {
+        CATEGORIES(true),
+        BRANDS(false),
+        BRAND_OWNERS(false),
+        LOCALIZED_CATEGORIES(true),
+        LOCALIZED_NUTRITION(true);
+
+        private final boolean loadOnMeteredNetwork;
+
+        /**
+         * @param loadOnMeteredNetwork
+         *         true if the dataset is small enough to be retrieved remotely on metered networks
+         */
+        Dataset(boolean loadOnMeteredNetwork) {
+            this.loadOnMeteredNetwork = loadOnMeteredNetwork;
+        }
+    }
+}
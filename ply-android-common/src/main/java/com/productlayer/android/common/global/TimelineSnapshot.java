@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2015, ProductLayer GmbH All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.productlayer.android.common.global;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.productlayer.android.common.adapter.TimelineAdapter;
+import com.productlayer.android.common.util.CacheUtil;
+import com.productlayer.core.beans.BaseObject;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The first pages of items of a timeline along with the URLs to retrieve the pages and the items around
+ * them, persisted in the object disk cache to be displayed on the next start of the app before any network
+ * query returns.
+ */
+public class TimelineSnapshot implements Serializable {
+
+    private static final long serialVersionUID = 2L;
+
+    private static final String TAG_PREFIX = "timeline_";
+    private static final int MAX_AGE = 7 * 86400; // 7 days
+
+    // snapshots are written one after the other so that the latest one wins
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor();
+
+    public final String identifier;
+    public final int settings;
+    public final ArrayList<BaseObject> items;
+    public final ArrayList<TimelineAdapter.Page> pages;
+
+    /**
+     * @param identifier
+     *         the gtin if a product timeline, the user ID if a user timeline, null if a global timeline
+     * @param settings
+     *         the display settings the items were retrieved with
+     * @param items
+     *         the first items of the timeline
+     * @param pages
+     *         the pages the items have been retrieved in, from the top of the timeline
+     */
+    public TimelineSnapshot(String identifier, int settings, ArrayList<BaseObject> items,
+            ArrayList<TimelineAdapter.Page> pages) {
+        this.identifier = identifier;
+        this.settings = settings;
+        this.items = items;
+        this.pages = pages;
+    }
+
+    /**
+     * Loads the snapshot of a timeline. Disk access is blocking - do not run on the UI thread!
+     *
+     * @param context
+     *         the application context
+     * @param type
+     *         the type of the timeline
+     * @param identifier
+     *         the gtin if a product timeline, the user ID if a user timeline, null if a global timeline
+     * @param settings
+     *         the display settings of the timeline
+     * @return the snapshot or null if none was saved recently for the timeline and its settings
+     */
+    public static TimelineSnapshot load(Context context, TimelineAdapter.TimelineType type, String identifier,
+            int settings) {
+        Object object = CacheUtil.getFromDiskCache(context, getTag(type, identifier), MAX_AGE);
+        if (!(object instanceof TimelineSnapshot)) {
+            return null;
+        }
+        TimelineSnapshot snapshot = (TimelineSnapshot) object;
+        if (snapshot.settings != settings || (identifier == null ? snapshot.identifier != null : !identifier
+                .equals(snapshot.identifier)) || snapshot.items == null || snapshot.items.isEmpty() ||
+                snapshot.pages == null || snapshot.pages.isEmpty()) {
+            // saved with different settings or for a different timeline sharing the tag
+            return null;
+        }
+        Log.d(TimelineSnapshot.class.getSimpleName(), "Loaded " + snapshot.items.size() + " items of " +
+                type.name() + " timeline");
+        return snapshot;
+    }
+
+    /**
+     * Saves the snapshot of a timeline, replacing any previous snapshot. The snapshot is serialized on the
+     * calling thread so that its items may be modified right after, and written to disk in the background in
+     * the order of the calls.
+     *
+     * @param context
+     *         the application context
+     * @param type
+     *         the type of the timeline
+     * @param snapshot
+     *         the snapshot to save
+     */
+    public static void save(final Context context, TimelineAdapter.TimelineType type, TimelineSnapshot
+            snapshot) {
+        final String tag = getTag(type, snapshot.identifier);
+        final byte[] serialized;
+        try {
+            serialized = CacheUtil.serialize(snapshot);
+        } catch (IOException e) {
+            Log.w(TimelineSnapshot.class.getSimpleName(), "Error serializing " + type.name() + " timeline",
+                    e);
+            return;
+        }
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                CacheUtil.saveSerializedToDiskCache(context, tag, serialized, true);
+            }
+        });
+    }
+
+    /**
+     * @return the tag of the timeline in the object disk cache, restricted to the characters allowed for
+     * keys
+     */
+    private static String getTag(TimelineAdapter.TimelineType type, String identifier) {
+        String tag = TAG_PREFIX + type.name().toLowerCase(Locale.US);
+        if (identifier != null) {
+            // identifiers may contain any characters - hash collisions are detected on loading
+            tag += "_" + Integer.toHexString(identifier.hashCode());
+        }
+        return tag;
+    }
+}
@@ -0,0 +1,691 @@
+/*
+ * Copyright (c) 2015, ProductLayer GmbH All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.productlayer.android.common.global;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.productlayer.android.common.handler.DataChangeListener;
+import com.productlayer.android.common.util.CacheUtil;
+import com.productlayer.android.common.util.ImagePreprocessor;
+import com.productlayer.android.sdk.PLYAndroid;
+import com.productlayer.android.sdk.PLYChunkedUploader;
+import com.productlayer.android.sdk.PLYCompletion;
+import com.productlayer.android.sdk.PLYUploadProgressListener;
+import com.productlayer.android.sdk.services.ImageService;
+import com.productlayer.core.beans.ProductImage;
+import com.productlayer.core.beans.UserAvatarImage;
+import com.productlayer.core.error.PLYHttpException;
+
+import org.springframework.web.client.HttpStatusCodeException;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Uploads product images, opinion images and avatars in parallel, independent of any ordered client used for
+ * product creation and updates. Callers keep ordering where it matters by enqueuing the images of a new
+ * product once it has been created.
+ *
+ * The number of concurrent uploads adapts to the measured throughput: after each window of completed uploads
+ * the aggregate throughput is compared to that of the previous window, and concurrency keeps moving in the
+ * same direction while throughput improves and reverses when it drops. Images are shrunk one at a time on a
+ * separate stage ahead of the uploads, so only the network transfers run in parallel and concurrent uploads
+ * do not multiply the memory needed to decode full-size images.
+ *
+ * If a chunked upload endpoint is set, images are sent via {@link PLYChunkedUploader}. An upload interrupted
+ * by a dropped connection, a server error or process death keeps its session and its prepared image and is
+ * resumed by {@link #resumePendingUploads} on the next start of the app. Only uploads rejected by the server
+ * are dropped.
+ */
+public class UploadQueue {
+
+    private static final int MIN_CONCURRENCY = 1;
+    private static final int MAX_CONCURRENCY = 4;
+    private static final int INITIAL_CONCURRENCY = 2;
+
+    // relative change in throughput below which concurrency is left unchanged
+    private static final double THROUGHPUT_TOLERANCE = 0.1;
+
+    private static final String TYPE_PRODUCT_IMAGE = "product";
+    private static final String TYPE_OPINE_IMAGE = "opine";
+    private static final String TYPE_USER_AVATAR = "user";
+
+    // the pending chunked uploads to resume on the next start, keyed by upload ID
+    private static final String PREFS_NAME = "PLYUploadQueue";
+    private static final String STATE_TYPE = ".type";
+    private static final String STATE_TARGET = ".target";
+    private static final String STATE_SOURCE = ".source";
+    private static final String STATE_PREPARED = ".prepared";
+
+    private static final LinkedList<Upload<?>> pending = new LinkedList<Upload<?>>();
+    private static final Set<String> activeUploadIDs = new HashSet<String>();
+
+    private static ExecutorService threadPool;
+    private static ExecutorService preparer;
+
+    private static volatile String chunkedEndpointFormat;
+    private static boolean pendingUploadsResumed;
+
+    private static int concurrency = INITIAL_CONCURRENCY;
+    private static int direction = 1;
+    private static int running;
+    private static int preparing;
+
+    // the current measurement window
+    private static long windowStart;
+    private static long windowBytes;
+    private static int windowUploads;
+    private static double lastThroughput;
+
+    /**
+     * Shrinks a product image and queues it for upload.
+     *
+     * @param context
+     *         the application context
+     * @param client
+     *         the ProductLayer Android SDK client to upload with (should allow concurrent execution)
+     * @param gtin
+     *         the GTIN of the product the image belongs to
+     * @param imagePath
+     *         the path to the image to upload
+     * @param completion
+     *         dealing with any errors or successful completion of the upload
+     * @see #enqueueProductImage(Context, PLYAndroid, String, String, PLYUploadProgressListener,
+     * PLYCompletion)
+     */
+    public static void enqueueProductImage(Context context, PLYAndroid client, String gtin, String imagePath,
+            PLYCompletion<ProductImage> completion) {
+        enqueueProductImage(context, client, gtin, imagePath, null, completion);
+    }
+
+    /**
+     * Shrinks a product image and queues it for upload.
+     *
+     * @param context
+     *         the application context
+     * @param client
+     *         the ProductLayer Android SDK client to upload with (should allow concurrent execution)
+     * @param gtin
+     *         the GTIN of the product the image belongs to
+     * @param imagePath
+     *         the path to the image to upload, must not be modified until the upload has completed
+     * @param progressListener
+     *         the listener to report the progress of a chunked upload to or null
+     * @param completion
+     *         dealing with any errors or successful completion of the upload
+     */
+    public static void enqueueProductImage(Context context, PLYAndroid client, String gtin, String imagePath,
+            PLYUploadProgressListener progressListener, PLYCompletion<ProductImage> completion) {
+        enqueue(new ProductImageUpload(context.getApplicationContext(), client, gtin, imagePath,
+                progressListener, completion));
+    }
+
+    /**
+     * Shrinks an opinion image and queues it for upload.
+     *
+     * @param context
+     *         the application context
+     * @param client
+     *         the ProductLayer Android SDK client to upload with (should allow concurrent execution)
+     * @param opineID
+     *         the identifier of the opinion the image belongs to
+     * @param imagePath
+     *         the path to the image to upload, must not be modified until the upload has completed
+     * @param progressListener
+     *         the listener to report the progress of a chunked upload to or null
+     * @param completion
+     *         dealing with any errors or successful completion of the upload
+     */
+    public static void enqueueOpineImage(Context context, PLYAndroid client, String opineID, String imagePath,
+            PLYUploadProgressListener progressListener, PLYCompletion<ProductImage> completion) {
+        enqueue(new OpineImageUpload(context.getApplicationContext(), client, opineID, imagePath,
+                progressListener, completion));
+    }
+
+    /**
+     * Shrinks an avatar image to the maximum avatar size and queues it for upload.
+     *
+     * @param context
+     *         the application context
+     * @param client
+     *         the ProductLayer Android SDK client to upload with (should allow concurrent execution)
+     * @param userID
+     *         the identifier of the user to update the avatar of
+     * @param imagePath
+     *         the path to the image to upload, must not be modified until the upload has completed
+     * @param progressListener
+     *         the listener to report the progress of a chunked upload to or null
+     * @param completion
+     *         dealing with any errors or successful completion of the upload
+     */
+    public static void enqueueUserAvatar(Context context, PLYAndroid client, String userID, String imagePath,
+            PLYUploadProgressListener progressListener, PLYCompletion<UserAvatarImage> completion) {
+        enqueue(new UserAvatarUpload(context.getApplicationContext(), client, userID, imagePath,
+                progressListener, completion));
+    }
+
+    /**
+     * Switches uploads to resumable chunked uploads via {@link PLYChunkedUploader}. Off by default as the
+     * ProductLayer API does not offer a chunked upload endpoint.
+     *
+     * @param endpointFormat
+     *         the URL to create upload sessions at with {@code %1$s} standing for the type of the resource
+     *         the image is attached to ({@code product}, {@code opine} or {@code user}) and {@code %2$s} for
+     *         its identifier (GTIN, opinion ID or user ID), or null to upload each image in a single request
+     */
+    public static void setChunkedUploadEndpoint(String endpointFormat) {
+        chunkedEndpointFormat = endpointFormat;
+    }
+
+    /**
+     * Queues all chunked uploads that have been interrupted in a previous run of the app, resuming them from
+     * the last chunk acknowledged by the server. Uploaded product images are announced via {@link
+     * DataChangeListener#imageCreate}. Does nothing when called again within the same process.
+     *
+     * @param context
+     *         the application context
+     * @param client
+     *         the ProductLayer Android SDK client to upload with (should allow concurrent execution)
+     */
+    public static void resumePendingUploads(Context context, PLYAndroid client) {
+        synchronized (UploadQueue.class) {
+            if (pendingUploadsResumed) {
+                return;
+            }
+            pendingUploadsResumed = true;
+        }
+        Context appContext = context.getApplicationContext();
+        SharedPreferences prefs = getPrefs(appContext);
+        for (String key : prefs.getAll().keySet()) {
+            if (!key.endsWith(STATE_TYPE)) {
+                continue;
+            }
+            String uploadID = key.substring(0, key.length() - STATE_TYPE.length());
+            String type = prefs.getString(uploadID + STATE_TYPE, null);
+            String targetID = prefs.getString(uploadID + STATE_TARGET, null);
+            String imagePath = prefs.getString(uploadID + STATE_SOURCE, null);
+            Upload<?> upload = null;
+            if (targetID != null && imagePath != null) {
+                upload = createResumedUpload(appContext, client, type, targetID, imagePath);
+            }
+            if (upload == null || !uploadID.equals(upload.uploadID)) {
+                // the source image has been modified or deleted since
+                Log.d(UploadQueue.class.getSimpleName(), "Dropping stale pending upload " + uploadID);
+                forgetPendingUpload(appContext, uploadID);
+                continue;
+            }
+            Log.d(UploadQueue.class.getSimpleName(), "Resuming pending upload " + uploadID);
+            enqueue(upload);
+        }
+    }
+
+    /**
+     * @return the number of uploads that are queued or running
+     */
+    public static synchronized int size() {
+        return preparing + pending.size() + running;
+    }
+
+    /**
+     * Hands an upload to the preparation stage, which shrinks one image at a time and then queues the upload
+     * for the network transfer.
+     */
+    private static synchronized void enqueue(final Upload<?> upload) {
+        if (!activeUploadIDs.add(upload.uploadID)) {
+            // the same image is already being uploaded, do not share its session
+            upload.uploadID += "_" + SystemClock.elapsedRealtime();
+            activeUploadIDs.add(upload.uploadID);
+        }
+        preparing++;
+        getPreparer().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    upload.prepareUpload();
+                } finally {
+                    onPrepared(upload);
+                }
+            }
+        });
+    }
+
+    /**
+     * Queues a prepared upload for the network transfer.
+     */
+    private static synchronized void onPrepared(Upload<?> upload) {
+        preparing--;
+        if (upload.uploadPath == null) {
+            // preparation failed
+            activeUploadIDs.remove(upload.uploadID);
+            return;
+        }
+        pending.add(upload);
+        schedule();
+    }
+
+    /**
+     * Starts queued uploads as long as the current concurrency limit allows. Must be called while holding the
+     * class lock.
+     */
+    private static void schedule() {
+        while (running < concurrency && !pending.isEmpty()) {
+            final Upload<?> upload = pending.removeFirst();
+            if (running == 0) {
+                windowStart = SystemClock.elapsedRealtime();
+                windowBytes = 0;
+                windowUploads = 0;
+            }
+            running++;
+            getThreadPool().execute(new Runnable() {
+                @Override
+                public void run() {
+                    long bytes = 0;
+                    try {
+                        bytes = upload.run();
+                    } finally {
+                        // a failed upload must still free its slot
+                        onFinished(upload, bytes);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Accounts for a finished upload, adapts the concurrency limit at the end of a measurement window and
+     * starts further queued uploads.
+     *
+     * @param upload
+     *         the finished upload
+     * @param bytes
+     *         the number of bytes transferred or 0 if the upload failed
+     */
+    private static synchronized void onFinished(Upload<?> upload, long bytes) {
+        running--;
+        activeUploadIDs.remove(upload.uploadID);
+        windowBytes += bytes;
+        windowUploads++;
+        if (windowUploads >= concurrency) {
+            long duration = Math.max(1, SystemClock.elapsedRealtime() - windowStart);
+            double throughput = windowBytes / (double) duration;
+            if (lastThroughput > 0) {
+                if (throughput < lastThroughput * (1 - THROUGHPUT_TOLERANCE)) {
+                    direction = -direction;
+                    concurrency += direction;
+                } else if (throughput > lastThroughput * (1 + THROUGHPUT_TOLERANCE)) {
+                    concurrency += direction;
+                }
+                concurrency = Math.max(MIN_CONCURRENCY, Math.min(MAX_CONCURRENCY, concurrency));
+            } else {
+                concurrency += direction;
+                concurrency = Math.min(MAX_CONCURRENCY, concurrency);
+            }
+            Log.d(UploadQueue.class.getSimpleName(), "Upload throughput " + Math.round(throughput) +
+                    " B/ms, concurrency now " + concurrency);
+            lastThroughput = throughput;
+            windowStart = SystemClock.elapsedRealtime();
+            windowBytes = 0;
+            windowUploads = 0;
+        }
+        if (running == 0 && pending.isEmpty() && preparing == 0) {
+            // idle time must not count against the next window
+            lastThroughput = 0;
+        }
+        schedule();
+    }
+
+    /**
+     * @return the thread pool waiting for uploads
+     */
+    private static synchronized ExecutorService getThreadPool() {
+        if (threadPool == null) {
+            threadPool = Executors.newCachedThreadPool(new BackgroundThreadFactory());
+        }
+        return threadPool;
+    }
+
+    /**
+     * @return the single thread shrinking images ahead of their uploads
+     */
+    private static synchronized ExecutorService getPreparer() {
+        if (preparer == null) {
+            preparer = Executors.newSingleThreadExecutor(new BackgroundThreadFactory());
+        }
+        return preparer;
+    }
+
+    private static SharedPreferences getPrefs(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Recreates an upload persisted by a previous run of the app, announcing its result to any interested
+     * components instead of the caller that enqueued it.
+     *
+     * @return the upload or null if the type is unknown
+     */
+    private static Upload<?> createResumedUpload(Context context, PLYAndroid client, String type, final String
+            targetID, String imagePath) {
+        if (TYPE_PRODUCT_IMAGE.equals(type)) {
+            return new ProductImageUpload(context, client, targetID, imagePath, null, new
+                    PLYCompletion<ProductImage>() {
+                @Override
+                public void onSuccess(ProductImage result) {
+                    Log.d(UploadQueue.class.getSimpleName(), "Pending image of product " + targetID +
+                            " uploaded");
+                    DataChangeListener.imageCreate(result);
+                }
+
+                @Override
+                public void onError(PLYAndroid.QueryError error) {
+                    Log.d(UploadQueue.class.getSimpleName(), error.getMessage());
+                }
+            });
+        }
+        if (TYPE_OPINE_IMAGE.equals(type)) {
+            return new OpineImageUpload(context, client, targetID, imagePath, null, new
+                    PLYCompletion<ProductImage>() {
+                @Override
+                public void onSuccess(ProductImage result) {
+                    Log.d(UploadQueue.class.getSimpleName(), "Pending image of opinion " + targetID +
+                            " uploaded");
+                }
+
+                @Override
+                public void onError(PLYAndroid.QueryError error) {
+                    Log.d(UploadQueue.class.getSimpleName(), error.getMessage());
+                }
+            });
+        }
+        if (TYPE_USER_AVATAR.equals(type)) {
+            final String avatarUrlPrefix = ImageService.getUserAvatarURLPrefix(client, targetID);
+            return new UserAvatarUpload(context, client, targetID, imagePath, null, new
+                    PLYCompletion<UserAvatarImage>() {
+                @Override
+                public void onSuccess(UserAvatarImage result) {
+                    Log.d(UploadQueue.class.getSimpleName(), "Pending avatar of user " + targetID +
+                            " uploaded");
+                    // evict the previous avatar in all sizes from memory and disk cache
+                    AvatarCache.invalidate(targetID);
+                    if (avatarUrlPrefix != null) {
+                        CacheUtil.invalidatePicassoImages(avatarUrlPrefix);
+                    }
+                }
+
+                @Override
+                public void onError(PLYAndroid.QueryError error) {
+                    Log.d(UploadQueue.class.getSimpleName(), error.getMessage());
+                }
+            });
+        }
+        return null;
+    }
+
+    /**
+     * Discards the session and the prepared image of a pending upload and removes it from the uploads to
+     * resume.
+     */
+    private static void forgetPendingUpload(Context context, String uploadID) {
+        SharedPreferences prefs = getPrefs(context);
+        String imagePath = prefs.getString(uploadID + STATE_SOURCE, null);
+        String preparedPath = prefs.getString(uploadID + STATE_PREPARED, null);
+        if (imagePath != null && preparedPath != null) {
+            ImagePreprocessor.discard(imagePath, preparedPath);
+        }
+        PLYChunkedUploader.discard(context, uploadID);
+        prefs.edit().remove(uploadID + STATE_TYPE).remove(uploadID + STATE_TARGET).remove(uploadID +
+                STATE_SOURCE).remove(uploadID + STATE_PREPARED).apply();
+    }
+
+    /**
+     * @param cause
+     *         the cause of a failed upload
+     * @return true if the server rejected the upload, false if it may succeed when retried later on
+     */
+    private static boolean isRejected(Throwable cause) {
+        int status = -1;
+        if (cause instanceof HttpStatusCodeException) {
+            status = ((HttpStatusCodeException) cause).getStatusCode().value();
+        } else if (cause instanceof PLYHttpException) {
+            status = ((PLYHttpException) cause).getHttpStatus();
+        }
+        // client errors other than timeouts and rate limiting do not go away on retrying
+        return status >= 400 && status < 500 && status != 408 && status != 429;
+    }
+
+    /**
+     * A queued image upload.
+     *
+     * @param <T>
+     *         the type of the object the server responds with
+     */
+    private abstract static class Upload<T> {
+
+        protected final Context context;
+        protected final PLYAndroid client;
+        protected final String targetID;
+        protected final String imagePath;
+        private final String type;
+        private final Class<T> resultType;
+        private final PLYUploadProgressListener progressListener;
+        protected final PLYCompletion<T> completion;
+
+        // stable across process restarts as long as the source image is not modified
+        private String uploadID;
+
+        // set by the preparation stage
+        private String uploadPath;
+        private String endpointFormat;
+
+        private Upload(Context context, PLYAndroid client, String type, String targetID, String imagePath,
+                Class<T> resultType, PLYUploadProgressListener progressListener, PLYCompletion<T>
+                completion) {
+            this.context = context;
+            this.client = client;
+            this.type = type;
+            this.targetID = targetID;
+            this.imagePath = imagePath;
+            this.resultType = resultType;
+            this.progressListener = progressListener;
+            this.completion = completion;
+            File source = new File(imagePath);
+            uploadID = type + "_" + targetID + "_" + Integer.toHexString((imagePath + ":" + source.length() +
+                    ":" + source.lastModified()).hashCode());
+        }
+
+        /**
+         * Shrinks the image unless an interrupted chunked upload has left its prepared image behind. Runs on
+         * the preparation stage.
+         */
+        private void prepareUpload() {
+            endpointFormat = chunkedEndpointFormat;
+            if (endpointFormat == null) {
+                // chunked uploads may have been switched off since the upload was interrupted
+                forgetPendingUpload(context, uploadID);
+                uploadPath = prepare();
+                return;
+            }
+            // an interrupted upload continues with the image prepared back then
+            SharedPreferences prefs = getPrefs(context);
+            String path = prefs.getString(uploadID + STATE_PREPARED, null);
+            if (path == null || !new File(path).isFile()) {
+                path = prepare();
+                prefs.edit().putString(uploadID + STATE_TYPE, type).putString(uploadID + STATE_TARGET,
+                        targetID).putString(uploadID + STATE_SOURCE, imagePath).putString(uploadID +
+                        STATE_PREPARED, path).apply();
+            }
+            uploadPath = path;
+        }
+
+        /**
+         * Uploads the prepared image, waiting for the upload to finish.
+         *
+         * @return the number of bytes uploaded or 0 if the upload failed
+         */
+        private long run() {
+            if (endpointFormat == null) {
+                return runAtOnce();
+            }
+            String endpointURL = String.format(Locale.US, endpointFormat, type, targetID);
+            PLYChunkedUploader uploader = new PLYChunkedUploader(context, client, endpointURL);
+            long bytes = new File(uploadPath).length();
+            boolean finished = false;
+            try {
+                uploader.upload(uploadID, uploadPath, resultType, progressListener, completion).get();
+                finished = true;
+                return bytes;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return 0;
+            } catch (ExecutionException e) {
+                // reported to the completion object, resumed on the next start unless rejected
+                finished = isRejected(e.getCause());
+                return 0;
+            } catch (CancellationException e) {
+                return 0;
+            } finally {
+                if (finished) {
+                    forgetPendingUpload(context, uploadID);
+                }
+            }
+        }
+
+        /**
+         * Uploads the prepared image in a single request.
+         *
+         * @return the number of bytes uploaded or 0 if the upload failed
+         */
+        private long runAtOnce() {
+            try {
+                long bytes = new File(uploadPath).length();
+                uploadAtOnce(uploadPath).get();
+                return bytes;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return 0;
+            } catch (ExecutionException e) {
+                // reported to the completion object
+                return 0;
+            } catch (CancellationException e) {
+                return 0;
+            } finally {
+                ImagePreprocessor.discard(imagePath, uploadPath);
+            }
+        }
+
+        /**
+         * @return the path to the image prepared for upload
+         */
+        protected String prepare() {
+            return ImagePreprocessor.prepareForUpload(context, imagePath);
+        }
+
+        /**
+         * Uploads the prepared image in a single request.
+         *
+         * @param uploadPath
+         *         the path to the prepared image
+         * @return a Future object to wait for the result with
+         */
+        protected abstract Future<T> uploadAtOnce(String uploadPath);
+    }
+
+    private static class ProductImageUpload extends Upload<ProductImage> {
+
+        private ProductImageUpload(Context context, PLYAndroid client, String gtin, String imagePath,
+                PLYUploadProgressListener progressListener, PLYCompletion<ProductImage> completion) {
+            super(context, client, TYPE_PRODUCT_IMAGE, gtin, imagePath, ProductImage.class, progressListener,
+                    completion);
+        }
+
+        @Override
+        protected Future<ProductImage> uploadAtOnce(String uploadPath) {
+            return ImageService.uploadProductImage(client, targetID, uploadPath, completion);
+        }
+    }
+
+    private static class OpineImageUpload extends Upload<ProductImage> {
+
+        private OpineImageUpload(Context context, PLYAndroid client, String opineID, String imagePath,
+                PLYUploadProgressListener progressListener, PLYCompletion<ProductImage> completion) {
+            super(context, client, TYPE_OPINE_IMAGE, opineID, imagePath, ProductImage.class, progressListener,
+                    completion);
+        }
+
+        @Override
+        protected Future<ProductImage> uploadAtOnce(String uploadPath) {
+            return ImageService.uploadOpineImage(client, targetID, uploadPath, completion);
+        }
+    }
+
+    private static class UserAvatarUpload extends Upload<UserAvatarImage> {
+
+        private UserAvatarUpload(Context context, PLYAndroid client, String userID, String imagePath,
+                PLYUploadProgressListener progressListener, PLYCompletion<UserAvatarImage> completion) {
+            super(context, client, TYPE_USER_AVATAR, userID, imagePath, UserAvatarImage.class,
+                    progressListener, completion);
+        }
+
+        @Override
+        protected String prepare() {
+            return ImagePreprocessor.prepareForUpload(context, imagePath, ImagePreprocessor.AVATAR_MAX_EDGE,
+                    ImagePreprocessor.DEFAULT_QUALITY, ImagePreprocessor.DEFAULT_MAX_BYTES);
+        }
+
+        @Override
+        protected Future<UserAvatarImage> uploadAtOnce(String uploadPath) {
+            return ImageService.updateUserAvatar(client, targetID, uploadPath, completion);
+        }
+    }
+
+    /**
+     * Creates threads running at background priority.
+     */
+    private static class BackgroundThreadFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(final Runnable r) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }
+            }, "UploadQueue");
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2015, ProductLayer GmbH All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.productlayer.android.common.handler;
+
+import android.content.Context;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.StaggeredGridLayoutManager;
+
+import com.productlayer.android.common.util.MetricsUtil;
+import com.productlayer.android.common.util.ProgressiveImageLoader;
+import com.squareup.picasso.Picasso;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * OnScrollListener to accompany an {@link EdgeScrollListener}. Prefetches the images of the next rows in
+ * scroll direction into Picasso's cache so they are shown right away on binding, pauses loading images
+ * while flinging fast and cancels prefetches of items that have left the prefetch range.
+ */
+public class ImagePrefetchScrollListener extends RecyclerView.OnScrollListener {
+
+    private static final int PAUSE_DP_PER_FRAME = 60;
+    private static final int RESUME_DP_PER_FRAME = 20;
+
+    private final Picasso picasso;
+    private final StaggeredGridLayoutManager gridLayoutManager;
+    private final ImageUrlProvider imageUrlProvider;
+    private final int prefetchItems;
+    private final int pausePxPerFrame;
+    private final int resumePxPerFrame;
+    private final Object prefetchTag = new Object();
+
+    private Set<String> prefetchedUrls = new HashSet<String>();
+    private int scrollState = RecyclerView.SCROLL_STATE_IDLE;
+    private boolean scrollingDown = true;
+    private boolean paused;
+    private int rangeFrom = -1;
+    private int rangeTo = -1;
+
+    /**
+     * Creates a new ImagePrefetchScrollListener.
+     *
+     * @param context
+     *         the application context
+     * @param gridLayoutManager
+     *         the layout manager to question for item visibility
+     * @param imageUrlProvider
+     *         the provider of the image URL of an item, usually the adapter
+     * @param prefetchItems
+     *         the amount of items beyond the visible ones to prefetch in scroll direction
+     */
+    public ImagePrefetchScrollListener(Context context, StaggeredGridLayoutManager gridLayoutManager,
+            ImageUrlProvider imageUrlProvider, int prefetchItems) {
+        this.picasso = Picasso.with(context);
+        this.gridLayoutManager = gridLayoutManager;
+        this.imageUrlProvider = imageUrlProvider;
+        this.prefetchItems = prefetchItems;
+        this.pausePxPerFrame = MetricsUtil.inPx(PAUSE_DP_PER_FRAME);
+        this.resumePxPerFrame = MetricsUtil.inPx(RESUME_DP_PER_FRAME);
+    }
+
+    @Override
+    public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+        super.onScrollStateChanged(recyclerView, newState);
+        scrollState = newState;
+        if (newState != RecyclerView.SCROLL_STATE_SETTLING) {
+            // finger down or scrolling stopped, show what is on screen and prefetch what comes next
+            resume();
+            prefetch();
+        }
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        super.onScrolled(recyclerView, dx, dy);
+        if (dy != 0) {
+            scrollingDown = dy > 0;
+        }
+        int speed = Math.abs(dy);
+        if (scrollState == RecyclerView.SCROLL_STATE_SETTLING && speed > pausePxPerFrame) {
+            // decoding images that will be off screen a moment later only makes scrolling stutter
+            pause();
+        } else if (paused && speed < resumePxPerFrame) {
+            resume();
+        }
+        if (!paused) {
+            prefetch();
+        }
+    }
+
+    /**
+     * Cancels all prefetches and resumes loading images. Should be called when the RecyclerView is destroyed.
+     */
+    public void release() {
+        picasso.cancelTag(prefetchTag);
+        prefetchedUrls.clear();
+        rangeFrom = -1;
+        rangeTo = -1;
+        resume();
+    }
+
+    private void pause() {
+        if (!paused) {
+            paused = true;
+            picasso.pauseTag(ProgressiveImageLoader.LOAD_TAG);
+            picasso.pauseTag(prefetchTag);
+        }
+    }
+
+    private void resume() {
+        if (paused) {
+            paused = false;
+            picasso.resumeTag(ProgressiveImageLoader.LOAD_TAG);
+            picasso.resumeTag(prefetchTag);
+        }
+    }
+
+    /**
+     * Prefetches the images of the items following the visible ones in scroll direction. Only touches Picasso
+     * if the prefetch range changed, and cancels outstanding prefetches if an item left the range.
+     */
+    private void prefetch() {
+        int itemCount = gridLayoutManager.getItemCount();
+        int from;
+        int to;
+        if (scrollingDown) {
+            int last = max(gridLayoutManager.findLastVisibleItemPositions(null));
+            if (last == RecyclerView.NO_POSITION) {
+                return;
+            }
+            from = last + 1;
+            to = Math.min(itemCount - 1, last + prefetchItems);
+        } else {
+            int first = min(gridLayoutManager.findFirstVisibleItemPositions(null));
+            if (first == RecyclerView.NO_POSITION) {
+                return;
+            }
+            from = Math.max(0, first - prefetchItems);
+            to = first - 1;
+        }
+        if (from == rangeFrom && to == rangeTo) {
+            return;
+        }
+        rangeFrom = from;
+        rangeTo = to;
+        Set<String> urls = new HashSet<String>();
+        for (int i = from; i <= to; i++) {
+            String url = imageUrlProvider.getImageUrl(i);
+            if (url != null) {
+                urls.add(url);
+            }
+        }
+        if (!urls.containsAll(prefetchedUrls)) {
+            // fetches can only be cancelled by tag - images already cached are refetched instantly
+            picasso.cancelTag(prefetchTag);
+            prefetchedUrls.clear();
+        }
+        for (String url : urls) {
+            if (prefetchedUrls.add(url)) {
+                picasso.load(url).priority(Picasso.Priority.LOW).tag(prefetchTag).fetch();
+            }
+        }
+    }
+
+    private static int max(int[] positions) {
+        int max = RecyclerView.NO_POSITION;
+        if (positions != null) {
+            for (int position : positions) {
+                max = Math.max(max, position);
+            }
+        }
+        return max;
+    }
+
+    private static int min(int[] positions) {
+        int min = RecyclerView.NO_POSITION;
+        if (positions != null) {
+            for (int position : positions) {
+                if (position != RecyclerView.NO_POSITION && (min == RecyclerView.NO_POSITION || position <
+                        min)) {
+                    min = position;
+                }
+            }
+        }
+        return min;
+    }
+
+    /**
+     * Provides the URL of the image displayed by an item.
+     */
+    public interface ImageUrlProvider {
+        /**
+         * @param position
+         *         the position of the item
+         * @return the URL of the image to prefetch for the item or null if it does not display one
+         */
+        String getImageUrl(int position);
+    }
+}
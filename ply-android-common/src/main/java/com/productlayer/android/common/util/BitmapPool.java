@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2015, ProductLayer GmbH All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.productlayer.android.common.util;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Pool of mutable bitmaps no longer in use, bucketed by allocation size, to be reused as decoding targets via
+ * {@link BitmapFactory.Options#inBitmap} or as scratch bitmaps for drawing. The pool is bounded in bytes and
+ * recycles the least recently pooled bitmaps when full.
+ *
+ * Before KitKat a pooled bitmap can only be reused for a bitmap of the exact same dimensions and config, and
+ * only when decoding without subsampling.
+ */
+public class BitmapPool {
+
+    public static final float MEMORY_PERCENTAGE = 0.0625f;
+
+    // the largest allocation size reused for a smaller bitmap, as multiple of the requested size
+    private static final int MAX_SIZE_MULTIPLE = 4;
+
+    private static final long maxBytes = (long) (Runtime.getRuntime().maxMemory() * MEMORY_PERCENTAGE);
+
+    private static final TreeMap<Integer, ArrayDeque<Bitmap>> buckets = new TreeMap<Integer,
+            ArrayDeque<Bitmap>>();
+    private static final LinkedList<Bitmap> pooledOrder = new LinkedList<Bitmap>();
+    private static long pooledBytes;
+
+    /**
+     * Takes a bitmap out of the pool and reconfigures it to the specified dimensions. Its pixels are erased.
+     *
+     * @param width
+     *         the width of the bitmap
+     * @param height
+     *         the height of the bitmap
+     * @param config
+     *         the config of the bitmap
+     * @return a mutable bitmap or null if there is no fitting bitmap in the pool
+     */
+    public static synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = take(width, height, config);
+        if (bitmap != null) {
+            bitmap.eraseColor(0);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Takes a bitmap out of the pool as in {@link #get} or creates a new one if there is no fitting bitmap in
+     * the pool.
+     *
+     * @param width
+     *         the width of the bitmap
+     * @param height
+     *         the height of the bitmap
+     * @param config
+     *         the config of the bitmap
+     * @return a mutable bitmap with erased pixels
+     */
+    public static Bitmap getOrCreate(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = get(width, height, config);
+        if (bitmap == null) {
+            bitmap = Bitmap.createBitmap(width, height, config);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Returns a bitmap no longer in use to the pool. The caller must not access the bitmap afterwards. Bitmaps
+     * that cannot be reused are recycled.
+     *
+     * @param bitmap
+     *         the bitmap to put into the pool
+     */
+    public static synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        int size = getSize(bitmap);
+        if (!bitmap.isMutable() || size > maxBytes / 2) {
+            bitmap.recycle();
+            return;
+        }
+        ArrayDeque<Bitmap> bucket = buckets.get(size);
+        if (bucket == null) {
+            bucket = new ArrayDeque<Bitmap>();
+            buckets.put(size, bucket);
+        }
+        bucket.push(bitmap);
+        pooledOrder.addLast(bitmap);
+        pooledBytes += size;
+        while (pooledBytes > maxBytes) {
+            Bitmap eldest = pooledOrder.removeFirst();
+            removeFromBucket(eldest);
+            eldest.recycle();
+        }
+    }
+
+    /**
+     * Sets {@link BitmapFactory.Options#inBitmap} to a pooled bitmap fitting the image to decode, if any.
+     * {@link BitmapFactory.Options#inSampleSize} and {@link BitmapFactory.Options#inPreferredConfig} must
+     * already be set.
+     *
+     * If decoding fails with an {@link IllegalArgumentException}, call {@link #releaseInBitmap} and decode
+     * again.
+     *
+     * @param options
+     *         the decoding options
+     * @param width
+     *         the width of the encoded image
+     * @param height
+     *         the height of the encoded image
+     */
+    public static void setInBitmap(BitmapFactory.Options options, int width, int height) {
+        options.inMutable = true;
+        int sampleSize = Math.max(1, options.inSampleSize);
+        if (sampleSize > 1 && Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
+            return;
+        }
+        Bitmap.Config config = options.inPreferredConfig == null ? Bitmap.Config.ARGB_8888 : options
+                .inPreferredConfig;
+        synchronized (BitmapPool.class) {
+            options.inBitmap = take((width + sampleSize - 1) / sampleSize, (height + sampleSize - 1) /
+                    sampleSize, config);
+        }
+    }
+
+    /**
+     * Returns the bitmap set by {@link #setInBitmap} to the pool and clears {@link
+     * BitmapFactory.Options#inBitmap}.
+     *
+     * @param options
+     *         the decoding options
+     */
+    public static void releaseInBitmap(BitmapFactory.Options options) {
+        if (options.inBitmap != null) {
+            put(options.inBitmap);
+            options.inBitmap = null;
+        }
+    }
+
+    /**
+     * Recycles all pooled bitmaps.
+     */
+    public static synchronized void clear() {
+        for (Bitmap bitmap : pooledOrder) {
+            bitmap.recycle();
+        }
+        pooledOrder.clear();
+        buckets.clear();
+        pooledBytes = 0;
+    }
+
+    /**
+     * Takes a bitmap fitting the specified dimensions and config out of the pool and reconfigures it if
+     * necessary. Must be called while holding the class lock.
+     */
+    private static Bitmap take(int width, int height, Bitmap.Config config) {
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        int requested = width * height * getBytesPerPixel(config);
+        boolean exact = Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT;
+        Map<Integer, ArrayDeque<Bitmap>> candidates = exact ? buckets.subMap(requested, true, requested,
+                true) : buckets.subMap(requested, true, requested * MAX_SIZE_MULTIPLE, true);
+        for (Map.Entry<Integer, ArrayDeque<Bitmap>> entry : candidates.entrySet()) {
+            ArrayDeque<Bitmap> bucket = entry.getValue();
+            for (Iterator<Bitmap> it = bucket.iterator(); it.hasNext(); ) {
+                Bitmap bitmap = it.next();
+                if (exact && (bitmap.getWidth() != width || bitmap.getHeight() != height || bitmap.getConfig()
+                        != config)) {
+                    continue;
+                }
+                it.remove();
+                if (bucket.isEmpty()) {
+                    buckets.remove(entry.getKey());
+                }
+                pooledOrder.remove(bitmap);
+                pooledBytes -= getSize(bitmap);
+                if (!exact) {
+                    reconfigure(bitmap, width, height, config);
+                }
+                return bitmap;
+            }
+        }
+        return null;
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static void reconfigure(Bitmap bitmap, int width, int height, Bitmap.Config config) {
+        if (bitmap.getWidth() != width || bitmap.getHeight() != height || bitmap.getConfig() != config) {
+            bitmap.reconfigure(width, height, config);
+        }
+    }
+
+    private static void removeFromBucket(Bitmap bitmap) {
+        int size = getSize(bitmap);
+        ArrayDeque<Bitmap> bucket = buckets.get(size);
+        if (bucket != null) {
+            bucket.remove(bitmap);
+            if (bucket.isEmpty()) {
+                buckets.remove(size);
+            }
+        }
+        pooledBytes -= size;
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static int getSize(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bitmap.getAllocationByteCount();
+        }
+        return bitmap.getByteCount();
+    }
+
+    private static int getBytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        } else if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        }
+        return 4;
+    }
+}
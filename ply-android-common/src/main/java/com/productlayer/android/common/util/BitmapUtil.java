@@ -29,13 +29,12 @@ import android.content.Context;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
 import android.media.ThumbnailUtils;
 import android.support.v4.graphics.drawable.RoundedBitmapDrawable;
 import android.support.v4.graphics.drawable.RoundedBitmapDrawableFactory;
-import android.support.v8.renderscript.Allocation;
-import android.support.v8.renderscript.Element;
-import android.support.v8.renderscript.RenderScript;
-import android.support.v8.renderscript.ScriptIntrinsicBlur;
 import android.util.Log;
 
 import com.productlayer.android.common.R;
@@ -98,14 +97,24 @@ public class BitmapUtil {
     }
 
     /**
-     * Creates a bitmap from a byte array.
+     * Creates a bitmap from a byte array, decoding into a pooled bitmap if possible.
      *
      * @param bytes
      *         the byte array to create the bitmap with
      * @return the newly created bitmap
      */
     public static Bitmap fromByteArray(byte[] bytes) {
-        return BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+        options.inJustDecodeBounds = false;
+        BitmapPool.setInBitmap(options, options.outWidth, options.outHeight);
+        try {
+            return BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+        } catch (IllegalArgumentException e) {
+            BitmapPool.releaseInBitmap(options);
+            return BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+        }
     }
 
     /**
@@ -126,26 +135,69 @@ public class BitmapUtil {
         if (width == 0 || height == 0) {
             return null;
         }
-        BitmapFactory.Options orig = new BitmapFactory.Options();
-        orig.inJustDecodeBounds = true;
-        BitmapFactory.decodeFile(path, orig);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
         int scale = 1;
-        while (orig.outWidth / (scale * 2) >= width && orig.outHeight / (scale * 2) >= height) {
+        while (options.outWidth / (scale * 2) >= width && options.outHeight / (scale * 2) >= height) {
             scale *= 2;
         }
-        BitmapFactory.Options scaled = new BitmapFactory.Options();
-        scaled.inSampleSize = scale;
-        Bitmap scaledBitmap = BitmapFactory.decodeFile(path, scaled);
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = scale;
+        Bitmap scaledBitmap;
         if (exactDimensions) {
-            return ThumbnailUtils.extractThumbnail(scaledBitmap, width, height, ThumbnailUtils
-                    .OPTIONS_RECYCLE_INPUT);
+            BitmapPool.setInBitmap(options, options.outWidth, options.outHeight);
+            try {
+                scaledBitmap = BitmapFactory.decodeFile(path, options);
+            } catch (IllegalArgumentException e) {
+                BitmapPool.releaseInBitmap(options);
+                scaledBitmap = BitmapFactory.decodeFile(path, options);
+            }
         } else {
+            scaledBitmap = BitmapFactory.decodeFile(path, options);
+        }
+        if (!exactDimensions || scaledBitmap == null) {
             return scaledBitmap;
         }
+        Bitmap bitmap = extractCenter(scaledBitmap, width, height);
+        BitmapPool.put(scaledBitmap);
+        return bitmap;
     }
 
     /**
-     * Applies a Gaussian blur effect to a bitmap.
+     * Scales and center-crops a bitmap to fill the specified dimensions in a single draw, as {@link
+     * ThumbnailUtils#extractThumbnail} does without {@code OPTIONS_SCALE_UP}: a bitmap smaller than the
+     * specified dimensions is centered but not scaled up.
+     *
+     * @param source
+     *         the bitmap to crop (left untouched)
+     * @param width
+     *         the width of the resulting bitmap
+     * @param height
+     *         the height of the resulting bitmap
+     * @return a new bitmap of the specified dimensions
+     */
+    private static Bitmap extractCenter(Bitmap source, int width, int height) {
+        int sourceWidth = source.getWidth();
+        int sourceHeight = source.getHeight();
+        float ratio = Math.min(1, Math.max(width / (float) sourceWidth, height / (float) sourceHeight));
+        int srcWidth = Math.min(sourceWidth, Math.round(width / ratio));
+        int srcHeight = Math.min(sourceHeight, Math.round(height / ratio));
+        int dstWidth = Math.round(srcWidth * ratio);
+        int dstHeight = Math.round(srcHeight * ratio);
+        int srcLeft = (sourceWidth - srcWidth) / 2;
+        int srcTop = (sourceHeight - srcHeight) / 2;
+        int dstLeft = (width - dstWidth) / 2;
+        int dstTop = (height - dstHeight) / 2;
+        Bitmap bitmap = BitmapPool.getOrCreate(width, height, Bitmap.Config.ARGB_8888);
+        new Canvas(bitmap).drawBitmap(source, new Rect(srcLeft, srcTop, srcLeft + srcWidth, srcTop +
+                srcHeight), new Rect(dstLeft, dstTop, dstLeft + dstWidth, dstTop + dstHeight), new Paint(Paint
+                .FILTER_BITMAP_FLAG));
+        return bitmap;
+    }
+
+    /**
+     * Applies a Gaussian blur effect to a half-sized copy of a bitmap using the shared {@link BlurEngine}.
      *
      * @param context
      *         the application context
@@ -157,26 +209,16 @@ public class BitmapUtil {
         int width = Math.round(bitmap.getWidth() / 2);
         int height = Math.round(bitmap.getHeight() / 2);
         Bitmap bitmapIn = null;
-        Bitmap bitmapOut = null;
         try {
-            bitmapIn = Bitmap.createScaledBitmap(bitmap, width, height, false);
-            bitmapOut = Bitmap.createBitmap(bitmapIn);
-            RenderScript rs = RenderScript.create(context);
-            ScriptIntrinsicBlur intrinsicBlur = ScriptIntrinsicBlur.create(rs, Element.U8_4(rs));
-            Allocation allocationIn = Allocation.createFromBitmap(rs, bitmapIn);
-            Allocation allocationOut = Allocation.createFromBitmap(rs, bitmapOut);
-            intrinsicBlur.setRadius(6);
-            intrinsicBlur.setInput(allocationIn);
-            intrinsicBlur.forEach(allocationOut);
-            allocationOut.copyTo(bitmapOut);
+            bitmapIn = BitmapPool.getOrCreate(width, height, Bitmap.Config.ARGB_8888);
+            new Canvas(bitmapIn).drawBitmap(bitmap, null, new Rect(0, 0, width, height), null);
+            return BlurEngine.getInstance(context).blur(bitmapIn, 6);
         } catch (Exception e) {
             Log.e(BitmapUtil.class.getSimpleName(), "Error creating blurred image", e);
+            return null;
         } finally {
-            if (bitmapIn != null && bitmapIn != bitmap && bitmapIn != bitmapOut) {
-                bitmapIn.recycle();
-            }
+            BitmapPool.put(bitmapIn);
         }
-        return bitmapOut;
     }
 
     /**
@@ -189,235 +231,7 @@ public class BitmapUtil {
      * @return a new blurred version of the input bitmap
      */
     public static Bitmap stackBlur(Bitmap bitmapIn, int radius) {
-        // Stack Blur v1.0 from
-        // http://www.quasimondo.com/StackBlurForCanvas/StackBlurDemo.html
-        //
-        // Java Author: Mario Klingemann <mario at quasimondo.com>
-        // http://incubator.quasimondo.com
-        // created Feburary 29, 2004
-        // Android port : Yahel Bouaziz <yahel at kayenko.com>
-        // http://www.kayenko.com
-        // ported april 5th, 2012
-
-        // This is a compromise between Gaussian Blur and Box blur
-        // It creates much better looking blurs than Box Blur, but is
-        // 7x faster than my Gaussian Blur implementation.
-        //
-        // I called it Stack Blur because this describes best how this
-        // filter works internally: it creates a kind of moving stack
-        // of colors whilst scanning through the image. Thereby it
-        // just has to add one new block of color to the right side
-        // of the stack and remove the leftmost color. The remaining
-        // colors on the topmost layer of the stack are either added on
-        // or reduced by one, depending on if they are on the right or
-        // on the left side of the stack.
-        //
-        // If you are using this algorithm in your code please add
-        // the following line:
-        //
-        // Stack Blur Algorithm by Mario Klingemann <mario@quasimondo.com>
-
-        Bitmap bitmap = bitmapIn.copy(bitmapIn.getConfig(), true);
-        int w = bitmap.getWidth();
-        int h = bitmap.getHeight();
-
-        int[] pix = new int[w * h];
-        bitmap.getPixels(pix, 0, w, 0, 0, w, h);
-
-        int wm = w - 1;
-        int hm = h - 1;
-        int wh = w * h;
-        int div = radius + radius + 1;
-        int r[] = new int[wh];
-        int g[] = new int[wh];
-        int b[] = new int[wh];
-        int rsum;
-        int gsum;
-        int bsum;
-        int x;
-        int y;
-        int i;
-        int p;
-        int yp;
-        int yi = 0;
-        int yw = 0;
-        int vmin[] = new int[Math.max(w, h)];
-
-        int divsum = (div + 1) >> 1;
-        divsum *= divsum;
-        int dv[] = new int[256 * divsum];
-        for (i = 0; i < 256 * divsum; i++) {
-            dv[i] = i / divsum;
-        }
-
-        int[][] stack = new int[div][3];
-        int stackpointer;
-        int stackstart;
-        int[] sir;
-        int rbs;
-        int r1 = radius + 1;
-        int routsum;
-        int goutsum;
-        int boutsum;
-        int rinsum;
-        int ginsum;
-        int binsum;
-
-        for (y = 0; y < h; y++) {
-            rinsum = ginsum = binsum = routsum = goutsum = boutsum = rsum = gsum = bsum = 0;
-            for (i = -radius; i <= radius; i++) {
-                p = pix[yi + Math.min(wm, Math.max(i, 0))];
-                sir = stack[i + radius];
-                sir[0] = (p & 0xff0000) >> 16;
-                sir[1] = (p & 0x00ff00) >> 8;
-                sir[2] = p & 0x0000ff;
-                rbs = r1 - Math.abs(i);
-                rsum += sir[0] * rbs;
-                gsum += sir[1] * rbs;
-                bsum += sir[2] * rbs;
-                if (i > 0) {
-                    rinsum += sir[0];
-                    ginsum += sir[1];
-                    binsum += sir[2];
-                } else {
-                    routsum += sir[0];
-                    goutsum += sir[1];
-                    boutsum += sir[2];
-                }
-            }
-            stackpointer = radius;
-            for (x = 0; x < w; x++) {
-                r[yi] = dv[rsum];
-                g[yi] = dv[gsum];
-                b[yi] = dv[bsum];
-
-                rsum -= routsum;
-                gsum -= goutsum;
-                bsum -= boutsum;
-
-                stackstart = stackpointer - radius + div;
-                sir = stack[stackstart % div];
-
-                routsum -= sir[0];
-                goutsum -= sir[1];
-                boutsum -= sir[2];
-
-                if (y == 0) {
-                    vmin[x] = Math.min(x + radius + 1, wm);
-                }
-                p = pix[yw + vmin[x]];
-
-                sir[0] = (p & 0xff0000) >> 16;
-                sir[1] = (p & 0x00ff00) >> 8;
-                sir[2] = p & 0x0000ff;
-
-                rinsum += sir[0];
-                ginsum += sir[1];
-                binsum += sir[2];
-
-                rsum += rinsum;
-                gsum += ginsum;
-                bsum += binsum;
-
-                stackpointer = (stackpointer + 1) % div;
-                sir = stack[stackpointer % div];
-
-                routsum += sir[0];
-                goutsum += sir[1];
-                boutsum += sir[2];
-
-                rinsum -= sir[0];
-                ginsum -= sir[1];
-                binsum -= sir[2];
-
-                yi++;
-            }
-            yw += w;
-        }
-
-        for (x = 0; x < w; x++) {
-            rinsum = ginsum = binsum = routsum = goutsum = boutsum = rsum = gsum = bsum = 0;
-            yp = -radius * w;
-            for (i = -radius; i <= radius; i++) {
-                yi = Math.max(0, yp) + x;
-
-                sir = stack[i + radius];
-
-                sir[0] = r[yi];
-                sir[1] = g[yi];
-                sir[2] = b[yi];
-
-                rbs = r1 - Math.abs(i);
-
-                rsum += r[yi] * rbs;
-                gsum += g[yi] * rbs;
-                bsum += b[yi] * rbs;
-
-                if (i > 0) {
-                    rinsum += sir[0];
-                    ginsum += sir[1];
-                    binsum += sir[2];
-                } else {
-                    routsum += sir[0];
-                    goutsum += sir[1];
-                    boutsum += sir[2];
-                }
-
-                if (i < hm) {
-                    yp += w;
-                }
-            }
-            yi = x;
-            stackpointer = radius;
-            for (y = 0; y < h; y++) {
-                // Preserve alpha channel: ( 0xff000000 & pix[yi] )
-                pix[yi] = (0xff000000 & pix[yi]) | (dv[rsum] << 16) | (dv[gsum] << 8) | dv[bsum];
-
-                rsum -= routsum;
-                gsum -= goutsum;
-                bsum -= boutsum;
-
-                stackstart = stackpointer - radius + div;
-                sir = stack[stackstart % div];
-
-                routsum -= sir[0];
-                goutsum -= sir[1];
-                boutsum -= sir[2];
-
-                if (x == 0) {
-                    vmin[y] = Math.min(y + r1, hm) * w;
-                }
-                p = x + vmin[y];
-
-                sir[0] = r[p];
-                sir[1] = g[p];
-                sir[2] = b[p];
-
-                rinsum += sir[0];
-                ginsum += sir[1];
-                binsum += sir[2];
-
-                rsum += rinsum;
-                gsum += ginsum;
-                bsum += binsum;
-
-                stackpointer = (stackpointer + 1) % div;
-                sir = stack[stackpointer];
-
-                routsum += sir[0];
-                goutsum += sir[1];
-                boutsum += sir[2];
-
-                rinsum -= sir[0];
-                ginsum -= sir[1];
-                binsum -= sir[2];
-
-                yi += w;
-            }
-        }
-
-        bitmap.setPixels(pix, 0, w, 0, 0, w, h);
-        return bitmap;
+        return StackBlur.blur(bitmapIn, radius);
     }
 
 }
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2015, ProductLayer GmbH All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.productlayer.android.common.util;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.support.v8.renderscript.Allocation;
+import android.support.v8.renderscript.Element;
+import android.support.v8.renderscript.RenderScript;
+import android.support.v8.renderscript.ScriptIntrinsicBlur;
+import android.support.v8.renderscript.Type;
+import android.util.Log;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Blurs bitmaps using a RenderScript context and intrinsic blur script shared for the lifetime of the
+ * application. Input and output allocations are pooled by bitmap size and reused for subsequent blurs of
+ * the same size.
+ *
+ * Blurring is serialized on the shared engine. Call {@link #release} to free all native resources, e.g. on
+ * low memory or when the app is closed.
+ */
+public class BlurEngine {
+
+    private static final int MAX_POOLED_SIZES = 4;
+
+    private static BlurEngine instance;
+
+    private RenderScript renderScript;
+    private ScriptIntrinsicBlur script;
+
+    private final Map<Long, Allocation[]> allocationPool = new LinkedHashMap<Long, Allocation[]>
+            (MAX_POOLED_SIZES + 1, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Allocation[]> eldest) {
+            if (size() > MAX_POOLED_SIZES) {
+                destroy(eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * Creates the shared RenderScript context and intrinsic blur script.
+     *
+     * @param context
+     *         the application context
+     */
+    private BlurEngine(Context context) {
+        renderScript = RenderScript.create(context);
+        script = ScriptIntrinsicBlur.create(renderScript, Element.U8_4(renderScript));
+    }
+
+    /**
+     * Gets the shared blur engine, creating it if it does not exist yet or has been released.
+     *
+     * @param context
+     *         the application context
+     * @return the shared blur engine
+     */
+    public static synchronized BlurEngine getInstance(Context context) {
+        if (instance == null) {
+            instance = new BlurEngine(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Destroys the shared RenderScript context, script and all pooled allocations. A subsequent call to
+     * {@link #getInstance} creates a new engine.
+     */
+    public static void release() {
+        BlurEngine engine;
+        synchronized (BlurEngine.class) {
+            engine = instance;
+            instance = null;
+        }
+        if (engine != null) {
+            engine.destroy();
+        }
+    }
+
+    /**
+     * Applies a Gaussian blur effect to a bitmap.
+     *
+     * @param bitmap
+     *         the input bitmap (left untouched)
+     * @param radius
+     *         the blur radius in px (0 &lt; radius &lt;= 25)
+     * @return a new blurred version of the input bitmap or null on any error
+     */
+    public synchronized Bitmap blur(Bitmap bitmap, float radius) {
+        if (renderScript == null) {
+            Log.w(BlurEngine.class.getSimpleName(), "Blur engine has been released");
+            return null;
+        }
+        Bitmap bitmapIn = bitmap;
+        Bitmap bitmapOut = null;
+        try {
+            if (bitmapIn.getConfig() != Bitmap.Config.ARGB_8888) {
+                bitmapIn = bitmap.copy(Bitmap.Config.ARGB_8888, false);
+            }
+            int width = bitmapIn.getWidth();
+            int height = bitmapIn.getHeight();
+            Allocation[] allocations = getAllocations(width, height);
+            allocations[0].copyFrom(bitmapIn);
+            script.setRadius(radius);
+            script.setInput(allocations[0]);
+            script.forEach(allocations[1]);
+            bitmapOut = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            allocations[1].copyTo(bitmapOut);
+            return bitmapOut;
+        } catch (Exception e) {
+            Log.e(BlurEngine.class.getSimpleName(), "Error creating blurred image", e);
+            if (bitmapOut != null) {
+                bitmapOut.recycle();
+            }
+            return null;
+        } finally {
+            if (bitmapIn != null && bitmapIn != bitmap) {
+                bitmapIn.recycle();
+            }
+        }
+    }
+
+    /**
+     * Gets a pair of input and output allocations of the specified size from the pool, creating them if
+     * necessary.
+     *
+     * @param width
+     *         the width of the allocations
+     * @param height
+     *         the height of the allocations
+     * @return the input allocation at index 0 and the output allocation at index 1
+     */
+    private Allocation[] getAllocations(int width, int height) {
+        long key = ((long) width << 32) | height;
+        Allocation[] allocations = allocationPool.get(key);
+        if (allocations == null) {
+            Type type = Type.createXY(renderScript, Element.U8_4(renderScript), width, height);
+            allocations = new Allocation[]{Allocation.createTyped(renderScript, type), Allocation
+                    .createTyped(renderScript, type)};
+            allocationPool.put(key, allocations);
+        }
+        return allocations;
+    }
+
+    /**
+     * Destroys all native resources held by this engine.
+     */
+    private synchronized void destroy() {
+        for (Allocation[] allocations : allocationPool.values()) {
+            destroy(allocations);
+        }
+        allocationPool.clear();
+        if (script != null) {
+            script.destroy();
+            script = null;
+        }
+        if (renderScript != null) {
+            renderScript.destroy();
+            renderScript = null;
+        }
+    }
+
+    /**
+     * @param allocations
+     *         the allocations to destroy
+     */
+    private static void destroy(Allocation[] allocations) {
+        for (Allocation allocation : allocations) {
+            allocation.destroy();
+        }
+    }
+}
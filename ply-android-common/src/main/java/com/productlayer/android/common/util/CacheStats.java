@@ -0,0 +1,465 @@
+/*
+ * Copyright (c) 2015, ProductLayer GmbH All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.productlayer.android.common.util;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.squareup.picasso.Cache;
+import com.squareup.picasso.LruCache;
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.StatsSnapshot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects hit, miss, eviction, latency and size statistics of the object caches per tag and tier and
+ * combines them with the statistics of Picasso's memory cache and the disk cache of its downloader.
+ *
+ * Statistics are kept in memory for the lifetime of the process.
+ */
+public class CacheStats {
+
+    private static final Map<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+
+    /**
+     * Records a lookup that was served by the specified tier.
+     *
+     * @param tag
+     *         the tag or key of the cached object
+     * @param tier
+     *         the tier serving the object
+     * @param latencyNanos
+     *         the time the lookup took in nanoseconds
+     * @param bytes
+     *         the amount of bytes read or transferred (0 if unknown)
+     */
+    public static void recordHit(String tag, Tier tier, long latencyNanos, long bytes) {
+        Counter counter = getCounter(tag, tier);
+        counter.hits.incrementAndGet();
+        counter.latencyNanos.addAndGet(latencyNanos);
+        counter.bytes.addAndGet(bytes);
+    }
+
+    /**
+     * Records a lookup that could not be served by the specified tier.
+     *
+     * @param tag
+     *         the tag or key of the object looked up
+     * @param tier
+     *         the tier missing the object
+     * @param latencyNanos
+     *         the time the lookup took in nanoseconds
+     */
+    public static void recordMiss(String tag, Tier tier, long latencyNanos) {
+        Counter counter = getCounter(tag, tier);
+        counter.misses.incrementAndGet();
+        counter.latencyNanos.addAndGet(latencyNanos);
+    }
+
+    /**
+     * Records an object that was dropped from the specified tier (e.g. due to expiry).
+     *
+     * @param tag
+     *         the tag or key of the dropped object
+     * @param tier
+     *         the tier dropping the object
+     */
+    public static void recordEviction(String tag, Tier tier) {
+        getCounter(tag, tier).evictions.incrementAndGet();
+    }
+
+    /**
+     * @return a snapshot of the statistics of all tags and tiers, sorted by tag and tier
+     */
+    public static List<Entry> getEntries() {
+        List<Entry> entries = new ArrayList<Entry>();
+        for (Counter counter : counters.values()) {
+            entries.add(new Entry(counter));
+        }
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry lhs, Entry rhs) {
+                int cmp = lhs.tag.compareTo(rhs.tag);
+                return cmp != 0 ? cmp : lhs.tier.compareTo(rhs.tier);
+            }
+        });
+        return entries;
+    }
+
+    /**
+     * Gets a snapshot of the statistics of Picasso's memory cache and of the disk cache of its downloader.
+     * Cache sizes and disk statistics are available only if Picasso has been set up using {@link
+     * CacheUtil#setupPicassoInstance}.
+     *
+     * @param context
+     *         the application context
+     * @return the image cache statistics
+     */
+    public static ImageCacheStats getImageCacheStats(Context context) {
+        return new ImageCacheStats(Picasso.with(context).getSnapshot(), CacheUtil.getPicassoMemoryCache(),
+                CacheUtil.getPicassoDiskCache());
+    }
+
+    /**
+     * Clears all object cache statistics. Picasso's statistics are not affected.
+     */
+    public static void reset() {
+        counters.clear();
+    }
+
+    /**
+     * @param context
+     *         the application context
+     * @return a human-readable dump of all object and image cache statistics
+     */
+    public static String dump(Context context) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Object caches (tag/tier: hits, misses, evictions, avg latency, bytes)\n");
+        for (Entry entry : getEntries()) {
+            sb.append("  ").append(entry).append("\n");
+        }
+        sb.append("Image caches\n  ").append(getImageCacheStats(context)).append("\n");
+        return sb.toString();
+    }
+
+    /**
+     * Writes {@link #dump} to the debug log.
+     *
+     * @param context
+     *         the application context
+     */
+    public static void log(Context context) {
+        Log.d(CacheStats.class.getSimpleName(), dump(context));
+    }
+
+    /**
+     * @param tag
+     *         the tag or key of the cached object
+     * @param tier
+     *         the cache tier
+     * @return the counter of the tag and tier, created if not yet present
+     */
+    private static Counter getCounter(String tag, Tier tier) {
+        String key = tag + "/" + tier;
+        Counter counter = counters.get(key);
+        if (counter == null) {
+            synchronized (counters) {
+                counter = counters.get(key);
+                if (counter == null) {
+                    counter = new Counter(tag, tier);
+                    counters.put(key, counter);
+                }
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * The tiers objects are looked up in, from fastest to slowest.
+     */
+    public enum Tier {
+        MEMORY,
+        DISK,
+        NETWORK
+    }
+
+    /**
+     * Mutable statistics of a tag and tier.
+     */
+    private static class Counter {
+
+        final String tag;
+        final Tier tier;
+        final AtomicLong hits = new AtomicLong();
+        final AtomicLong misses = new AtomicLong();
+        final AtomicLong evictions = new AtomicLong();
+        final AtomicLong latencyNanos = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+
+        /**
+         * @param tag
+         *         the tag or key of the cached object
+         * @param tier
+         *         the cache tier
+         */
+        Counter(String tag, Tier tier) {
+            this.tag = tag;
+            this.tier = tier;
+        }
+    }
+
+    /**
+     * An immutable snapshot of the statistics of a tag and tier.
+     */
+    public static class Entry {
+
+        private final String tag;
+        private final Tier tier;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long latencyNanos;
+        private final long bytes;
+
+        /**
+         * @param counter
+         *         the counter to take the snapshot of
+         */
+        Entry(Counter counter) {
+            tag = counter.tag;
+            tier = counter.tier;
+            hits = counter.hits.get();
+            misses = counter.misses.get();
+            evictions = counter.evictions.get();
+            latencyNanos = counter.latencyNanos.get();
+            bytes = counter.bytes.get();
+        }
+
+        /**
+         * @return the tag or key of the cached object
+         */
+        public String getTag() {
+            return tag;
+        }
+
+        /**
+         * @return the cache tier
+         */
+        public Tier getTier() {
+            return tier;
+        }
+
+        /**
+         * @return the amount of lookups served by this tier
+         */
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * @return the amount of lookups this tier could not serve
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * @return the amount of objects dropped from this tier
+         */
+        public long getEvictions() {
+            return evictions;
+        }
+
+        /**
+         * @return the ratio of hits to lookups or 0 if there were no lookups
+         */
+        public double getHitRatio() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        /**
+         * @return the average time of a lookup in milliseconds or 0 if there were no lookups
+         */
+        public double getAverageLatencyMs() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : latencyNanos / 1e6 / lookups;
+        }
+
+        /**
+         * @return the total amount of bytes read or transferred on hits
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s/%s: %d, %d, %d, %.2fms, %d", tag, tier, hits, misses,
+                    evictions, getAverageLatencyMs(), bytes);
+        }
+    }
+
+    /**
+     * An immutable snapshot of the statistics of Picasso's memory cache and of the disk cache of its
+     * downloader.
+     */
+    public static class ImageCacheStats {
+
+        private final long memoryHits;
+        private final long memoryMisses;
+        private final long memoryEvictions;
+        private final int memorySize;
+        private final int memoryMaxSize;
+        private final long diskHits;
+        private final long diskRequests;
+        private final long diskSize;
+        private final long diskMaxSize;
+        private final long downloadBytes;
+
+        /**
+         * @param snapshot
+         *         Picasso's statistics
+         * @param memoryCache
+         *         Picasso's memory cache or null if unavailable
+         * @param diskCache
+         *         the disk cache of Picasso's downloader or null if unavailable
+         */
+        ImageCacheStats(StatsSnapshot snapshot, Cache memoryCache, com.squareup.okhttp.Cache diskCache) {
+            memoryHits = snapshot.cacheHits;
+            memoryMisses = snapshot.cacheMisses;
+            if (memoryCache instanceof ResizableLruCache) {
+                memoryEvictions = ((ResizableLruCache) memoryCache).evictionCount();
+            } else if (memoryCache instanceof LruCache) {
+                memoryEvictions = ((LruCache) memoryCache).evictionCount();
+            } else {
+                memoryEvictions = -1;
+            }
+            memorySize = snapshot.size;
+            memoryMaxSize = snapshot.maxSize;
+            downloadBytes = snapshot.totalDownloadSize;
+            if (diskCache == null) {
+                diskHits = -1;
+                diskRequests = -1;
+                diskSize = -1;
+                diskMaxSize = -1;
+            } else {
+                diskHits = diskCache.getHitCount();
+                diskRequests = diskCache.getRequestCount();
+                long size;
+                try {
+                    size = diskCache.getSize();
+                } catch (Exception e) {
+                    size = -1;
+                }
+                diskSize = size;
+                diskMaxSize = diskCache.getMaxSize();
+            }
+        }
+
+        /**
+         * @return the amount of bitmaps served from memory
+         */
+        public long getMemoryHits() {
+            return memoryHits;
+        }
+
+        /**
+         * @return the amount of bitmaps not found in memory
+         */
+        public long getMemoryMisses() {
+            return memoryMisses;
+        }
+
+        /**
+         * @return the ratio of memory hits to memory lookups or 0 if there were no lookups
+         */
+        public double getMemoryHitRatio() {
+            long lookups = memoryHits + memoryMisses;
+            return lookups == 0 ? 0 : (double) memoryHits / lookups;
+        }
+
+        /**
+         * @return the amount of bitmaps evicted from memory or -1 if unavailable
+         */
+        public long getMemoryEvictions() {
+            return memoryEvictions;
+        }
+
+        /**
+         * @return the current size of the memory cache in bytes
+         */
+        public int getMemorySize() {
+            return memorySize;
+        }
+
+        /**
+         * @return the maximum size of the memory cache in bytes
+         */
+        public int getMemoryMaxSize() {
+            return memoryMaxSize;
+        }
+
+        /**
+         * @return the amount of HTTP responses served from disk (including revalidated ones) or -1 if
+         * unavailable
+         */
+        public long getDiskHits() {
+            return diskHits;
+        }
+
+        /**
+         * @return the amount of HTTP requests that went through the disk cache or -1 if unavailable
+         */
+        public long getDiskRequests() {
+            return diskRequests;
+        }
+
+        /**
+         * @return the ratio of disk hits to requests or 0 if unavailable or there were no requests
+         */
+        public double getDiskHitRatio() {
+            return diskRequests <= 0 ? 0 : (double) diskHits / diskRequests;
+        }
+
+        /**
+         * @return the current size of the disk cache in bytes or -1 if unavailable
+         */
+        public long getDiskSize() {
+            return diskSize;
+        }
+
+        /**
+         * @return the maximum size of the disk cache in bytes or -1 if unavailable
+         */
+        public long getDiskMaxSize() {
+            return diskMaxSize;
+        }
+
+        /**
+         * @return the total amount of bytes downloaded by Picasso
+         */
+        public long getDownloadBytes() {
+            return downloadBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "memory: %.1f%% hits (%d/%d), %d evictions, %d/%d bytes; disk: " +
+                    "%.1f%% hits (%d/%d), %d/%d bytes; downloaded %d bytes", getMemoryHitRatio() * 100,
+                    memoryHits, memoryHits + memoryMisses, memoryEvictions, memorySize, memoryMaxSize,
+                    getDiskHitRatio() * 100, diskHits, diskRequests, diskSize, diskMaxSize, downloadBytes);
+        }
+    }
+}
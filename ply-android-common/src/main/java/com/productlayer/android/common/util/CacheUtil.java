@@ -26,7 +26,9 @@
 package com.productlayer.android.common.util;
 
 import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.os.Build;
 import android.os.StatFs;
 import android.util.Log;
@@ -34,10 +36,12 @@ import android.util.Log;
 import com.jakewharton.disklrucache.DiskLruCache;
 import com.squareup.okhttp.OkHttpClient;
 import com.squareup.picasso.Cache;
-import com.squareup.picasso.LruCache;
 import com.squareup.picasso.OkHttpDownloader;
 import com.squareup.picasso.Picasso;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -47,6 +51,10 @@ import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 
 /**
  * Utility class to handle and configure global caches.
@@ -56,16 +64,29 @@ public class CacheUtil {
     public static final float PICASSO_CACHE_MEMORY_PERCENTAGE = 0.25f;
     public static final int PICASSO_CACHE_DISK_MB = 100;
 
+    private static final float LOW_RAM_DEVICE_FACTOR = 0.5f;
+    private static final float SMALL_HEAP_FACTOR = 0.75f;
+    private static final float LARGE_HEAP_FACTOR = 1.5f;
+    private static final int SMALL_HEAP_MB = 64;
+    private static final int LARGE_HEAP_MB = 256;
+    private static final float MAX_MEMORY_PERCENTAGE = 0.4f;
+
     private static final int OBJECT_CACHE_DISK_MB = 10 * 1048576; // 10 MiB
     private static final String OBJECT_CACHE_DIR = "objectCache";
+    private static final int OBJECT_CACHE_VERSION = 1; // entries prefixed with codec since version 1
     private static final int INDEX_TIME_MODIFIED = 0;
     private static final int INDEX_OBJECT_DATA = 1;
+    private static final int CODEC_NONE = 0;
+    private static final int CODEC_DEFLATE = 1;
 
     private static WeakReference<Cache> picassoMemoryCacheRef;
     private static WeakReference<com.squareup.okhttp.Cache> picassoDiskCacheRef;
     private static volatile DiskLruCache objectCache;
+    private static volatile Context picassoContext;
+    private static volatile OkHttpClient picassoHttpClient;
 
     private static volatile boolean picassoInitialized;
+    private static volatile int picassoMemoryCacheSize;
 
     /**
      * Gets an object from the disk cache. Disk access is blocking - do not run on the UI thread!
@@ -79,8 +100,29 @@ public class CacheUtil {
      * @param maxAge
      *         the amount of seconds after which the object expires
      * @return the object if found in the cache, null else
+     * @see #getFromDiskCache(Context, String, long, boolean)
      */
     public static Object getFromDiskCache(Context context, String key, long maxAge) {
+        return getFromDiskCache(context, key, maxAge, true);
+    }
+
+    /**
+     * Gets an object from the disk cache, optionally recording the look-up in the cache statistics. Disk
+     * access is blocking - do not run on the UI thread!
+     *
+     * If the object cache is not available or closed, attempts to set it up.
+     *
+     * @param context
+     *         the application context
+     * @param key
+     *         the ID associated with the object
+     * @param maxAge
+     *         the amount of seconds after which the object expires
+     * @param recordStats
+     *         false to not record the look-up in {@link CacheStats}, e.g. for bookkeeping entries
+     * @return the object if found in the cache, null else
+     */
+    public static Object getFromDiskCache(Context context, String key, long maxAge, boolean recordStats) {
         if (objectCache == null || objectCache.isClosed()) {
             // set up cache
             try {
@@ -91,11 +133,15 @@ public class CacheUtil {
                 return null;
             }
         }
+        long timeStart = System.nanoTime();
         try {
             // look up object
             DiskLruCache.Snapshot snapshot = objectCache.get(key);
             if (snapshot == null) {
                 // object not in cache
+                if (recordStats) {
+                    CacheStats.recordMiss(key, CacheStats.Tier.DISK, System.nanoTime() - timeStart);
+                }
                 return null;
             }
             // check if cached object is older than allowed
@@ -103,19 +149,49 @@ public class CacheUtil {
             long timeModified = Long.valueOf(timeModifiedString);
             long timeCurrent = System.currentTimeMillis();
             if (timeCurrent - timeModified > maxAge * 1000) {
+                snapshot.close();
+                if (recordStats) {
+                    CacheStats.recordEviction(key, CacheStats.Tier.DISK);
+                    CacheStats.recordMiss(key, CacheStats.Tier.DISK, System.nanoTime() - timeStart);
+                }
                 return null;
             }
-            // deserialize and return object
+            long bytes = snapshot.getLength(INDEX_OBJECT_DATA);
+            // read the codec from the entry header, then decompress if needed, deserialize and return object
             InputStream inputStream = snapshot.getInputStream(INDEX_OBJECT_DATA);
-            ObjectInput objectInput = new ObjectInputStream(inputStream);
-            return objectInput.readObject();
+            int codec = inputStream.read();
+            if (codec == CODEC_DEFLATE) {
+                inputStream = new InflaterInputStream(inputStream);
+            } else if (codec != CODEC_NONE) {
+                Log.w(CacheUtil.class.getSimpleName(), "Unknown codec " + codec + " of cached " + key);
+                snapshot.close();
+                if (recordStats) {
+                    CacheStats.recordMiss(key, CacheStats.Tier.DISK, System.nanoTime() - timeStart);
+                }
+                return null;
+            }
+            ObjectInput objectInput = new ObjectInputStream(new BufferedInputStream(inputStream));
+            try {
+                Object object = objectInput.readObject();
+                if (recordStats) {
+                    CacheStats.recordHit(key, CacheStats.Tier.DISK, System.nanoTime() - timeStart, bytes);
+                }
+                return object;
+            } finally {
+                objectInput.close();
+                snapshot.close();
+            }
         } catch (Exception e) {
+            if (recordStats) {
+                CacheStats.recordMiss(key, CacheStats.Tier.DISK, System.nanoTime() - timeStart);
+            }
             return null;
         }
     }
 
     /**
-     * Writes an object to the disk cache. Disk access is blocking - do not run on the UI thread!
+     * Writes an object to the disk cache without compression. Disk access is blocking - do not run on the UI
+     * thread!
      *
      * If the object cache is not available or closed, attempts to set it up.
      *
@@ -125,8 +201,77 @@ public class CacheUtil {
      *         the ID to be associated with the object
      * @param object
      *         the object to save
+     * @see #saveToDiskCache(Context, String, Object, boolean)
      */
     public static void saveToDiskCache(Context context, String key, Object object) {
+        saveToDiskCache(context, key, object, false);
+    }
+
+    /**
+     * Writes an object to the disk cache, optionally compressing it using deflate at its fastest level. The
+     * codec is recorded in the entry header and is transparent to {@link #getFromDiskCache}. Compression pays
+     * off for large, text-heavy objects such as name lists. Disk access is blocking - do not run on the UI
+     * thread!
+     *
+     * If the object cache is not available or closed, attempts to set it up.
+     *
+     * @param context
+     *         the application context
+     * @param key
+     *         the ID to be associated with the object
+     * @param object
+     *         the object to save
+     * @param compress
+     *         true to compress the serialized object
+     */
+    public static void saveToDiskCache(Context context, String key, Object object, boolean compress) {
+        byte[] serialized;
+        try {
+            serialized = serialize(object);
+        } catch (IOException e) {
+            Log.w(CacheUtil.class.getSimpleName(), "Error serializing object for cache", e);
+            return;
+        }
+        saveSerializedToDiskCache(context, key, serialized, compress);
+    }
+
+    /**
+     * Serializes an object so that it can be saved using {@link #saveSerializedToDiskCache} later on. Use
+     * this to take a consistent copy of an object that is modified on the calling thread and write it to the
+     * disk cache on another thread.
+     *
+     * @param object
+     *         the object to serialize
+     * @return the serialized object
+     * @throws IOException
+     *         if the object or any object it references cannot be serialized
+     */
+    public static byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
+        ObjectOutput objectOutput = new ObjectOutputStream(byteOutput);
+        objectOutput.writeObject(object);
+        objectOutput.close();
+        return byteOutput.toByteArray();
+    }
+
+    /**
+     * Writes an object serialized by {@link #serialize} to the disk cache, optionally compressing it. The
+     * entry can be read using {@link #getFromDiskCache} just like one written by {@link #saveToDiskCache}.
+     * Disk access is blocking - do not run on the UI thread!
+     *
+     * If the object cache is not available or closed, attempts to set it up.
+     *
+     * @param context
+     *         the application context
+     * @param key
+     *         the ID to be associated with the object
+     * @param serialized
+     *         the serialized object to save
+     * @param compress
+     *         true to compress the serialized object
+     */
+    public static void saveSerializedToDiskCache(Context context, String key, byte[] serialized, boolean
+            compress) {
         if (objectCache == null || objectCache.isClosed()) {
             // set up cache
             try {
@@ -137,8 +282,10 @@ public class CacheUtil {
                 return;
             }
         }
+        DiskLruCache.Editor editor = null;
+        Deflater deflater = null;
         try {
-            DiskLruCache.Editor editor = objectCache.edit(key);
+            editor = objectCache.edit(key);
             if (editor == null) {
                 // entry is currently being edited
                 return;
@@ -146,11 +293,25 @@ public class CacheUtil {
             long timeCurrent = System.currentTimeMillis();
             editor.set(INDEX_TIME_MODIFIED, String.valueOf(timeCurrent));
             OutputStream outputStream = editor.newOutputStream(INDEX_OBJECT_DATA);
-            ObjectOutput objectOutput = new ObjectOutputStream(outputStream);
-            objectOutput.writeObject(object);
+            // entry header: codec
+            outputStream.write(compress ? CODEC_DEFLATE : CODEC_NONE);
+            if (compress) {
+                deflater = new Deflater(Deflater.BEST_SPEED);
+                outputStream = new DeflaterOutputStream(outputStream, deflater);
+            }
+            outputStream = new BufferedOutputStream(outputStream);
+            outputStream.write(serialized);
+            outputStream.close();
             editor.commit();
         } catch (Exception e) {
             Log.w(CacheUtil.class.getSimpleName(), "Error writing object to cache", e);
+            if (editor != null) {
+                editor.abortUnlessCommitted();
+            }
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
         }
     }
 
@@ -168,7 +329,7 @@ public class CacheUtil {
         if (objectCache == null || objectCache.isClosed()) {
             //noinspection ResultOfMethodCallIgnored
             cacheDir.mkdirs();
-            objectCache = DiskLruCache.open(cacheDir, 0, 2, maxBytes);
+            objectCache = DiskLruCache.open(cacheDir, OBJECT_CACHE_VERSION, 2, maxBytes);
         }
     }
 
@@ -185,13 +346,16 @@ public class CacheUtil {
     }
 
     /**
-     * Call in {@link android.app.Activity#onStart} to have the object cache set up in the background.
+     * Call in {@link android.app.Activity#onStart} to have the object cache set up in the background and
+     * Picasso's memory cache restored to full size after having been shrunk under memory pressure.
      *
      * @param context
      *         the application context
      * @see #setupDiskLruCache
+     * @see #onTrimMemory
      */
     public static void onStart(final Context context) {
+        resizePicassoMemoryCache(1);
         final String path = context.getFilesDir().getAbsolutePath() + File.separator + OBJECT_CACHE_DIR;
         new Thread(new Runnable() {
             @Override
@@ -205,12 +369,16 @@ public class CacheUtil {
     }
 
     /**
-     * Call in {@link android.app.Activity#onStop} to have the object cache closed.
+     * Call in {@link android.app.Activity#onStop} to have the object cache closed and the bitmap pool
+     * emptied. The blur engine is kept across screen changes and released in {@link #onTrimMemory} once the
+     * UI is hidden.
      *
      * @see #closeDiskLruCache
+     * @see BitmapPool#clear
      */
     public static void onStop() {
         closeDiskLruCache();
+        BitmapPool.clear();
     }
 
     /**
@@ -219,6 +387,10 @@ public class CacheUtil {
      * using 15% of the memory available to the application as memory cache, using 2% of free disk space (min.
      * 50MB), and no debugging output.
      *
+     * The percentage of memory used as cache is adjusted to the device: halved on low-RAM devices, reduced on
+     * small heaps and raised on large heaps. The memory cache shrinks on {@link #onTrimMemory} and is
+     * restored on {@link #onStart}.
+     *
      * This call may access the disk and thus may be expensive.
      *
      * @param context
@@ -238,14 +410,33 @@ public class CacheUtil {
             return;
         }
         picassoInitialized = true;
+        picassoContext = context.getApplicationContext();
         Picasso.Builder builder = new Picasso.Builder(context);
+        // shrink caches and release the blur engine under memory pressure
+        context.getApplicationContext().registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                CacheUtil.onTrimMemory(level);
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+                CacheUtil.onTrimMemory(TRIM_MEMORY_COMPLETE);
+            }
+        });
         if (memoryCache != null) {
-            int maxSize = Math.round(getAvailableMemory(context) * memoryCache);
-            Cache lruCache = new LruCache(maxSize);
+            float percentage = adjustMemoryPercentage(context, memoryCache);
+            int maxSize = Math.round(getAvailableMemory(context) * percentage);
+            Cache lruCache = new ResizableLruCache(maxSize);
             picassoMemoryCacheRef = new WeakReference<Cache>(lruCache);
+            picassoMemoryCacheSize = maxSize;
             builder.memoryCache(lruCache);
             Log.d(CacheUtil.class.getSimpleName(), "Picasso Memory Cache set to " + maxSize + " " +
-                    "bytes (" + (memoryCache * 100) + "% of total)");
+                    "bytes (" + (percentage * 100) + "% of total)");
         }
         OkHttpClient okHttpClient = null;
         if (diskCache != null) {
@@ -263,6 +454,7 @@ public class CacheUtil {
             }
         }
         if (okHttpClient != null) {
+            picassoHttpClient = okHttpClient;
             builder.downloader(new OkHttpDownloader(okHttpClient));
         }
         if (debug != null) {
@@ -274,6 +466,44 @@ public class CacheUtil {
         Picasso.setSingletonInstance(picasso);
     }
 
+    /**
+     * Shrinks Picasso's memory cache according to the memory pressure signalled by the system. The less
+     * memory is available, the more of the cache is evicted - up to all of it once the app is in the
+     * background and among the next to be killed. Called automatically if Picasso has been initialized using
+     * {@link #setupPicassoInstance}.
+     *
+     * Releases the native resources of the blur engine and the pixel buffers pooled by {@link StackBlur} once
+     * the UI is hidden.
+     *
+     * @param level
+     *         the trim level as passed to {@link ComponentCallbacks2#onTrimMemory}
+     */
+    public static void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            BlurEngine.release();
+            StackBlur.release();
+        }
+        float fraction;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            fraction = 0;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            fraction = 0.25f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            fraction = 0.5f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            fraction = 0.25f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            fraction = 0.5f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            fraction = 0.75f;
+        } else {
+            return;
+        }
+        Log.d(CacheUtil.class.getSimpleName(), "Trimming Picasso Memory Cache to " + (fraction * 100) + "% " +
+                "on trim level " + level);
+        resizePicassoMemoryCache(fraction);
+    }
+
     /**
      * Clears Picasso's memory cache. Works only if Picasso has been initialized using {@link
      * #setupPicassoInstance}.
@@ -288,13 +518,66 @@ public class CacheUtil {
     }
 
     /**
-     * Clears the disk cache used by Picasso's OkHttpDownloader. Works only if Picasso has been initialized
-     * using {@link #setupPicassoInstance}.
+     * Evicts all images whose URLs start with the specified prefix from Picasso's memory cache right away and
+     * from the disk cache used by Picasso's OkHttpDownloader and the {@link DerivedImageCache} in the
+     * background. Use after modifying an image to have only the affected images reloaded. Works only if
+     * Picasso has been initialized using {@link #setupPicassoInstance}.
+     *
+     * @param urlPrefix
+     *         the start of the URLs of the images to evict, f.e. the full URL of a single image
+     * @see com.productlayer.android.sdk.services.ImageService#getImageURLPrefix
+     * @see com.productlayer.android.sdk.services.ImageService#getUserAvatarURLPrefix
+     */
+    public static void invalidatePicassoImages(final String urlPrefix) {
+        Cache cache = getPicassoMemoryCache();
+        if (cache instanceof ResizableLruCache) {
+            ((ResizableLruCache) cache).clearKeyPrefix(urlPrefix);
+        } else if (cache != null) {
+            cache.clearKeyUri(urlPrefix);
+        }
+        final Context context = picassoContext;
+        final com.squareup.okhttp.Cache diskCache = getPicassoDiskCache();
+        if (context == null && diskCache == null) {
+            return;
+        }
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                if (context != null) {
+                    DerivedImageCache.invalidate(context, urlPrefix);
+                }
+                if (diskCache == null) {
+                    return;
+                }
+                int removed = 0;
+                try {
+                    for (Iterator<String> i = diskCache.urls(); i.hasNext(); ) {
+                        if (i.next().startsWith(urlPrefix)) {
+                            i.remove();
+                            removed++;
+                        }
+                    }
+                } catch (IOException e) {
+                    Log.w(CacheUtil.class.getSimpleName(), e);
+                }
+                Log.d(CacheUtil.class.getSimpleName(), "Evicted " + removed + " images starting with " +
+                        urlPrefix + " from Picasso disk cache");
+            }
+        }).start();
+    }
+
+    /**
+     * Clears the disk cache used by Picasso's OkHttpDownloader and the {@link DerivedImageCache}. Works only
+     * if Picasso has been initialized using {@link #setupPicassoInstance}.
      *
      * This call accesses the disk and is expensive.
      */
     public static void clearPicassoDiskCache() {
-        com.squareup.okhttp.Cache diskCache = picassoDiskCacheRef.get();
+        Context context = picassoContext;
+        if (context != null) {
+            DerivedImageCache.clear(context);
+        }
+        com.squareup.okhttp.Cache diskCache = getPicassoDiskCache();
         if (diskCache == null) {
             Log.w(CacheUtil.class.getSimpleName(), "Picasso disk cache unavailable - clearing failed");
             return;
@@ -306,6 +589,33 @@ public class CacheUtil {
         }
     }
 
+    /**
+     * Use to share connections with Picasso for image downloads outside of Picasso. Responses to requests
+     * not marked as {@code no-store} end up in Picasso's disk cache.
+     *
+     * @return the HTTP client of Picasso's OkHttpDownloader or null if Picasso has not been initialized
+     * using {@link #setupPicassoInstance} with a disk cache size
+     */
+    public static OkHttpClient getPicassoHttpClient() {
+        return picassoHttpClient;
+    }
+
+    /**
+     * @return Picasso's memory cache or null if Picasso has not been initialized using {@link
+     * #setupPicassoInstance} with a memory cache size
+     */
+    static Cache getPicassoMemoryCache() {
+        return picassoMemoryCacheRef == null ? null : picassoMemoryCacheRef.get();
+    }
+
+    /**
+     * @return the disk cache used by Picasso's OkHttpDownloader or null if Picasso has not been initialized
+     * using {@link #setupPicassoInstance} with a disk cache size
+     */
+    static com.squareup.okhttp.Cache getPicassoDiskCache() {
+        return picassoDiskCacheRef == null ? null : picassoDiskCacheRef.get();
+    }
+
     /**
      * Creates and initializes the disk cache used by Picasso's OkHttpDownloader with the specified size
      * limited by half of the system's free space.
@@ -330,6 +640,45 @@ public class CacheUtil {
         picassoDiskCacheRef = new WeakReference<>(diskCache);
     }
 
+    /**
+     * Resizes Picasso's memory cache to a fraction of the size it has been set up with. Bitmaps are evicted
+     * if the cache shrinks below its current size.
+     *
+     * @param fraction
+     *         the fraction of the initial maximum size to set
+     */
+    private static void resizePicassoMemoryCache(float fraction) {
+        Cache cache = getPicassoMemoryCache();
+        if (cache instanceof ResizableLruCache) {
+            ((ResizableLruCache) cache).setMaxSize(Math.round(picassoMemoryCacheSize * fraction));
+        }
+    }
+
+    /**
+     * Adjusts the percentage of memory to use as image cache to the device class. Low-RAM devices and small
+     * heaps get less, large heaps get more as they are otherwise underused.
+     *
+     * @param context
+     *         the application context
+     * @param percentage
+     *         the requested percentage of the memory available to the application
+     * @return the percentage to use
+     */
+    private static float adjustMemoryPercentage(Context context, float percentage) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context
+                .ACTIVITY_SERVICE);
+        int availableMb = getAvailableMemory(context) / 1048576;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT && activityManager.isLowRamDevice()) {
+            percentage *= LOW_RAM_DEVICE_FACTOR;
+        } else if (availableMb <= SMALL_HEAP_MB) {
+            percentage *= SMALL_HEAP_FACTOR;
+        } else if (availableMb >= LARGE_HEAP_MB) {
+            percentage = Math.max(percentage, Math.min(percentage * LARGE_HEAP_FACTOR,
+                    MAX_MEMORY_PERCENTAGE));
+        }
+        return percentage;
+    }
+
     /**
      * Gets the amount of memory available to the application.
      *
@@ -0,0 +1,352 @@
+/*
+ * Copyright (c) 2015, ProductLayer GmbH All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.productlayer.android.common.util;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.util.Log;
+
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.RequestCreator;
+import com.squareup.picasso.Transformation;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Disk cache for images derived from downloaded ones by a Picasso transformation, such as blurred or rounded
+ * variants. Derived images are keyed by source URL and transformation key. Once cached, they are loaded from
+ * disk without downloading the source image or running the transformation again until they expire after
+ * {@link #MAX_AGE_MS} or are invalidated along with their source image.
+ */
+public class DerivedImageCache {
+
+    private static final String CACHE_DIR = "derived-images";
+    private static final long MAX_BYTES = 20 * 1048576; // 20 MiB
+    private static final long MAX_AGE_MS = 24 * 60 * 60 * 1000; // 1 day
+    private static final String URL_SUFFIX = ".url";
+    private static final int JPEG_QUALITY = 90;
+    private static final String STATS_TAG = "derived-image";
+
+    /**
+     * Creates a Picasso request for the derived image. If it is cached on disk and has not expired, the
+     * request loads the cached file. Else it loads the source image, transforms it and stores the result on
+     * disk for next time.
+     *
+     * Checks the existence of a file - cheap, but accesses the disk.
+     *
+     * @param context
+     *         the application context
+     * @param sourceUrl
+     *         the URL of the source image
+     * @param transformation
+     *         the transformation deriving the image from the source image
+     * @param useCache
+     *         false to discard any cached derived image and derive it anew
+     * @return the request to be further configured and started by the caller
+     */
+    public static RequestCreator load(Context context, String sourceUrl, Transformation transformation,
+            boolean useCache) {
+        Picasso picasso = Picasso.with(context);
+        File file = getFile(context, sourceUrl, transformation.key());
+        long timeStart = System.nanoTime();
+        long modified = file.lastModified();
+        boolean exists = modified != 0;
+        if (useCache && exists && System.currentTimeMillis() - modified < MAX_AGE_MS) {
+            CacheStats.recordHit(STATS_TAG, CacheStats.Tier.DISK, System.nanoTime() - timeStart, file
+                    .length());
+            return picasso.load(file);
+        }
+        CacheStats.recordMiss(STATS_TAG, CacheStats.Tier.DISK, System.nanoTime() - timeStart);
+        if (exists) {
+            // the bitmap decoded from the outdated file may still be held in memory
+            picasso.invalidate(file);
+        }
+        return picasso.load(sourceUrl).transform(new PersistingTransformation(transformation, sourceUrl,
+                file));
+    }
+
+    /**
+     * Deletes all images derived from source images whose URLs start with the specified prefix. Accesses the
+     * disk.
+     *
+     * @param context
+     *         the application context
+     * @param urlPrefix
+     *         the start of the URLs of the source images, f.e. the full URL of a single image
+     */
+    public static synchronized void invalidate(Context context, String urlPrefix) {
+        File[] files = getDir(context).listFiles();
+        if (files == null) {
+            return;
+        }
+        Picasso picasso = Picasso.with(context);
+        for (File urlFile : files) {
+            String name = urlFile.getName();
+            if (!name.endsWith(URL_SUFFIX)) {
+                continue;
+            }
+            String sourceUrl = readUrl(urlFile);
+            if (sourceUrl != null && !sourceUrl.startsWith(urlPrefix)) {
+                continue;
+            }
+            String prefix = name.substring(0, name.length() - URL_SUFFIX.length()) + "-";
+            for (File file : files) {
+                if (file.getName().startsWith(prefix)) {
+                    picasso.invalidate(file);
+                    //noinspection ResultOfMethodCallIgnored
+                    file.delete();
+                }
+            }
+            //noinspection ResultOfMethodCallIgnored
+            urlFile.delete();
+        }
+    }
+
+    /**
+     * Deletes all derived images. Accesses the disk.
+     *
+     * @param context
+     *         the application context
+     */
+    public static synchronized void clear(Context context) {
+        File[] files = getDir(context).listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    private static File getDir(Context context) {
+        return new File(context.getCacheDir(), CACHE_DIR);
+    }
+
+    private static File getFile(Context context, String sourceUrl, String transformationKey) {
+        return new File(getDir(context), md5(sourceUrl) + "-" + md5(transformationKey));
+    }
+
+    /**
+     * Records the source URL of the images derived from it, which are named by its hash, to be able to
+     * invalidate them by URL prefix.
+     *
+     * @param file
+     *         a derived image
+     * @param sourceUrl
+     *         the URL of its source image
+     */
+    private static synchronized void writeUrl(File file, String sourceUrl) throws IOException {
+        String name = file.getName();
+        File urlFile = new File(file.getParentFile(), name.substring(0, name.indexOf('-')) + URL_SUFFIX);
+        if (urlFile.exists()) {
+            return;
+        }
+        OutputStream out = new FileOutputStream(urlFile);
+        try {
+            out.write(sourceUrl.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @return the source URL recorded in the file or null if it could not be read
+     */
+    private static String readUrl(File urlFile) {
+        byte[] buffer = new byte[(int) urlFile.length()];
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(urlFile));
+            try {
+                in.readFully(buffer);
+            } finally {
+                in.close();
+            }
+            return new String(buffer, "UTF-8");
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Deletes the least recently written images until the cache fits {@link #MAX_BYTES}, along with the
+     * recorded URLs of source images no longer having any derived images.
+     *
+     * @param dir
+     *         the cache directory
+     */
+    private static synchronized void trim(File dir) {
+        File[] files = dir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return !file.getName().endsWith(URL_SUFFIX);
+            }
+        });
+        if (files == null) {
+            return;
+        }
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        if (size <= MAX_BYTES) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long diff = lhs.lastModified() - rhs.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+        int i = 0;
+        for (; i < files.length && size > MAX_BYTES; i++) {
+            long length = files[i].length();
+            if (files[i].delete()) {
+                size -= length;
+                CacheStats.recordEviction(STATS_TAG, CacheStats.Tier.DISK);
+            }
+        }
+        Set<String> sources = new HashSet<String>();
+        for (; i < files.length; i++) {
+            String name = files[i].getName();
+            int end = name.indexOf('-');
+            if (end > 0) {
+                sources.add(name.substring(0, end));
+            }
+        }
+        File[] urlFiles = dir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.getName().endsWith(URL_SUFFIX);
+            }
+        });
+        if (urlFiles == null) {
+            return;
+        }
+        for (File urlFile : urlFiles) {
+            String name = urlFile.getName();
+            if (!sources.contains(name.substring(0, name.length() - URL_SUFFIX.length()))) {
+                //noinspection ResultOfMethodCallIgnored
+                urlFile.delete();
+            }
+        }
+    }
+
+    private static String md5(String s) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(s.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // MD5 is guaranteed to be available
+            throw new RuntimeException(e);
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is guaranteed to be available
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Applies a transformation and writes its result to the cache. Keeps the key of the wrapped
+     * transformation so that the bitmap is shared with non-persisting requests in the memory cache.
+     */
+    private static class PersistingTransformation implements Transformation {
+
+        private final Transformation transformation;
+        private final String sourceUrl;
+        private final File file;
+
+        PersistingTransformation(Transformation transformation, String sourceUrl, File file) {
+            this.transformation = transformation;
+            this.sourceUrl = sourceUrl;
+            this.file = file;
+        }
+
+        @Override
+        public Bitmap transform(Bitmap source) {
+            Bitmap bitmap = transformation.transform(source);
+            File dir = file.getParentFile();
+            //noinspection ResultOfMethodCallIgnored
+            dir.mkdirs();
+            File tempFile = new File(dir, file.getName() + ".tmp");
+            // keep transparency (f.e. rounded corners) only if needed, JPEG is much smaller
+            boolean opaque = Color.alpha(bitmap.getPixel(0, 0)) == 255 && Color.alpha(bitmap.getPixel(bitmap
+                    .getWidth() - 1, bitmap.getHeight() - 1)) == 255;
+            OutputStream out = null;
+            try {
+                out = new BufferedOutputStream(new FileOutputStream(tempFile));
+                if (opaque) {
+                    bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+                } else {
+                    bitmap.compress(Bitmap.CompressFormat.PNG, 0, out);
+                }
+                out.close();
+                out = null;
+                if (!tempFile.renameTo(file)) {
+                    throw new IOException("Could not rename " + tempFile + " to " + file);
+                }
+                writeUrl(file, sourceUrl);
+                trim(dir);
+            } catch (IOException e) {
+                Log.w(DerivedImageCache.class.getSimpleName(), "Failed to cache derived image", e);
+                //noinspection ResultOfMethodCallIgnored
+                tempFile.delete();
+            } finally {
+                if (out != null) {
+                    try {
+                        out.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+            return bitmap;
+        }
+
+        @Override
+        public String key() {
+            return transformation.key();
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2015, ProductLayer GmbH All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.productlayer.android.common.util;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Shrinks photos before they are uploaded: decodes them subsampled, applies the EXIF orientation, scales them
+ * down to a maximum edge length and re-encodes them as JPEG, lowering the quality until a target file size
+ * is met.
+ *
+ * Processing may take a while and must not be run on the main thread.
+ */
+public class ImagePreprocessor {
+
+    public static final int DEFAULT_MAX_EDGE = 1600;
+    public static final int DEFAULT_QUALITY = 85;
+    public static final long DEFAULT_MAX_BYTES = 600 * 1024;
+
+    // the avatar image is always square with a maximum size of 512 pixel
+    public static final int AVATAR_MAX_EDGE = 512;
+
+    private static final int MIN_QUALITY = 50;
+    private static final int QUALITY_STEP = 10;
+    private static final String UPLOAD_DIR = "upload";
+    private static final String UPLOAD_PREFIX = "upload";
+    private static final String UPLOAD_SUFFIX = ".jpg";
+    private static final String MIME_TYPE_JPEG = "image/jpeg";
+
+    /**
+     * Prepares an image for upload using the default maximum edge length, JPEG quality and target file size.
+     *
+     * @param context
+     *         the application context
+     * @param path
+     *         the path to the image to upload
+     * @return the path to the processed image or {@code path} if the image needs no processing or could not
+     * be processed
+     * @see #prepareForUpload(Context, String, int, int, long)
+     */
+    public static String prepareForUpload(Context context, String path) {
+        return prepareForUpload(context, path, DEFAULT_MAX_EDGE, DEFAULT_QUALITY, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Prepares an image for upload. The processed image is written to a new temporary file in the cache
+     * directory, the original image is left untouched. Call {@link #discard(String, String)} once the upload
+     * has completed.
+     *
+     * @param context
+     *         the application context
+     * @param path
+     *         the path to the image to upload
+     * @param maxEdge
+     *         the maximum width and height of the processed image in px
+     * @param quality
+     *         the JPEG quality to start encoding with (0-100)
+     * @param maxBytes
+     *         the file size to lower the JPEG quality for until reached or the minimum quality is hit
+     * @return the path to the processed image or {@code path} if the image needs no processing or could not
+     * be processed
+     */
+    public static String prepareForUpload(Context context, String path, int maxEdge, int quality, long
+            maxBytes) {
+        File source = new File(path);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        int width = options.outWidth;
+        int height = options.outHeight;
+        if (width <= 0 || height <= 0) {
+            Log.w(ImagePreprocessor.class.getSimpleName(), "Could not decode image at " + path);
+            return path;
+        }
+        int rotation = getRotation(path);
+        if (rotation == 0 && Math.max(width, height) <= maxEdge && source.length() <= maxBytes &&
+                MIME_TYPE_JPEG.equals(options.outMimeType)) {
+            return path;
+        }
+        int sampleSize = 1;
+        while (Math.max(width, height) / (sampleSize * 2) >= maxEdge) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        BitmapPool.setInBitmap(options, width, height);
+        Bitmap decoded;
+        try {
+            decoded = BitmapFactory.decodeFile(path, options);
+        } catch (IllegalArgumentException e) {
+            BitmapPool.releaseInBitmap(options);
+            decoded = BitmapFactory.decodeFile(path, options);
+        }
+        if (decoded == null) {
+            Log.w(ImagePreprocessor.class.getSimpleName(), "Could not decode image at " + path);
+            return path;
+        }
+        Bitmap bitmap = decoded;
+        File target = null;
+        try {
+            float scale = Math.min(1f, maxEdge / (float) Math.max(decoded.getWidth(), decoded.getHeight()));
+            if (scale < 1f || rotation != 0) {
+                Matrix matrix = new Matrix();
+                matrix.postScale(scale, scale);
+                matrix.postRotate(rotation);
+                bitmap = Bitmap.createBitmap(decoded, 0, 0, decoded.getWidth(), decoded.getHeight(), matrix,
+                        true);
+            }
+            File dir = new File(context.getCacheDir(), UPLOAD_DIR);
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Could not create directory " + dir);
+            }
+            // a unique file per call as the same image may be uploaded more than once in parallel
+            target = File.createTempFile(UPLOAD_PREFIX, UPLOAD_SUFFIX, dir);
+            int targetQuality = quality;
+            writeJpeg(bitmap, targetQuality, target);
+            while (target.length() > maxBytes && targetQuality > MIN_QUALITY) {
+                targetQuality = Math.max(MIN_QUALITY, targetQuality - QUALITY_STEP);
+                writeJpeg(bitmap, targetQuality, target);
+            }
+            Log.d(ImagePreprocessor.class.getSimpleName(), "Prepared " + width + "x" + height + " image of "
+                    + source.length() + " bytes for upload: " + bitmap.getWidth() + "x" + bitmap.getHeight() +
+                    ", quality " + targetQuality + ", " + target.length() + " bytes");
+            return target.getAbsolutePath();
+        } catch (IOException e) {
+            Log.w(ImagePreprocessor.class.getSimpleName(), "Could not process image at " + path, e);
+            if (target != null && !target.delete()) {
+                Log.w(ImagePreprocessor.class.getSimpleName(), "Could not delete " + target);
+            }
+            return path;
+        } finally {
+            if (bitmap != decoded) {
+                BitmapPool.put(bitmap);
+            }
+            BitmapPool.put(decoded);
+        }
+    }
+
+    /**
+     * Deletes an image prepared for upload. Does nothing if no processing was needed and the original image
+     * was uploaded as is.
+     *
+     * @param path
+     *         the path to the original image as passed to {@code prepareForUpload}
+     * @param preparedPath
+     *         the path returned by {@code prepareForUpload}
+     */
+    public static void discard(String path, String preparedPath) {
+        if (!preparedPath.equals(path) && !new File(preparedPath).delete()) {
+            Log.w(ImagePreprocessor.class.getSimpleName(), "Could not delete " + preparedPath);
+        }
+    }
+
+    /**
+     * Encodes a bitmap as JPEG, streaming the output to a file.
+     *
+     * @param bitmap
+     *         the bitmap to encode
+     * @param quality
+     *         the JPEG quality (0-100)
+     * @param file
+     *         the file to write to, replaced if it exists
+     * @throws IOException
+     *         if the file could not be written
+     */
+    private static void writeJpeg(Bitmap bitmap, int quality, File file) throws IOException {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            if (!bitmap.compress(Bitmap.CompressFormat.JPEG, quality, out)) {
+                throw new IOException("Could not encode image");
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @param path
+     *         the path to the image
+     * @return the clockwise rotation in degrees as specified by the image's EXIF orientation tag or 0 if
+     * unavailable
+     */
+    private static int getRotation(String path) {
+        int orientation;
+        try {
+            orientation = new ExifInterface(path).getAttributeInt(ExifInterface.TAG_ORIENTATION,
+                    ExifInterface.ORIENTATION_NORMAL);
+        } catch (IOException e) {
+            return 0;
+        }
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                return 90;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                return 180;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                return 270;
+            default:
+                return 0;
+        }
+    }
+}
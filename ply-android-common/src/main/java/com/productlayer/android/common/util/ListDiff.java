@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2015, ProductLayer GmbH All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.productlayer.android.common.util;
+
+import android.support.v7.widget.RecyclerView;
+
+import com.productlayer.core.beans.BaseObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The difference between two lists of objects as the minimal set of removals, insertions, moves and changes
+ * to notify a RecyclerView adapter of. Objects are matched by ID, matching objects that are not equal are
+ * reported as changed.
+ *
+ * Calculating the difference is linear in the size of the lists unless items are reordered, so it may be
+ * done on a background thread while dispatching the notifications must happen on the UI thread.
+ */
+public class ListDiff {
+
+    private static final int REMOVE = 0;
+    private static final int INSERT = 1;
+    private static final int MOVE = 2;
+    private static final int CHANGE = 3;
+
+    // each operation as {type, position, count} or {MOVE, from, to}
+    private final List<int[]> operations = new ArrayList<int[]>();
+
+    private ListDiff() {
+    }
+
+    /**
+     * Calculates the difference between two lists.
+     *
+     * @param oldItems
+     *         the items currently displayed
+     * @param newItems
+     *         the items to display instead
+     * @return the difference to dispatch to an adapter once it displays the new items
+     */
+    public static ListDiff calculate(List<? extends BaseObject> oldItems, List<? extends BaseObject>
+            newItems) {
+        ListDiff diff = new ListDiff();
+        Set<String> newKeys = new HashSet<String>();
+        for (BaseObject item : newItems) {
+            newKeys.add(key(item));
+        }
+        Map<String, BaseObject> oldByKey = new HashMap<String, BaseObject>();
+        // the keys of the displayed items while applying the operations
+        List<String> keys = new ArrayList<String>(oldItems.size());
+        for (BaseObject item : oldItems) {
+            String key = key(item);
+            oldByKey.put(key, item);
+            keys.add(key);
+        }
+        // remove items not contained anymore, from the end to keep positions valid
+        for (int i = keys.size() - 1; i >= 0; i--) {
+            if (!newKeys.contains(keys.get(i))) {
+                int end = i;
+                while (i > 0 && !newKeys.contains(keys.get(i - 1))) {
+                    i--;
+                }
+                diff.add(REMOVE, i, end - i + 1);
+                keys.subList(i, end + 1).clear();
+            }
+        }
+        // insert and move items to their new positions
+        int cntNewItems = newItems.size();
+        for (int i = 0; i < cntNewItems; i++) {
+            BaseObject item = newItems.get(i);
+            String key = key(item);
+            if (i >= keys.size() || !key.equals(keys.get(i))) {
+                int from = keys.indexOf(key);
+                if (from > i) {
+                    diff.add(MOVE, from, i);
+                    keys.remove(from);
+                } else {
+                    diff.add(INSERT, i, 1);
+                }
+                keys.add(i, key);
+            }
+            BaseObject oldItem = oldByKey.get(key);
+            if (oldItem != null && !oldItem.equals(item)) {
+                diff.add(CHANGE, i, 1);
+            }
+        }
+        // duplicates in the old list are left over at the end
+        if (keys.size() > cntNewItems) {
+            diff.add(REMOVE, cntNewItems, keys.size() - cntNewItems);
+        }
+        return diff;
+    }
+
+    /**
+     * @return true if the lists contain the same items in the same order
+     */
+    public boolean isEmpty() {
+        return operations.isEmpty();
+    }
+
+    /**
+     * Notifies an adapter of the difference. Must be called on the UI thread right after the adapter's data
+     * has been replaced with the new items.
+     *
+     * @param adapter
+     *         the adapter displaying the items
+     */
+    public void dispatchTo(RecyclerView.Adapter<?> adapter) {
+        for (int[] operation : operations) {
+            switch (operation[0]) {
+                case REMOVE:
+                    adapter.notifyItemRangeRemoved(operation[1], operation[2]);
+                    break;
+                case INSERT:
+                    adapter.notifyItemRangeInserted(operation[1], operation[2]);
+                    break;
+                case MOVE:
+                    adapter.notifyItemMoved(operation[1], operation[2]);
+                    break;
+                case CHANGE:
+                    adapter.notifyItemRangeChanged(operation[1], operation[2]);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Adds an operation, merging consecutive insertions and changes into ranges.
+     */
+    private void add(int type, int a, int b) {
+        if (!operations.isEmpty() && (type == INSERT || type == CHANGE)) {
+            int[] last = operations.get(operations.size() - 1);
+            if (last[0] == type && last[1] + last[2] == a) {
+                last[2] += b;
+                return;
+            }
+        }
+        operations.add(new int[]{type, a, b});
+    }
+
+    private static String key(BaseObject item) {
+        String id = item.getId();
+        // objects without ID never match
+        return id != null ? id : "@" + System.identityHashCode(item);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2015, ProductLayer GmbH All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.productlayer.android.common.util;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.graphics.Shader;
+
+import com.productlayer.android.common.R;
+import com.squareup.picasso.RequestCreator;
+import com.squareup.picasso.Transformation;
+
+/**
+ * Rounds the corners of an image loaded by Picasso. Use in {@link RequestCreator#transform}.
+ *
+ * As the rounded bitmap is stored in Picasso's memory cache, views bound to an already loaded image display
+ * it right away without having to round it again.
+ */
+public class PicassoRoundedCorners implements Transformation {
+
+    private final Float cornerRadius;
+    private final int viewSize;
+    private final int cornerRadiusMin;
+    private final int cornerRadiusDivisor;
+
+    /**
+     * Creates the transformation to round the corners of an image. The corner radius is calculated from the
+     * size of the image using default values from {@code R.integer.corner_radius_default_min} and {@code
+     * R.integer.corner_radius_divisor_default}.
+     *
+     * @param context
+     *         the application context
+     */
+    public PicassoRoundedCorners(Context context) {
+        this(context, null);
+    }
+
+    /**
+     * Creates the transformation to round the corners of an image.
+     *
+     * @param context
+     *         the application context
+     * @param cornerRadius
+     *         the corner radius in px of the image or null to calculate it from the size of the image
+     */
+    public PicassoRoundedCorners(Context context, Float cornerRadius) {
+        this(context, cornerRadius, 0);
+    }
+
+    /**
+     * Creates the transformation to round the corners of an image displayed at a size different from its
+     * own, f.e. an avatar snapped to a cacheable size. The corner radius is scaled by the size of the image
+     * over the size of the view so that it appears as specified on screen.
+     *
+     * @param context
+     *         the application context
+     * @param cornerRadius
+     *         the corner radius in px of the view or null to calculate it from the size of the image
+     * @param viewSize
+     *         the size in px of the shorter side of the view displaying the image or 0 to apply the corner
+     *         radius to the image as is
+     */
+    public PicassoRoundedCorners(Context context, Float cornerRadius, int viewSize) {
+        Resources res = context.getResources();
+        this.cornerRadius = cornerRadius;
+        this.viewSize = viewSize;
+        this.cornerRadiusMin = res.getInteger(R.integer.corner_radius_default_min);
+        this.cornerRadiusDivisor = res.getInteger(R.integer.corner_radius_divisor_default);
+    }
+
+    @Override
+    public Bitmap transform(Bitmap source) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        float radius = cornerRadius != null ? cornerRadius : Math.max(cornerRadiusMin, Math.min(width,
+                height) / (float) cornerRadiusDivisor);
+        if (cornerRadius != null && viewSize > 0) {
+            radius *= Math.min(width, height) / (float) viewSize;
+        }
+        Bitmap bitmapOut = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+        paint.setShader(new BitmapShader(source, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP));
+        new Canvas(bitmapOut).drawRoundRect(new RectF(0, 0, width, height), radius, radius, paint);
+        source.recycle();
+        return bitmapOut;
+    }
+
+    @Override
+    public String key() {
+        if (cornerRadius == null) {
+            return "rounded" + cornerRadiusMin + "/" + cornerRadiusDivisor;
+        }
+        return viewSize > 0 ? "rounded" + cornerRadius + "@" + viewSize : "rounded" + cornerRadius;
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2015, ProductLayer GmbH All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.productlayer.android.common.util;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.drawable.Drawable;
+import android.widget.ImageView;
+
+import com.productlayer.android.sdk.PLYAndroid;
+import com.productlayer.android.sdk.services.ImageService;
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.Target;
+
+/**
+ * Loads an image in two stages: a tiny blurred thumbnail shown as placeholder as soon as it arrives, followed
+ * by the full image handed to the target supplied by the view.
+ *
+ * Picasso holds targets weakly, so the view must keep a reference to this loader.
+ */
+public class ProgressiveImageLoader {
+
+    public static final int THUMBNAIL_DIVISOR = 8;
+
+    /**
+     * The Picasso tag of all loads started by this class, used to pause loading images while flinging.
+     */
+    public static final Object LOAD_TAG = new Object();
+
+    private final ImageView imageView;
+    private final Target imageTarget;
+    private final Target thumbnailTarget = new ThumbnailTarget();
+    private final Target fullTarget = new FullTarget();
+
+    private boolean fullImageLoaded;
+
+    /**
+     * Creates a loader for an image view.
+     *
+     * @param imageView
+     *         the view to display the thumbnail in
+     * @param imageTarget
+     *         the target to hand the full image to, responsible for displaying it
+     */
+    public ProgressiveImageLoader(ImageView imageView, Target imageTarget) {
+        this.imageView = imageView;
+        this.imageTarget = imageTarget;
+    }
+
+    /**
+     * Builds the URL of a thumbnail at {@link #THUMBNAIL_DIVISOR} of the specified size.
+     *
+     * @param client
+     *         the PLYAndroid SDK client configured to handle communications with the ProductLayer API server
+     * @param imageFileID
+     *         the identifier of the image
+     * @param width
+     *         the width of the full image
+     * @param height
+     *         the height of the full image
+     * @return the URL of the thumbnail
+     */
+    public static String getThumbnailURL(PLYAndroid client, String imageFileID, int width, int height) {
+        return ImageService.getImageForSizeURL(client, imageFileID, Math.max(1, width / THUMBNAIL_DIVISOR),
+                Math.max(1, height / THUMBNAIL_DIVISOR), true, null);
+    }
+
+    /**
+     * Cancels any previous load and starts loading the thumbnail and the full image. The thumbnail is
+     * requested at high priority and cancelled once the full image arrives. It is skipped if the full image
+     * is in Picasso's memory cache, which Picasso delivers before returning from the request.
+     *
+     * @param context
+     *         the application context
+     * @param thumbnailUrl
+     *         the URL of the thumbnail or null to skip the placeholder stage
+     * @param imageUrl
+     *         the URL of the full image
+     */
+    public void load(Context context, String thumbnailUrl, String imageUrl) {
+        cancel(context);
+        fullImageLoaded = false;
+        Picasso picasso = Picasso.with(context);
+        picasso.load(imageUrl).tag(LOAD_TAG).into(fullTarget);
+        if (thumbnailUrl != null && !fullImageLoaded) {
+            picasso.load(thumbnailUrl).priority(Picasso.Priority.HIGH).transform(new PicassoBlur(context
+                    .getApplicationContext())).tag(LOAD_TAG).into(thumbnailTarget);
+        }
+    }
+
+    /**
+     * Cancels loading the thumbnail and the full image.
+     *
+     * @param context
+     *         the application context
+     */
+    public void cancel(Context context) {
+        Picasso picasso = Picasso.with(context);
+        picasso.cancelRequest(thumbnailTarget);
+        picasso.cancelRequest(fullTarget);
+    }
+
+    private class ThumbnailTarget implements Target {
+        @Override
+        public void onBitmapLoaded(Bitmap bitmap, Picasso.LoadedFrom from) {
+            if (!fullImageLoaded) {
+                imageView.setImageBitmap(bitmap);
+            }
+        }
+
+        @Override
+        public void onBitmapFailed(Drawable errorDrawable) {
+            // keep the dominant color until the full image arrives
+        }
+
+        @Override
+        public void onPrepareLoad(Drawable placeHolderDrawable) {
+        }
+    }
+
+    private class FullTarget implements Target {
+        @Override
+        public void onBitmapLoaded(Bitmap bitmap, Picasso.LoadedFrom from) {
+            fullImageLoaded = true;
+            Picasso.with(imageView.getContext()).cancelRequest(thumbnailTarget);
+            imageTarget.onBitmapLoaded(bitmap, from);
+        }
+
+        @Override
+        public void onBitmapFailed(Drawable errorDrawable) {
+            fullImageLoaded = true;
+            Picasso.with(imageView.getContext()).cancelRequest(thumbnailTarget);
+            imageTarget.onBitmapFailed(errorDrawable);
+        }
+
+        @Override
+        public void onPrepareLoad(Drawable placeHolderDrawable) {
+            imageTarget.onPrepareLoad(placeHolderDrawable);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2015, ProductLayer GmbH All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.productlayer.android.common.util;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import com.squareup.picasso.Cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Memory cache for Picasso evicting the least recently used bitmaps. Unlike Picasso's own LruCache, its
+ * maximum size can be changed while the cache is in use, allowing it to shrink under memory pressure.
+ */
+public class ResizableLruCache implements Cache {
+
+    private static final char KEY_SEPARATOR = '\n';
+
+    private final LinkedHashMap<String, Bitmap> map = new LinkedHashMap<String, Bitmap>(0, 0.75f, true);
+
+    private int maxSize;
+    private int size;
+    private long evictionCount;
+
+    /**
+     * Creates a new memory cache.
+     *
+     * @param maxSize
+     *         the maximum size of the cache in bytes
+     */
+    public ResizableLruCache(int maxSize) {
+        this.maxSize = Math.max(0, maxSize);
+    }
+
+    @Override
+    public Bitmap get(String key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+        synchronized (this) {
+            return map.get(key);
+        }
+    }
+
+    @Override
+    public void set(String key, Bitmap bitmap) {
+        if (key == null || bitmap == null) {
+            throw new NullPointerException("key == null || bitmap == null");
+        }
+        synchronized (this) {
+            size += sizeOf(bitmap);
+            Bitmap previous = map.put(key, bitmap);
+            if (previous != null) {
+                size -= sizeOf(previous);
+            }
+            trimToSize(maxSize);
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized int maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Changes the maximum size of the cache, evicting the least recently used bitmaps if it shrinks below the
+     * current size.
+     *
+     * @param maxSize
+     *         the new maximum size of the cache in bytes
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        this.maxSize = Math.max(0, maxSize);
+        trimToSize(this.maxSize);
+    }
+
+    /**
+     * @return the amount of bitmaps evicted to keep the cache within its maximum size
+     */
+    public synchronized long evictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public synchronized void clear() {
+        trimToSize(-1);
+    }
+
+    @Override
+    public synchronized void clearKeyUri(String uri) {
+        int uriLength = uri.length();
+        for (Iterator<Map.Entry<String, Bitmap>> i = map.entrySet().iterator(); i.hasNext(); ) {
+            Map.Entry<String, Bitmap> entry = i.next();
+            String key = entry.getKey();
+            if (key.startsWith(uri) && key.length() > uriLength && key.charAt(uriLength) == KEY_SEPARATOR) {
+                i.remove();
+                size -= sizeOf(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Removes the bitmaps of all URIs starting with the specified prefix, regardless of any transformations
+     * applied to them.
+     *
+     * @param uriPrefix
+     *         the start of the URIs whose bitmaps to remove
+     */
+    public synchronized void clearKeyPrefix(String uriPrefix) {
+        for (Iterator<Map.Entry<String, Bitmap>> i = map.entrySet().iterator(); i.hasNext(); ) {
+            Map.Entry<String, Bitmap> entry = i.next();
+            if (entry.getKey().startsWith(uriPrefix)) {
+                i.remove();
+                size -= sizeOf(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Evicts the least recently used bitmaps until the cache fits the specified size.
+     *
+     * @param maxSize
+     *         the size in bytes to shrink the cache to, -1 to evict all bitmaps
+     */
+    private void trimToSize(int maxSize) {
+        Iterator<Map.Entry<String, Bitmap>> i = map.entrySet().iterator();
+        while (size > maxSize && i.hasNext()) {
+            Map.Entry<String, Bitmap> entry = i.next();
+            i.remove();
+            size -= sizeOf(entry.getValue());
+            evictionCount++;
+        }
+        if (map.isEmpty()) {
+            size = 0;
+        }
+    }
+
+    private static int sizeOf(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bitmap.getAllocationByteCount();
+        }
+        return bitmap.getRowBytes() * bitmap.getHeight();
+    }
+}
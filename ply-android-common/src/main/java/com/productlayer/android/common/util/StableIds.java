@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2015, ProductLayer GmbH All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.productlayer.android.common.util;
+
+import com.productlayer.core.beans.BaseObject;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Allocates stable IDs for RecyclerView adapters by interning server object IDs. Each object ID is mapped to
+ * a unique long on first request and keeps it for the life of the process, regardless of changes to the
+ * object's content. Objects without server ID get an ID of their own that is released once they are garbage
+ * collected.
+ */
+public class StableIds {
+
+    private static final ConcurrentMap<String, Long> ids = new ConcurrentHashMap<String, Long>();
+    private static final AtomicLong nextId = new AtomicLong();
+
+    // the IDs of objects without server ID by identity hash code, held weakly
+    private static final Map<Integer, List<IdentityEntry>> localIds = new HashMap<Integer,
+            List<IdentityEntry>>();
+    private static final ReferenceQueue<Object> collected = new ReferenceQueue<Object>();
+
+    /**
+     * @param object
+     *         the object displayed by an adapter item
+     * @return the stable ID of the object
+     */
+    public static long get(BaseObject object) {
+        String id = object.getId();
+        if (id == null) {
+            // objects without ID are only identical to themselves
+            return getLocal(object);
+        }
+        return get(id);
+    }
+
+    /**
+     * @param id
+     *         the server ID of an object
+     * @return the stable ID of the object
+     */
+    public static long get(String id) {
+        Long stableId = ids.get(id);
+        if (stableId == null) {
+            Long newId = nextId.getAndIncrement();
+            stableId = ids.putIfAbsent(id, newId);
+            if (stableId == null) {
+                stableId = newId;
+            }
+        }
+        return stableId;
+    }
+
+    /**
+     * @param object
+     *         an object without server ID
+     * @return the stable ID of the object instance
+     */
+    private static synchronized long getLocal(Object object) {
+        purgeCollected();
+        int hash = System.identityHashCode(object);
+        List<IdentityEntry> entries = localIds.get(hash);
+        if (entries == null) {
+            entries = new ArrayList<IdentityEntry>(1);
+            localIds.put(hash, entries);
+        }
+        for (IdentityEntry entry : entries) {
+            if (entry.get() == object) {
+                return entry.id;
+            }
+        }
+        IdentityEntry entry = new IdentityEntry(object, hash, nextId.getAndIncrement());
+        entries.add(entry);
+        return entry.id;
+    }
+
+    /**
+     * Removes the IDs of garbage collected objects. Must be called while holding the class lock.
+     */
+    private static void purgeCollected() {
+        Reference<?> reference;
+        while ((reference = collected.poll()) != null) {
+            IdentityEntry entry = (IdentityEntry) reference;
+            List<IdentityEntry> entries = localIds.get(entry.hash);
+            if (entries != null && entries.remove(entry) && entries.isEmpty()) {
+                localIds.remove(entry.hash);
+            }
+        }
+    }
+
+    /**
+     * The ID of an object without server ID, cleared once the object has been garbage collected.
+     */
+    private static class IdentityEntry extends WeakReference<Object> {
+
+        private final int hash;
+        private final long id;
+
+        private IdentityEntry(Object object, int hash, long id) {
+            super(object, collected);
+            this.hash = hash;
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,482 @@
+/*
+ * Copyright (c) 2015, ProductLayer GmbH All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.productlayer.android.common.util;
+
+import android.graphics.Bitmap;
+import android.os.Process;
+import android.support.v4.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Stack Blur implementation splitting the horizontal pass into row stripes and the vertical pass into column
+ * stripes processed on all available cores. Pixel buffers of thumbnail-sized images are pooled, small
+ * scratch buffers are kept per thread and the division lookup table is cached per radius, so repeated blurs
+ * of thumbnails do not allocate beyond the output bitmap. The pool is released by {@link #release}.
+ *
+ * The output is identical to the single-threaded Stack Blur v1.0 by Mario Klingemann.
+ */
+public class StackBlur {
+
+    // Stack Blur v1.0 from
+    // http://www.quasimondo.com/StackBlurForCanvas/StackBlurDemo.html
+    //
+    // Java Author: Mario Klingemann <mario at quasimondo.com>
+    // http://incubator.quasimondo.com
+    // created Feburary 29, 2004
+    // Android port : Yahel Bouaziz <yahel at kayenko.com>
+    // http://www.kayenko.com
+    // ported april 5th, 2012
+    //
+    // Stack Blur Algorithm by Mario Klingemann <mario@quasimondo.com>
+
+    private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+    private static final int MIN_STRIPE_SIZE = 32;
+    // pooled pixel buffers are bounded to 4 x 256 KB regardless of the number of calling threads
+    private static final int MAX_RETAINED_PIXELS = 256 * 256;
+    private static final int MAX_POOLED_BUFFERS = 4;
+    private static final int MAX_CACHED_RADII = 4;
+
+    private static final LruCache<Integer, int[]> divideTables = new LruCache<Integer, int[]>
+            (MAX_CACHED_RADII);
+
+    private static final List<int[]> pixelBuffers = new ArrayList<int[]>(MAX_POOLED_BUFFERS);
+
+    private static final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    private static ExecutorService threadPool;
+
+    /**
+     * Applies a blur effect to a bitmap without using any native or support RenderScript library.
+     *
+     * @param bitmapIn
+     *         the input bitmap
+     * @param radius
+     *         the blur radius (min 1)
+     * @return a new blurred version of the input bitmap
+     */
+    public static Bitmap blur(Bitmap bitmapIn, final int radius) {
+        Bitmap bitmap = bitmapIn.copy(bitmapIn.getConfig(), true);
+        final int w = bitmap.getWidth();
+        final int h = bitmap.getHeight();
+        int wh = w * h;
+
+        final int[] pix = obtainBuffer(wh);
+        final int[] rgb = obtainBuffer(wh);
+        final int[] dv = getDivideTable(radius);
+        try {
+            bitmap.getPixels(pix, 0, w, 0, 0, w, h);
+            runStriped(h, new Stripe() {
+                @Override
+                public void run(int from, int to) {
+                    blurRows(pix, rgb, w, radius, dv, from, to);
+                }
+            });
+            runStriped(w, new Stripe() {
+                @Override
+                public void run(int from, int to) {
+                    blurColumns(pix, rgb, w, h, radius, dv, from, to);
+                }
+            });
+            bitmap.setPixels(pix, 0, w, 0, 0, w, h);
+        } finally {
+            recycleBuffer(pix);
+            recycleBuffer(rgb);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Releases the pooled pixel buffers, f.e. once the UI is hidden.
+     */
+    public static void release() {
+        synchronized (pixelBuffers) {
+            pixelBuffers.clear();
+        }
+    }
+
+    /**
+     * Takes a pooled pixel buffer of at least the specified size or allocates a new one.
+     */
+    private static int[] obtainBuffer(int size) {
+        synchronized (pixelBuffers) {
+            for (int i = 0; i < pixelBuffers.size(); i++) {
+                if (pixelBuffers.get(i).length >= size) {
+                    return pixelBuffers.remove(i);
+                }
+            }
+        }
+        return new int[size];
+    }
+
+    /**
+     * Returns a pixel buffer to the pool if it is thumbnail-sized and the pool is not full.
+     */
+    private static void recycleBuffer(int[] buffer) {
+        if (buffer.length > MAX_RETAINED_PIXELS) {
+            return;
+        }
+        synchronized (pixelBuffers) {
+            if (pixelBuffers.size() < MAX_POOLED_BUFFERS) {
+                pixelBuffers.add(buffer);
+            }
+        }
+    }
+
+    /**
+     * Horizontal pass: blurs the rows {@code from} (inclusive) to {@code to} (exclusive) of {@code pix} into
+     * {@code rgb}, packing the three color channels into one int per pixel.
+     */
+    static void blurRows(int[] pix, int[] rgb, int w, int radius, int[] dv, int from, int to) {
+        Scratch buffers = scratch.get();
+        int div = radius + radius + 1;
+        int[] stack = buffers.stack = Scratch.ensure(buffers.stack, div * 3);
+        int[] vmin = buffers.vmin = Scratch.ensure(buffers.vmin, w);
+        int wm = w - 1;
+        int r1 = radius + 1;
+        int rsum;
+        int gsum;
+        int bsum;
+        int routsum;
+        int goutsum;
+        int boutsum;
+        int rinsum;
+        int ginsum;
+        int binsum;
+        int stackpointer;
+        int sir;
+        int rbs;
+        int p;
+        int yi;
+        int yw;
+
+        for (int x = 0; x < w; x++) {
+            vmin[x] = Math.min(x + radius + 1, wm);
+        }
+
+        for (int y = from; y < to; y++) {
+            rinsum = ginsum = binsum = routsum = goutsum = boutsum = rsum = gsum = bsum = 0;
+            yw = yi = y * w;
+            for (int i = -radius; i <= radius; i++) {
+                p = pix[yi + Math.min(wm, Math.max(i, 0))];
+                sir = (i + radius) * 3;
+                stack[sir] = (p & 0xff0000) >> 16;
+                stack[sir + 1] = (p & 0x00ff00) >> 8;
+                stack[sir + 2] = p & 0x0000ff;
+                rbs = r1 - Math.abs(i);
+                rsum += stack[sir] * rbs;
+                gsum += stack[sir + 1] * rbs;
+                bsum += stack[sir + 2] * rbs;
+                if (i > 0) {
+                    rinsum += stack[sir];
+                    ginsum += stack[sir + 1];
+                    binsum += stack[sir + 2];
+                } else {
+                    routsum += stack[sir];
+                    goutsum += stack[sir + 1];
+                    boutsum += stack[sir + 2];
+                }
+            }
+            stackpointer = radius;
+            for (int x = 0; x < w; x++) {
+                rgb[yi] = (dv[rsum] << 16) | (dv[gsum] << 8) | dv[bsum];
+
+                rsum -= routsum;
+                gsum -= goutsum;
+                bsum -= boutsum;
+
+                sir = ((stackpointer - radius + div) % div) * 3;
+
+                routsum -= stack[sir];
+                goutsum -= stack[sir + 1];
+                boutsum -= stack[sir + 2];
+
+                p = pix[yw + vmin[x]];
+
+                stack[sir] = (p & 0xff0000) >> 16;
+                stack[sir + 1] = (p & 0x00ff00) >> 8;
+                stack[sir + 2] = p & 0x0000ff;
+
+                rinsum += stack[sir];
+                ginsum += stack[sir + 1];
+                binsum += stack[sir + 2];
+
+                rsum += rinsum;
+                gsum += ginsum;
+                bsum += binsum;
+
+                stackpointer = (stackpointer + 1) % div;
+                sir = stackpointer * 3;
+
+                routsum += stack[sir];
+                goutsum += stack[sir + 1];
+                boutsum += stack[sir + 2];
+
+                rinsum -= stack[sir];
+                ginsum -= stack[sir + 1];
+                binsum -= stack[sir + 2];
+
+                yi++;
+            }
+        }
+    }
+
+    /**
+     * Vertical pass: blurs the columns {@code from} (inclusive) to {@code to} (exclusive) of {@code rgb} back
+     * into {@code pix}, preserving the alpha channel of {@code pix}.
+     */
+    static void blurColumns(int[] pix, int[] rgb, int w, int h, int radius, int[] dv, int from, int to) {
+        Scratch buffers = scratch.get();
+        int div = radius + radius + 1;
+        int[] stack = buffers.stack = Scratch.ensure(buffers.stack, div * 3);
+        int[] vmin = buffers.vmin = Scratch.ensure(buffers.vmin, h);
+        int hm = h - 1;
+        int r1 = radius + 1;
+        int rsum;
+        int gsum;
+        int bsum;
+        int routsum;
+        int goutsum;
+        int boutsum;
+        int rinsum;
+        int ginsum;
+        int binsum;
+        int stackpointer;
+        int sir;
+        int rbs;
+        int c;
+        int yi;
+        int yp;
+
+        for (int y = 0; y < h; y++) {
+            vmin[y] = Math.min(y + r1, hm) * w;
+        }
+
+        for (int x = from; x < to; x++) {
+            rinsum = ginsum = binsum = routsum = goutsum = boutsum = rsum = gsum = bsum = 0;
+            yp = -radius * w;
+            for (int i = -radius; i <= radius; i++) {
+                c = rgb[Math.max(0, yp) + x];
+                sir = (i + radius) * 3;
+                stack[sir] = c >> 16;
+                stack[sir + 1] = (c >> 8) & 0xff;
+                stack[sir + 2] = c & 0xff;
+                rbs = r1 - Math.abs(i);
+                rsum += stack[sir] * rbs;
+                gsum += stack[sir + 1] * rbs;
+                bsum += stack[sir + 2] * rbs;
+                if (i > 0) {
+                    rinsum += stack[sir];
+                    ginsum += stack[sir + 1];
+                    binsum += stack[sir + 2];
+                } else {
+                    routsum += stack[sir];
+                    goutsum += stack[sir + 1];
+                    boutsum += stack[sir + 2];
+                }
+                if (i < hm) {
+                    yp += w;
+                }
+            }
+            yi = x;
+            stackpointer = radius;
+            for (int y = 0; y < h; y++) {
+                // Preserve alpha channel: ( 0xff000000 & pix[yi] )
+                pix[yi] = (0xff000000 & pix[yi]) | (dv[rsum] << 16) | (dv[gsum] << 8) | dv[bsum];
+
+                rsum -= routsum;
+                gsum -= goutsum;
+                bsum -= boutsum;
+
+                sir = ((stackpointer - radius + div) % div) * 3;
+
+                routsum -= stack[sir];
+                goutsum -= stack[sir + 1];
+                boutsum -= stack[sir + 2];
+
+                c = rgb[x + vmin[y]];
+
+                stack[sir] = c >> 16;
+                stack[sir + 1] = (c >> 8) & 0xff;
+                stack[sir + 2] = c & 0xff;
+
+                rinsum += stack[sir];
+                ginsum += stack[sir + 1];
+                binsum += stack[sir + 2];
+
+                rsum += rinsum;
+                gsum += ginsum;
+                bsum += binsum;
+
+                stackpointer = (stackpointer + 1) % div;
+                sir = stackpointer * 3;
+
+                routsum += stack[sir];
+                goutsum += stack[sir + 1];
+                boutsum += stack[sir + 2];
+
+                rinsum -= stack[sir];
+                ginsum -= stack[sir + 1];
+                binsum -= stack[sir + 2];
+
+                yi += w;
+            }
+        }
+    }
+
+    /**
+     * Gets the lookup table dividing weighted channel sums by the sum of weights for the specified radius.
+     */
+    private static int[] getDivideTable(int radius) {
+        int[] dv = divideTables.get(radius);
+        if (dv == null) {
+            dv = createDivideTable(radius);
+            divideTables.put(radius, dv);
+        }
+        return dv;
+    }
+
+    /**
+     * Creates the lookup table dividing weighted channel sums by the sum of weights for the specified radius.
+     */
+    static int[] createDivideTable(int radius) {
+        int div = radius + radius + 1;
+        int divsum = (div + 1) >> 1;
+        divsum *= divsum;
+        int[] dv = new int[256 * divsum];
+        for (int i = 0; i < 256 * divsum; i++) {
+            dv[i] = i / divsum;
+        }
+        return dv;
+    }
+
+    /**
+     * Splits {@code [0, size)} into stripes of at least {@link #MIN_STRIPE_SIZE}, runs all but the first on
+     * the thread pool and the first on the calling thread, and waits for all of them to finish.
+     */
+    private static void runStriped(int size, final Stripe stripe) {
+        int stripes = Math.min(PARALLELISM, size / MIN_STRIPE_SIZE);
+        if (stripes <= 1) {
+            stripe.run(0, size);
+            return;
+        }
+        int stripeSize = (size + stripes - 1) / stripes;
+        List<Future<?>> futures = new ArrayList<Future<?>>(stripes - 1);
+        ExecutorService executor = getThreadPool();
+        for (int from = stripeSize; from < size; from += stripeSize) {
+            final int stripeFrom = from;
+            final int stripeTo = Math.min(size, from + stripeSize);
+            futures.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    stripe.run(stripeFrom, stripeTo);
+                }
+            }));
+        }
+        RuntimeException failure = null;
+        try {
+            stripe.run(0, stripeSize);
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        // wait for all stripes even on failure as they share the caller's buffers
+        boolean interrupted = false;
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = new RuntimeException(e.getCause());
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * @return the thread pool running all but the first stripe of each pass
+     */
+    private static synchronized ExecutorService getThreadPool() {
+        if (threadPool == null) {
+            threadPool = Executors.newFixedThreadPool(Math.max(1, PARALLELISM - 1), new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            r.run();
+                        }
+                    }, "StackBlur");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return threadPool;
+    }
+
+    /**
+     * A range of rows or columns to process.
+     */
+    private interface Stripe {
+        void run(int from, int to);
+    }
+
+    /**
+     * Per-thread scratch buffers, grown on demand.
+     */
+    private static class Scratch {
+        private int[] stack;
+        private int[] vmin;
+
+        private static int[] ensure(int[] buffer, int size) {
+            return buffer != null && buffer.length >= size ? buffer : new int[size];
+        }
+    }
+}
@@ -37,13 +37,11 @@ import android.widget.TextView;
 
 import com.productlayer.android.common.R;
 import com.productlayer.android.common.fragment.ProfileFragment;
+import com.productlayer.android.common.global.AvatarCache;
 import com.productlayer.android.common.handler.NavigationHandler;
-import com.productlayer.android.common.util.PicassoTarget;
 import com.productlayer.core.beans.Product;
 import com.productlayer.core.beans.SimpleUserInfo;
 import com.productlayer.core.beans.User;
-import com.squareup.picasso.Picasso;
-import com.squareup.picasso.Target;
 
 /**
  * A relative layout containing the name of a product and its author.
@@ -58,10 +56,10 @@ public class AuthorView extends RelativeLayout {
     private View authorInfoView;
     private TextView authorNameView;
     private TextView timePostedView;
-    private Target authorImageTarget;
 
     private TextView productNameView;
 
+    private int avatarSizePx;
     private SimpleUserInfo author;
     private long timeCreated;
     private Product product;
@@ -148,6 +146,7 @@ public class AuthorView extends RelativeLayout {
      *         the width/height of the author's avatar
      */
     public void setAvatarSize(int avatarSizePx) {
+        this.avatarSizePx = avatarSizePx;
         ViewGroup.LayoutParams authorImageLayoutParams = authorImageView.getLayoutParams();
         authorImageLayoutParams.width = avatarSizePx;
         authorImageLayoutParams.height = avatarSizePx;
@@ -159,7 +158,7 @@ public class AuthorView extends RelativeLayout {
      * @param author
      *         the author to show
      * @param authorImageUrl
-     *         the URL of the author's avatar image to load
+     *         the URL of the author's avatar image to load, see {@link AvatarCache#getAvatarURL}
      * @param isFriend
      *         true if a user is logged in and the author of this entry is a friend
      * @param product
@@ -187,15 +186,12 @@ public class AuthorView extends RelativeLayout {
         if (this.author == null || !author.getId().equals(this.author.getId()) || !author.getNickname()
                 .equals(this.author.getNickname())) {
             // display new author image and name
-            if (authorImageTarget != null) {
-                Picasso.with(context).cancelRequest(authorImageTarget);
-            }
-            authorImageView.setImageBitmap(null);
             if (authorImageUrl != null) {
                 authorImageView.setVisibility(VISIBLE);
-                authorImageTarget = PicassoTarget.roundedCornersImage(context, authorImageView);
-                Picasso.with(context).load(authorImageUrl).into(authorImageTarget);
+                AvatarCache.bind(context, authorImageView, author.getId(), avatarSizePx, authorImageUrl);
             } else {
+                AvatarCache.unbind(authorImageView);
+                authorImageView.setImageBitmap(null);
                 authorImageView.setVisibility(GONE);
             }
             authorNameView.setText(author.getNickname());
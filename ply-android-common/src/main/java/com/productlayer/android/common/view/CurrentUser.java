@@ -44,12 +44,11 @@ import com.productlayer.android.common.R;
 import com.productlayer.android.common.model.Level;
 import com.productlayer.android.common.util.BitmapUtil;
 import com.productlayer.android.common.util.MetricsUtil;
-import com.productlayer.android.common.util.PicassoTarget;
+import com.productlayer.android.common.util.PicassoRoundedCorners;
 import com.productlayer.android.sdk.PLYAndroid;
 import com.productlayer.android.sdk.services.ImageService;
 import com.productlayer.core.beans.User;
 import com.squareup.picasso.Picasso;
-import com.squareup.picasso.Target;
 
 /**
  * A compound view displaying a short summary about the currently logged in user (avatar, points,
@@ -69,7 +68,6 @@ public class CurrentUser extends RelativeLayout {
     private TextView userName;
     private TextView levelText;
     private TextView levelProgress;
-    private Target userImageTarget;
 
     private User user;
 
@@ -109,8 +107,8 @@ public class CurrentUser extends RelativeLayout {
         }
         if (userImageUrl != null) {
             // load avatar from supplied image URL
-            userImageTarget = PicassoTarget.roundedCornersImage(context, userImage);
-            Picasso.with(context).load(userImageUrl).into(userImageTarget);
+            Picasso.with(context).load(userImageUrl).transform(new PicassoRoundedCorners(context)).noFade()
+                    .into(userImage);
         } else {
             // use default user image
             clearUser();
@@ -130,6 +128,7 @@ public class CurrentUser extends RelativeLayout {
      * Clears information about any user, displaying the default avatar and no text.
      */
     public void clearUser() {
+        Picasso.with(context).cancelRequest(userImage);
         Bitmap bitmap = BitmapFactory.decodeResource(context.getResources(), R.drawable.avatar_36dp);
         setAvatarBitmap(bitmap);
         userFullName.setText("");
@@ -154,8 +153,8 @@ public class CurrentUser extends RelativeLayout {
             String userImageUrl = ImageService.getUserAvatarURL(client, user.getId(), avatarSizePx);
             Log.d(getClass().getSimpleName(), "Loading avatar for current user " + user.getNickname() + " " +
                     "from " + userImageUrl);
-            userImageTarget = PicassoTarget.roundedCornersImage(context, userImage);
-            Picasso.with(context).load(userImageUrl).into(userImageTarget);
+            Picasso.with(context).load(userImageUrl).transform(new PicassoRoundedCorners(context)).noFade()
+                    .into(userImage);
         }
         String firstName = user.getFirstName();
         String lastName = user.getLastName();
@@ -43,6 +43,7 @@ import com.productlayer.android.common.R;
 import com.productlayer.android.common.activity.ImageActivity;
 import com.productlayer.android.common.handler.NavigationHandler;
 import com.productlayer.android.common.handler.UserHandler;
+import com.productlayer.android.common.util.ProgressiveImageLoader;
 import com.productlayer.android.common.util.ThemeUtil;
 import com.productlayer.core.beans.ProductImage;
 import com.productlayer.core.beans.SimpleUserInfo;
@@ -65,7 +66,9 @@ public class ImagePreview extends CardView {
     private AuthorView authorView;
     private ImageView productImage;
     private Target productImageTarget = new ProductImageTarget();
+    private ProgressiveImageLoader productImageLoader;
     private int imagePlaceholderColor;
+    private int maxImageHeightPx;
     private View scrim;
 
     private ProductImage image;
@@ -92,6 +95,7 @@ public class ImagePreview extends CardView {
         ViewGroup.LayoutParams productImageLayoutParams = productImage.getLayoutParams();
         productImageLayoutParams.width = imageWidthPx;
         productImageLayoutParams.height = maxImageHeightPx;
+        this.maxImageHeightPx = maxImageHeightPx;
         ViewGroup.LayoutParams lpForScrim = scrim.getLayoutParams();
         lpForScrim.height = ProductPreview.calcScrimSize(maxImageHeightPx);
         authorView.setAvatarSize(avatarSizePx);
@@ -163,6 +167,7 @@ public class ImagePreview extends CardView {
         this.friendBackgroundColor = friendBackgroundColor == null ? Color.WHITE : friendBackgroundColor;
         authorView = (AuthorView) findViewById(R.id.author);
         productImage = (ImageView) findViewById(R.id.product_image);
+        productImageLoader = new ProgressiveImageLoader(productImage, productImageTarget);
         scrim = findViewById(R.id.scrim);
         if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
             setPreventCornerOverlap(false);
@@ -180,6 +185,8 @@ public class ImagePreview extends CardView {
      *         the image to show
      * @param productImageUrl
      *         the URL of the product image to load
+     * @param productThumbnailUrl
+     *         the URL of a tiny version of the product image to show blurred while the image is being loaded
      * @param productDominantColor
      *         the dominant color (rgb) of the product image to use as background while the image is being
      *         loaded
@@ -190,8 +197,8 @@ public class ImagePreview extends CardView {
      * @param userHandler
      *         the handler to retrieve user info from for friend and voting info
      */
-    public void setImage(ProductImage image, String productImageUrl, int[] productDominantColor,
-            SimpleUserInfo author, String authorImageUrl, UserHandler userHandler) {
+    public void setImage(ProductImage image, String productImageUrl, String productThumbnailUrl, int[]
+            productDominantColor, SimpleUserInfo author, String authorImageUrl, UserHandler userHandler) {
         currentUser = userHandler.getUser();
         friends = userHandler.getFriends();
         if (this.image != null && image.equals(this.image)) {
@@ -199,7 +206,7 @@ public class ImagePreview extends CardView {
         }
         // display new product image
         this.image = image;
-        Picasso.with(context).cancelRequest(productImageTarget);
+        productImageLoader.cancel(context);
         productImage.setImageBitmap(null);
         boolean isFriend = userHandler.isFriend(author);
         // colorize cardview if this entry was created by oneself or a friend
@@ -214,7 +221,7 @@ public class ImagePreview extends CardView {
         // load product image
         if (productImageUrl != null) {
             productImage.setVisibility(VISIBLE);
-            Picasso.with(context).load(productImageUrl).into(productImageTarget);
+            productImageLoader.load(context, productThumbnailUrl, productImageUrl);
         } else {
             productImage.setVisibility(GONE);
             // TODO hide view or failed loading picture placeholder
@@ -251,10 +258,12 @@ public class ImagePreview extends CardView {
             ViewGroup.LayoutParams productImageLayoutParams = productImage.getLayoutParams();
             int bitmapWidth = bitmap.getWidth();
             int bitmapHeight = bitmap.getHeight();
-            if (productImageLayoutParams.height != bitmapHeight) {
-                productImageLayoutParams.height = bitmapHeight;
+            int imageHeight = ProductPreview.calcImageHeight(bitmapWidth, bitmapHeight,
+                    productImageLayoutParams.width, maxImageHeightPx);
+            if (productImageLayoutParams.height != imageHeight) {
+                productImageLayoutParams.height = imageHeight;
                 ViewGroup.LayoutParams lpForScrim = scrim.getLayoutParams();
-                lpForScrim.height = ProductPreview.calcScrimSize(bitmapHeight);
+                lpForScrim.height = ProductPreview.calcScrimSize(imageHeight);
             }
             if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
                 productImage.setBackgroundColor(Color.TRANSPARENT);
@@ -42,6 +42,7 @@ import com.productlayer.android.common.R;
 import com.productlayer.android.common.handler.NavigationHandler;
 import com.productlayer.android.common.handler.UserHandler;
 import com.productlayer.android.common.util.MetricsUtil;
+import com.productlayer.android.common.util.ProgressiveImageLoader;
 import com.productlayer.android.common.util.ThemeUtil;
 import com.productlayer.android.sdk.PLYAndroid;
 import com.productlayer.core.beans.Product;
@@ -63,7 +64,9 @@ public class ProductPreview extends CardView {
     private AuthorView authorView;
     private ImageView productImage;
     private Target productImageTarget = new ProductImageTarget();
+    private ProgressiveImageLoader productImageLoader;
     private int imagePlaceholderColor;
+    private int maxImageHeightPx;
     private View scrim;
     private LikeView likeView;
     private ImageView writeOpinionImage;
@@ -93,6 +96,7 @@ public class ProductPreview extends CardView {
         ViewGroup.LayoutParams productImageLayoutParams = productImage.getLayoutParams();
         productImageLayoutParams.width = imageWidthPx;
         productImageLayoutParams.height = maxImageHeightPx;
+        this.maxImageHeightPx = maxImageHeightPx;
         ViewGroup.LayoutParams lpForScrim = scrim.getLayoutParams();
         lpForScrim.height = calcScrimSize(maxImageHeightPx);
         authorView.setAvatarSize(avatarSizePx);
@@ -169,6 +173,7 @@ public class ProductPreview extends CardView {
         this.friendBackgroundColor = friendBackgroundColor == null ? Color.WHITE : friendBackgroundColor;
         authorView = (AuthorView) findViewById(R.id.author);
         productImage = (ImageView) findViewById(R.id.product_image);
+        productImageLoader = new ProgressiveImageLoader(productImage, productImageTarget);
         likeView = (LikeView) findViewById(R.id.like_view);
         writeOpinionImage = (ImageView) findViewById(R.id.write_opinion_image);
         scrim = findViewById(R.id.scrim);
@@ -194,6 +199,28 @@ public class ProductPreview extends CardView {
         return idealHeight > minHeight ? idealHeight : minHeight;
     }
 
+    /**
+     * Calculates the height of the image view displaying a bitmap scaled to the view's width. Bitmaps may be
+     * larger than the view if requested in bucketed sizes.
+     *
+     * @param bitmapWidth
+     *         the width of the loaded bitmap
+     * @param bitmapHeight
+     *         the height of the loaded bitmap
+     * @param widthPx
+     *         the width of the image view
+     * @param maxHeightPx
+     *         the maximum height of the image view
+     * @return the height of the image view
+     */
+    public static int calcImageHeight(int bitmapWidth, int bitmapHeight, int widthPx, int maxHeightPx) {
+        int height = bitmapHeight;
+        if (widthPx > 0 && bitmapWidth > 0) {
+            height = Math.round(bitmapHeight * widthPx / (float) bitmapWidth);
+        }
+        return maxHeightPx > 0 ? Math.min(height, maxHeightPx) : height;
+    }
+
     /**
      * Sets a new product to be displayed in the cardview.
      *
@@ -201,6 +228,8 @@ public class ProductPreview extends CardView {
      *         the product to show
      * @param productImageUrl
      *         the URL of the product image to load
+     * @param productThumbnailUrl
+     *         the URL of a tiny version of the product image to show blurred while the image is being loaded
      * @param productDominantColor
      *         the dominant color (rgb) of the product image to use as background while the image is being
      *         loaded
@@ -213,14 +242,15 @@ public class ProductPreview extends CardView {
      * @param client
      *         the PLYAndroid client to use for voting
      */
-    public void setProduct(Product product, String productImageUrl, int[] productDominantColor,
-            SimpleUserInfo author, String authorImageUrl, UserHandler userHandler, PLYAndroid client) {
+    public void setProduct(Product product, String productImageUrl, String productThumbnailUrl, int[]
+            productDominantColor, SimpleUserInfo author, String authorImageUrl, UserHandler userHandler,
+            PLYAndroid client) {
         if (this.product != null && product.equals(this.product)) {
             return;
         }
         // display new product image
         this.product = product;
-        Picasso.with(context).cancelRequest(productImageTarget);
+        productImageLoader.cancel(context);
         productImage.setImageBitmap(null);
         boolean isFriend = userHandler.isFriend(author);
         // colorize cardview if this entry was created by oneself or a friend
@@ -235,7 +265,7 @@ public class ProductPreview extends CardView {
         // load product image
         if (productImageUrl != null) {
             productImage.setVisibility(VISIBLE);
-            Picasso.with(context).load(productImageUrl).into(productImageTarget);
+            productImageLoader.load(context, productThumbnailUrl, productImageUrl);
             //likeView.setVisibility(VISIBLE);
         } else {
             productImage.setVisibility(GONE);
@@ -277,10 +307,12 @@ public class ProductPreview extends CardView {
             ViewGroup.LayoutParams productImageLayoutParams = productImage.getLayoutParams();
             int bitmapWidth = bitmap.getWidth();
             int bitmapHeight = bitmap.getHeight();
-            if (productImageLayoutParams.height != bitmapHeight) {
-                productImageLayoutParams.height = bitmapHeight;
+            int imageHeight = calcImageHeight(bitmapWidth, bitmapHeight,
+                    productImageLayoutParams.width, maxImageHeightPx);
+            if (productImageLayoutParams.height != imageHeight) {
+                productImageLayoutParams.height = imageHeight;
                 ViewGroup.LayoutParams lpForScrim = scrim.getLayoutParams();
-                lpForScrim.height = calcScrimSize(bitmapHeight);
+                lpForScrim.height = calcScrimSize(imageHeight);
             }
             if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
                 productImage.setBackgroundColor(Color.TRANSPARENT);
@@ -41,6 +41,7 @@ import android.widget.TextView;
 
 import com.productlayer.android.common.R;
 import com.productlayer.android.common.handler.NavigationHandler;
+import com.productlayer.android.common.util.ProgressiveImageLoader;
 import com.productlayer.android.common.util.ThemeUtil;
 import com.productlayer.core.beans.Product;
 import com.squareup.picasso.Picasso;
@@ -55,7 +56,9 @@ public class SearchResult extends CardView {
 
     private ImageView productImage;
     private Target productImageTarget = new ProductImageTarget();
+    private ProgressiveImageLoader productImageLoader;
     private int imagePlaceholderColor;
+    private int maxImageHeightPx;
     private TextView productName;
     private TextView productBrand;
 
@@ -79,6 +82,7 @@ public class SearchResult extends CardView {
         ViewGroup.LayoutParams productImageLayoutParams = productImage.getLayoutParams();
         productImageLayoutParams.width = imageWidthPx;
         productImageLayoutParams.height = maxImageHeightPx;
+        this.maxImageHeightPx = maxImageHeightPx;
         OnClickListener productClickListener = new OnClickListener() {
             @Override
             public void onClick(View v) {
@@ -139,6 +143,7 @@ public class SearchResult extends CardView {
         Integer cardBackgroundColor = ThemeUtil.getIntegerValue(context, R.attr.cardBackground);
         setCardBackgroundColor(cardBackgroundColor == null ? Color.WHITE : cardBackgroundColor);
         productImage = (ImageView) findViewById(R.id.product_image);
+        productImageLoader = new ProgressiveImageLoader(productImage, productImageTarget);
         productName = (TextView) findViewById(R.id.product_name);
         productBrand = (TextView) findViewById(R.id.product_brand);
         Integer imagePlaceholderColor = ThemeUtil.getIntegerValue(context, R.attr.imagePlaceholder);
@@ -157,17 +162,20 @@ public class SearchResult extends CardView {
      *         the product to show
      * @param productImageUrl
      *         the URL of the product image to load
+     * @param productThumbnailUrl
+     *         the URL of a tiny version of the product image to show blurred while the image is being loaded
      * @param productDominantColor
      *         the dominant color (rgb) of the product image to use as background while the image is being
      *         loaded
      */
-    public void setSearchResult(Product product, String productImageUrl, int[] productDominantColor) {
+    public void setSearchResult(Product product, String productImageUrl, String productThumbnailUrl, int[]
+            productDominantColor) {
         if (this.product != null && product.equals(this.product)) {
             return;
         }
         // display new product image
         this.product = product;
-        Picasso.with(context).cancelRequest(productImageTarget);
+        productImageLoader.cancel(context);
         productImage.setImageBitmap(null);
         // display the image's dominant color as background while it is being loaded
         if (productDominantColor != null) {
@@ -179,7 +187,7 @@ public class SearchResult extends CardView {
         // load product image
         if (productImageUrl != null) {
             productImage.setVisibility(VISIBLE);
-            Picasso.with(context).load(productImageUrl).into(productImageTarget);
+            productImageLoader.load(context, productThumbnailUrl, productImageUrl);
         } else {
             productImage.setVisibility(GONE);
             // TODO product placeholder image?
@@ -214,8 +222,10 @@ public class SearchResult extends CardView {
             ViewGroup.LayoutParams productImageLayoutParams = productImage.getLayoutParams();
             int bitmapWidth = bitmap.getWidth();
             int bitmapHeight = bitmap.getHeight();
-            if (productImageLayoutParams.height != bitmapHeight) {
-                productImageLayoutParams.height = bitmapHeight;
+            int imageHeight = ProductPreview.calcImageHeight(bitmapWidth, bitmapHeight,
+                    productImageLayoutParams.width, maxImageHeightPx);
+            if (productImageLayoutParams.height != imageHeight) {
+                productImageLayoutParams.height = imageHeight;
             }
             if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
                 productImage.setBackgroundColor(Color.TRANSPARENT);
@@ -0,0 +1,346 @@
+/*
+ * Copyright (c) 2015, ProductLayer GmbH All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.productlayer.android.common.view;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Build;
+import android.os.Process;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.util.LruCache;
+import android.view.View;
+
+import com.productlayer.android.common.util.BitmapPool;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Draws the visible part of a large image in full resolution on top of a zoomable view displaying a
+ * downsampled version of it. Only the tiles covering the visible area are decoded, at the sample size fitting
+ * the current zoom level, using a {@link BitmapRegionDecoder} on background threads. Decoded tiles are kept
+ * in a memory-bounded cache, decodes of tiles scrolled out of view are cancelled.
+ *
+ * The view does not handle touch events - feed it the rectangle the image is displayed in using {@link
+ * #setDisplayRect} whenever the zoomable view below changes its matrix.
+ */
+public class TiledImageView extends View {
+
+    private static final int TILE_SIZE = 512;
+    private static final int THREAD_POOL_SIZE = 2;
+    private static final int MEMORY_DIVISOR = 8;
+    private static final long DECODER_RELEASE_TIMEOUT_SECONDS = 10;
+
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect srcRect = new Rect();
+    private final RectF dstRect = new RectF();
+
+    private final LruCache<String, Bitmap> tiles = new LruCache<String, Bitmap>((int) Math.min(Integer
+            .MAX_VALUE, Runtime.getRuntime().maxMemory() / MEMORY_DIVISOR)) {
+        @Override
+        protected int sizeOf(String key, Bitmap bitmap) {
+            return bitmap.getRowBytes() * bitmap.getHeight();
+        }
+
+        @Override
+        protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+            // only called on the UI thread outside of onDraw, the bitmap is not drawn anymore
+            BitmapPool.put(oldValue);
+        }
+    };
+    private final Map<String, Future<?>> pending = new HashMap<String, Future<?>>();
+
+    private ExecutorService threadPool;
+    private BitmapRegionDecoder decoder;
+    private int imageWidth;
+    private int imageHeight;
+    private int baseSampleSize;
+    private RectF displayRect;
+
+    public TiledImageView(Context context) {
+        super(context);
+    }
+
+    public TiledImageView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    public TiledImageView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+    }
+
+    /**
+     * Opens an image file for region decoding. Accesses the disk - do not run on the UI thread!
+     *
+     * @param file
+     *         the full resolution image (JPEG or PNG)
+     * @return the decoder or null on any error
+     */
+    public static BitmapRegionDecoder openDecoder(File file) {
+        try {
+            return BitmapRegionDecoder.newInstance(file.getAbsolutePath(), false);
+        } catch (IOException e) {
+            Log.w(TiledImageView.class.getSimpleName(), "Error opening " + file + " for region decoding", e);
+            return null;
+        }
+    }
+
+    /**
+     * Starts drawing tiles of the image. Tiles are only drawn at zoom levels at which they are more detailed
+     * than the downsampled image below.
+     *
+     * @param decoder
+     *         the region decoder of the full resolution image, see {@link #openDecoder}
+     * @param baseWidth
+     *         the width of the downsampled image displayed below
+     */
+    public void setDecoder(BitmapRegionDecoder decoder, int baseWidth) {
+        recycle();
+        this.decoder = decoder;
+        imageWidth = decoder.getWidth();
+        imageHeight = decoder.getHeight();
+        baseSampleSize = Math.max(1, imageWidth / Math.max(1, baseWidth));
+        threadPool = Executors.newFixedThreadPool(THREAD_POOL_SIZE, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        r.run();
+                    }
+                });
+            }
+        });
+        invalidate();
+    }
+
+    /**
+     * @return the width of the full resolution image or 0 if none is set
+     */
+    public int getImageWidth() {
+        return imageWidth;
+    }
+
+    /**
+     * Updates the area the full image is displayed in, in view coordinates.
+     *
+     * @param displayRect
+     *         the bounds of the zoomed and panned image
+     */
+    public void setDisplayRect(RectF displayRect) {
+        this.displayRect = new RectF(displayRect);
+        invalidate();
+    }
+
+    /**
+     * Stops decoding, drops all tiles and closes the decoder.
+     */
+    public void recycle() {
+        final ExecutorService threadPool = this.threadPool;
+        final BitmapRegionDecoder decoder = this.decoder;
+        this.threadPool = null;
+        this.decoder = null;
+        pending.clear();
+        tiles.evictAll();
+        if (threadPool != null) {
+            threadPool.shutdownNow();
+            // recycling the decoder while a region is decoded may crash on older platforms
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        threadPool.awaitTermination(DECODER_RELEASE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                    } catch (InterruptedException ignored) {
+                    }
+                    decoder.recycle();
+                }
+            }).start();
+        } else if (decoder != null) {
+            decoder.recycle();
+        }
+        imageWidth = 0;
+        imageHeight = 0;
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        recycle();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (decoder == null || displayRect == null || displayRect.width() <= 0) {
+            return;
+        }
+        float scale = displayRect.width() / imageWidth;
+        int sampleSize = calcSampleSize(scale);
+        if (sampleSize >= baseSampleSize) {
+            // the downsampled image is detailed enough
+            cancelPending(sampleSize, 0, -1, 0, -1);
+            return;
+        }
+        // the visible part of the image in image coordinates
+        float left = Math.max(0, -displayRect.left / scale);
+        float top = Math.max(0, -displayRect.top / scale);
+        float right = Math.min(imageWidth, (getWidth() - displayRect.left) / scale);
+        float bottom = Math.min(imageHeight, (getHeight() - displayRect.top) / scale);
+        int tileSpan = TILE_SIZE * sampleSize;
+        int colFrom = (int) (left / tileSpan);
+        int colTo = (int) ((right - 1) / tileSpan);
+        int rowFrom = (int) (top / tileSpan);
+        int rowTo = (int) ((bottom - 1) / tileSpan);
+        cancelPending(sampleSize, colFrom, colTo, rowFrom, rowTo);
+        for (int row = rowFrom; row <= rowTo; row++) {
+            for (int col = colFrom; col <= colTo; col++) {
+                String key = key(sampleSize, col, row);
+                Bitmap tile = tiles.get(key);
+                if (tile == null) {
+                    decode(key, sampleSize, col, row);
+                    continue;
+                }
+                srcRect.set(0, 0, tile.getWidth(), tile.getHeight());
+                float tileLeft = displayRect.left + col * tileSpan * scale;
+                float tileTop = displayRect.top + row * tileSpan * scale;
+                dstRect.set(tileLeft, tileTop, tileLeft + tile.getWidth() * sampleSize * scale, tileTop + tile
+                        .getHeight() * sampleSize * scale);
+                canvas.drawBitmap(tile, srcRect, dstRect, paint);
+            }
+        }
+    }
+
+    /**
+     * @return the largest power of two sample size at which a decoded pixel is not larger than a screen pixel
+     */
+    private static int calcSampleSize(float scale) {
+        int sampleSize = 1;
+        while (sampleSize * 2 * scale <= 1) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static String key(int sampleSize, int col, int row) {
+        return sampleSize + "/" + col + "/" + row;
+    }
+
+    /**
+     * Cancels decoding tiles that are not visible at the specified sample size and tile range.
+     */
+    private void cancelPending(int sampleSize, int colFrom, int colTo, int rowFrom, int rowTo) {
+        for (Iterator<Map.Entry<String, Future<?>>> i = pending.entrySet().iterator(); i.hasNext(); ) {
+            Map.Entry<String, Future<?>> entry = i.next();
+            String[] parts = entry.getKey().split("/");
+            int tileSampleSize = Integer.parseInt(parts[0]);
+            int col = Integer.parseInt(parts[1]);
+            int row = Integer.parseInt(parts[2]);
+            if (tileSampleSize != sampleSize || col < colFrom || col > colTo || row < rowFrom || row >
+                    rowTo) {
+                entry.getValue().cancel(false);
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * Decodes a tile in the background unless already being decoded.
+     */
+    private void decode(final String key, final int sampleSize, int col, int row) {
+        if (pending.containsKey(key) || threadPool == null) {
+            return;
+        }
+        final BitmapRegionDecoder decoder = this.decoder;
+        int tileSpan = TILE_SIZE * sampleSize;
+        final Rect region = new Rect(col * tileSpan, row * tileSpan, Math.min(imageWidth, (col + 1) *
+                tileSpan), Math.min(imageHeight, (row + 1) * tileSpan));
+        pending.put(key, threadPool.submit(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap tile = decodeRegion(decoder, region, sampleSize);
+                post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (pending.remove(key) == null || decoder != TiledImageView.this.decoder) {
+                            // cancelled or recycled in the meantime
+                            if (tile != null) {
+                                BitmapPool.put(tile);
+                            }
+                            return;
+                        }
+                        if (tile != null) {
+                            tiles.put(key, tile);
+                            invalidate();
+                        }
+                    }
+                });
+            }
+        }));
+    }
+
+    /**
+     * Decodes a region of the image, reusing a pooled bitmap if possible.
+     *
+     * @return the decoded tile or null on any error
+     */
+    private static Bitmap decodeRegion(BitmapRegionDecoder decoder, Rect region, int sampleSize) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            BitmapPool.setInBitmap(options, region.width(), region.height());
+        }
+        try {
+            try {
+                return decoder.decodeRegion(region, options);
+            } catch (IllegalArgumentException e) {
+                BitmapPool.releaseInBitmap(options);
+                return decoder.decodeRegion(region, options);
+            }
+        } catch (IllegalArgumentException e) {
+            Log.w(TiledImageView.class.getSimpleName(), "Error decoding region " + region, e);
+            return null;
+        } catch (IllegalStateException e) {
+            // the decoder has been recycled
+            return null;
+        }
+    }
+}
@@ -42,12 +42,11 @@ import com.productlayer.android.common.fragment.ProfileFragment;
 import com.productlayer.android.common.handler.NavigationHandler;
 import com.productlayer.android.common.handler.UserHandler;
 import com.productlayer.android.common.model.Level;
-import com.productlayer.android.common.util.PicassoTarget;
+import com.productlayer.android.common.util.PicassoRoundedCorners;
 import com.productlayer.android.common.util.ThemeUtil;
 import com.productlayer.android.sdk.PLYAndroid;
 import com.productlayer.core.beans.User;
 import com.squareup.picasso.Picasso;
-import com.squareup.picasso.Target;
 
 /**
  * A compound view displaying a user including the option to (un)follow them.
@@ -66,9 +65,9 @@ public class UserPreview extends CardView {
     private TextView levelText;
     private FollowView followView;
 
-    private Target userImageTarget;
 
     private boolean showFollowButton;
+    private int avatarSizePx;
 
     /**
      * Creates the cardview setting the dimensions of the user image placeholder.
@@ -88,6 +87,7 @@ public class UserPreview extends CardView {
     DialogFragment dismissableDialog, boolean showFollowButton) {
         this(context, null);
         this.showFollowButton = showFollowButton;
+        this.avatarSizePx = avatarSizePx;
         // set user image dimensions
         ViewGroup.LayoutParams userImageLayoutParams = userImage.getLayoutParams();
         userImageLayoutParams.width = avatarSizePx;
@@ -184,9 +184,7 @@ public class UserPreview extends CardView {
         }
         // display new user
         this.user = user;
-        if (userImageTarget != null) {
-            Picasso.with(context).cancelRequest(userImageTarget);
-        }
+        Picasso.with(context).cancelRequest(userImage);
         userImage.setImageBitmap(null);
         boolean isFriend = userHandler.isFriend(user);
         // highlight author image if a friend
@@ -202,9 +200,10 @@ public class UserPreview extends CardView {
         setCardBackgroundColor(isFriend ? friendBackgroundColor : cardBackgroundColor);
         if (userImageUrl != null) {
             userImage.setVisibility(VISIBLE);
-            userImageTarget = PicassoTarget.roundedCornersImage(context, userImage, getResources()
-                    .getDimension(R.dimen.feed_item_radius));
-            Picasso.with(context).load(userImageUrl).into(userImageTarget);
+            // the avatar may be larger than the view, scale the radius to match the card's corners on screen
+            Picasso.with(context).load(userImageUrl).transform(new PicassoRoundedCorners(context,
+                    getResources().getDimension(R.dimen.feed_item_radius), avatarSizePx)).noFade().into
+                    (userImage);
         } else {
             userImage.setVisibility(GONE);
         }
@@ -34,7 +34,10 @@ import android.view.Menu;
 import android.view.MenuItem;
 
 import com.productlayer.android.common.activity.ScannerActivity;
+import com.productlayer.android.common.global.HttpNameDeltaSource;
 import com.productlayer.android.common.global.ObjectCache;
+import com.productlayer.android.common.global.ObjectCacheWarmUp;
+import com.productlayer.android.common.global.UploadQueue;
 import com.productlayer.android.common.handler.AppBarHandler;
 import com.productlayer.android.common.handler.FloatingActionButtonHandler;
 import com.productlayer.android.common.handler.HasAppBarHandler;
@@ -59,6 +62,7 @@ import com.productlayer.android.demo.handler.DemoQueryListener;
 import com.productlayer.android.demo.handler.DemoTimelineSettingsHandler;
 import com.productlayer.android.demo.handler.DemoUserHandler;
 import com.productlayer.android.sdk.PLYAndroid;
+import com.productlayer.android.sdk.services.ImageService;
 import com.productlayer.rest.client.config.PLYRestClientConfig;
 
 /**
@@ -101,6 +105,15 @@ public class Demo extends AppCompatActivity implements HasPLYAndroidHolder, PLYA
         // set up image caching
         CacheUtil.setupPicassoInstance(getApplicationContext(), CacheUtil.PICASSO_CACHE_MEMORY_PERCENTAGE,
                 CacheUtil.PICASSO_CACHE_DISK_MB, false);
+        // share image URLs and cache entries across screen sizes and layouts
+        ImageService.setSizeBuckets(ImageService.DEFAULT_SIZE_BUCKETS);
+        // send images in resumable chunks if a server accepting them is configured
+        String chunkedUploadEndpoint = getString(R.string.chunked_upload_endpoint);
+        if (!chunkedUploadEndpoint.isEmpty()) {
+            UploadQueue.setChunkedUploadEndpoint(chunkedUploadEndpoint);
+        }
+        // continue uploads interrupted by a lost connection or by the app being killed
+        UploadQueue.resumePendingUploads(getApplicationContext(), client);
         // set up handlers
         appBarHandler = new DemoAppBarHandler(this);
         navigationHandler = new DemoNavigationHandler(getSupportFragmentManager(), R.id.content, client);
@@ -118,8 +131,28 @@ public class Demo extends AppCompatActivity implements HasPLYAndroidHolder, PLYA
         if (savedInstanceState == null) {
             navigationHandler.openTimeline();
         }
-        // get product categories to translate keys to titles on the product page
-        cacheCategories();
+        // synchronize brand and brand owner names incrementally if a delta endpoint is configured
+        String nameDeltaURL = getString(R.string.name_delta_url);
+        if (!nameDeltaURL.isEmpty()) {
+            ObjectCache.setNameDeltaSource(new HttpNameDeltaSource(nameDeltaURL));
+        }
+        // warm up categories and their translations (to translate keys to titles on the product page),
+        // nutrition translations as well as brand and brand owner names
+        ObjectCacheWarmUp.start(this, client);
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        // open the object cache and restore image caches possibly trimmed while in the background
+        CacheUtil.onStart(getApplicationContext());
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        // close the object cache and release image processing resources
+        CacheUtil.onStop();
     }
 
     @Override
@@ -200,16 +233,4 @@ public class Demo extends AppCompatActivity implements HasPLYAndroidHolder, PLYA
     public FloatingActionButtonHandler getFloatingActionButtonHandler() {
         return floatingActionButtonHandler;
     }
-
-    /**
-     * Caches categories retrieved via the ProductLayer API in the background.
-     */
-    private void cacheCategories() {
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                ObjectCache.getCategories(Demo.this, client, false, false);
-            }
-        }).start();
-    }
 }
@@ -84,6 +84,7 @@ public class PLYAndroid {
     private final ExecutorService threadPool;
 
     private PLYRestClient client;
+    private RestTemplate restTemplate;
     private PLYQueryListener queryListener;
     private PLYUserProgressListener userProgressListener;
     private String language;
@@ -112,14 +113,17 @@ public class PLYAndroid {
      *
      * @param client
      *         the REST client
+     * @param restTemplate
+     *         the RestTemplate used by the REST client
      * @param orderedExecution
      *         true to activate just a single thread to handle service calls in order, false to initialize a
      *         thread pool handling several calls at the same time in an unspecified order
      */
-    private PLYAndroid(PLYRestClient client, boolean orderedExecution) {
+    private PLYAndroid(PLYRestClient client, RestTemplate restTemplate, boolean orderedExecution) {
         stateLoaded = true;
         threadPool = orderedExecution ? Executors.newSingleThreadExecutor() : Executors.newCachedThreadPool();
         this.client = client;
+        this.restTemplate = restTemplate;
     }
 
     /**
@@ -130,7 +134,8 @@ public class PLYAndroid {
      */
     private void initRestClient(PLYRestClientConfig config) {
         client = new PLYRestClient(config);
-        client.setRestTemplate(getOkHttpRestTemplate(config));
+        restTemplate = getOkHttpRestTemplate(config);
+        client.setRestTemplate(restTemplate);
     }
 
     /**
@@ -162,7 +167,7 @@ public class PLYAndroid {
      */
     public PLYAndroid copyForOrderedThreadExecution() {
         waitForStateLoaded();
-        PLYAndroid sequentialClient = new PLYAndroid(client, true);
+        PLYAndroid sequentialClient = new PLYAndroid(client, restTemplate, true);
         sequentialClient.setQueryListener(queryListener);
         sequentialClient.setUserProgressListener(userProgressListener);
         sequentialClient.setLanguage(language);
@@ -193,6 +198,14 @@ public class PLYAndroid {
         return client;
     }
 
+    /**
+     * @return the RestTemplate used by the REST client, for requests not covered by the Java SDK
+     */
+    RestTemplate getRestTemplate() {
+        waitForStateLoaded();
+        return restTemplate;
+    }
+
     /**
      * Sets a callback for queries that complete with an error due to failed authentication.
      *
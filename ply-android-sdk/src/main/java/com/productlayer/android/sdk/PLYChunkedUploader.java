@@ -0,0 +1,451 @@
+/*
+ * Copyright (c) 2015, ProductLayer GmbH All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.productlayer.android.sdk;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Uploads files in chunks that can be resumed after a dropped connection or process death.
+ *
+ * Speaks a minimal resumable upload protocol against the endpoint passed to the constructor:
+ *
+ * <ul>
+ * <li>{@code POST <endpoint>} with header {@code Upload-Length} creates an upload session and responds with
+ * its URL in the {@code Location} header</li>
+ * <li>{@code HEAD <session>} responds with the number of bytes received so far in the {@code Upload-Offset}
+ * header</li>
+ * <li>{@code PATCH <session>} with header {@code Upload-Offset} and a chunk of the file as body appends the
+ * chunk and responds with the new {@code Upload-Offset}; the response to the chunk completing the file
+ * carries the resulting object as body</li>
+ * <li>{@code GET <session>} responds with the resulting object once the upload is complete</li>
+ * </ul>
+ *
+ * Session URLs are persisted in shared preferences, so an upload interrupted for any reason continues from
+ * the last chunk acknowledged by the server when {@link #upload} is called again with the same upload ID
+ * and file. Failed chunks are retried with exponential backoff before giving up.
+ */
+public class PLYChunkedUploader {
+
+    public static final int DEFAULT_CHUNK_SIZE = 128 * 1024;
+    public static final int DEFAULT_MAX_RETRIES = 5;
+
+    private static final String PREFS_NAME = "PLYChunkedUploads";
+    private static final String STATE_PATH = ".path";
+    private static final String STATE_LENGTH = ".length";
+    private static final String STATE_MODIFIED = ".modified";
+    private static final String STATE_LOCATION = ".location";
+
+    private static final String HEADER_UPLOAD_LENGTH = "Upload-Length";
+    private static final String HEADER_UPLOAD_OFFSET = "Upload-Offset";
+    private static final String HEADER_COOKIE = "Cookie";
+    private static final MediaType CONTENT_TYPE_CHUNK = MediaType.valueOf("application/offset+octet-stream");
+
+    private static final long RETRY_DELAY_MS = 1000;
+    private static final long RETRY_DELAY_MAX_MS = 30000;
+
+    private final PLYAndroid client;
+    private final String endpointURL;
+    private final SharedPreferences prefs;
+
+    private Handler mainHandler;
+    private volatile int chunkSize = DEFAULT_CHUNK_SIZE;
+    private volatile int maxRetries = DEFAULT_MAX_RETRIES;
+
+    /**
+     * Creates an uploader sending files to the specified endpoint, using the RestTemplate and authorization
+     * of the PLYAndroid client.
+     *
+     * @param context
+     *         the application context
+     * @param client
+     *         the PLYAndroid SDK client configured to handle communications with the ProductLayer API server
+     * @param endpointURL
+     *         the URL to create upload sessions at
+     */
+    public PLYChunkedUploader(Context context, PLYAndroid client, String endpointURL) {
+        this(client, context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE), endpointURL);
+    }
+
+    /**
+     * Creates an uploader persisting the state of its uploads in the specified preferences.
+     *
+     * @param client
+     *         the PLYAndroid SDK client configured to handle communications with the ProductLayer API server
+     * @param prefs
+     *         the preferences to persist session URLs in
+     * @param endpointURL
+     *         the URL to create upload sessions at
+     */
+    PLYChunkedUploader(PLYAndroid client, SharedPreferences prefs, String endpointURL) {
+        this.client = client;
+        this.prefs = prefs;
+        this.endpointURL = endpointURL;
+    }
+
+    /**
+     * @param chunkSize
+     *         the number of bytes to send per request
+     */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @param maxRetries
+     *         the number of consecutive failed requests to retry before the upload fails
+     */
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Uploads a file or resumes uploading it if a previous upload with the same ID and the same unmodified
+     * file has been interrupted.
+     *
+     * @param uploadID
+     *         an identifier of the upload that is stable across process restarts
+     * @param filePath
+     *         the path to the file to upload
+     * @param resultType
+     *         the type of the object the server responds with once the upload is complete
+     * @param progressListener
+     *         the listener to report the progress of the upload to or null
+     * @param completion
+     *         dealing with any errors or successful completion of the upload, handling the object the server
+     *         responds with
+     * @param <T>
+     *         the type of the object the server responds with
+     * @return a Future object to optionally wait for the result or to cancel the upload (it is resumable
+     * afterwards)
+     */
+    public <T> Future<T> upload(final String uploadID, final String filePath, final Class<T> resultType,
+            final PLYUploadProgressListener progressListener, PLYCompletion<T> completion) {
+        return client.submit(new PLYAndroid.Query<T>() {
+            @Override
+            public T execute() {
+                return transfer(uploadID, new File(filePath), resultType, progressListener);
+            }
+        }, completion);
+    }
+
+    /**
+     * @return the IDs of all uploads that have been started but not completed or discarded
+     */
+    public List<String> getPendingUploads() {
+        List<String> uploadIDs = new ArrayList<String>();
+        for (String key : prefs.getAll().keySet()) {
+            if (key.endsWith(STATE_LOCATION)) {
+                uploadIDs.add(key.substring(0, key.length() - STATE_LOCATION.length()));
+            }
+        }
+        return uploadIDs;
+    }
+
+    /**
+     * @param uploadID
+     *         the identifier of a pending upload
+     * @return the path of the file being uploaded or null if there is no such pending upload
+     */
+    public String getPendingUploadPath(String uploadID) {
+        return prefs.getString(uploadID + STATE_PATH, null);
+    }
+
+    /**
+     * Forgets the state of a pending upload. A subsequent call to {@link #upload} starts over.
+     *
+     * @param uploadID
+     *         the identifier of the upload
+     */
+    public void discard(String uploadID) {
+        discard(prefs, uploadID);
+    }
+
+    /**
+     * Forgets the state of a pending upload without creating an uploader, f.e. once the file to upload is
+     * gone.
+     *
+     * @param context
+     *         the application context
+     * @param uploadID
+     *         the identifier of the upload
+     */
+    public static void discard(Context context, String uploadID) {
+        discard(context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE), uploadID);
+    }
+
+    private static void discard(SharedPreferences prefs, String uploadID) {
+        prefs.edit().remove(uploadID + STATE_PATH).remove(uploadID + STATE_LENGTH).remove(uploadID +
+                STATE_MODIFIED).remove(uploadID + STATE_LOCATION).apply();
+    }
+
+    /**
+     * Sends the file chunk by chunk, starting at the offset acknowledged by the server.
+     */
+    <T> T transfer(String uploadID, File file, Class<T> resultType, PLYUploadProgressListener
+            progressListener) {
+        long length = file.length();
+        URI location = getSession(uploadID, file);
+        boolean resumed = location != null;
+        if (location == null) {
+            location = createSession(length);
+            prefs.edit().putString(uploadID + STATE_PATH, file.getAbsolutePath()).putLong(uploadID +
+                    STATE_LENGTH, length).putLong(uploadID + STATE_MODIFIED, file.lastModified()).putString
+                    (uploadID + STATE_LOCATION, location.toString()).apply();
+        }
+        RandomAccessFile in;
+        try {
+            in = new RandomAccessFile(file, "r");
+        } catch (IOException e) {
+            throw new RestClientException("Could not open " + file, e);
+        }
+        try {
+            long offset = 0;
+            if (resumed) {
+                try {
+                    offset = getOffset(location);
+                } catch (HttpStatusCodeException e) {
+                    if (!isSessionGone(e)) {
+                        throw e;
+                    }
+                    // the server no longer knows the session, start over
+                    Log.d(PLYChunkedUploader.class.getSimpleName(), "Upload session of " + uploadID + " " +
+                            "expired");
+                    discard(uploadID);
+                    return transfer(uploadID, file, resultType, progressListener);
+                }
+                Log.d(PLYChunkedUploader.class.getSimpleName(), "Resuming upload " + uploadID + " at " +
+                        offset + "/" + length);
+                postProgress(progressListener, uploadID, offset, length);
+            }
+            byte[] buffer = new byte[chunkSize];
+            int failures = 0;
+            while (true) {
+                if (Thread.interrupted()) {
+                    throw new RestClientException("Upload " + uploadID + " interrupted at " + offset);
+                }
+                if (offset >= length) {
+                    // all chunks acknowledged but the response carrying the result got lost
+                    T result = exchange(location, HttpMethod.GET, null, resultType).getBody();
+                    discard(uploadID);
+                    return result;
+                }
+                int size = (int) Math.min(buffer.length, length - offset);
+                try {
+                    in.seek(offset);
+                    in.readFully(buffer, 0, size);
+                } catch (IOException e) {
+                    throw new RestClientException("Could not read " + file, e);
+                }
+                byte[] chunk = size == buffer.length ? buffer : Arrays.copyOf(buffer, size);
+                try {
+                    HttpHeaders headers = getHeaders();
+                    headers.setContentType(CONTENT_TYPE_CHUNK);
+                    headers.set(HEADER_UPLOAD_OFFSET, String.valueOf(offset));
+                    ResponseEntity<T> response = exchange(location, HttpMethod.PATCH, new HttpEntity<byte[]>
+                            (chunk, headers), resultType);
+                    offset = parseOffset(response.getHeaders(), offset + size);
+                    failures = 0;
+                    postProgress(progressListener, uploadID, offset, length);
+                    if (offset >= length) {
+                        discard(uploadID);
+                        return response.getBody();
+                    }
+                } catch (RestClientException e) {
+                    if (e instanceof HttpStatusCodeException && !isRetryable((HttpStatusCodeException) e)) {
+                        if (isSessionGone((HttpStatusCodeException) e)) {
+                            discard(uploadID);
+                        }
+                        throw e;
+                    }
+                    if (++failures > maxRetries) {
+                        throw e;
+                    }
+                    Log.d(PLYChunkedUploader.class.getSimpleName(), "Chunk of upload " + uploadID + " at " +
+                            offset + " failed, retry " + failures + "/" + maxRetries, e);
+                    try {
+                        Thread.sleep(Math.min(RETRY_DELAY_MAX_MS, RETRY_DELAY_MS << (failures - 1)));
+                        offset = getOffset(location);
+                    } catch (InterruptedException ie) {
+                        throw new RestClientException("Upload " + uploadID + " interrupted at " + offset, ie);
+                    } catch (RestClientException ignored) {
+                        // keep the offset and count the failure with the next chunk
+                    }
+                }
+            }
+        } finally {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * @return the persisted session URL of an upload of the unmodified file or null if there is none
+     */
+    private URI getSession(String uploadID, File file) {
+        String location = prefs.getString(uploadID + STATE_LOCATION, null);
+        if (location == null) {
+            return null;
+        }
+        if (!file.getAbsolutePath().equals(prefs.getString(uploadID + STATE_PATH, null)) || file.length() !=
+                prefs.getLong(uploadID + STATE_LENGTH, -1) || file.lastModified() != prefs.getLong(uploadID
+                + STATE_MODIFIED, -1)) {
+            discard(uploadID);
+            return null;
+        }
+        return URI.create(location);
+    }
+
+    /**
+     * @return the URL of a newly created upload session
+     */
+    private URI createSession(long length) {
+        HttpHeaders headers = getHeaders();
+        headers.set(HEADER_UPLOAD_LENGTH, String.valueOf(length));
+        URI endpoint = URI.create(endpointURL);
+        URI location = exchange(endpoint, HttpMethod.POST, new HttpEntity<Void>(headers), Void.class)
+                .getHeaders().getLocation();
+        if (location == null) {
+            throw new RestClientException("No upload session URL returned by " + endpointURL);
+        }
+        return endpoint.resolve(location);
+    }
+
+    /**
+     * @return the number of bytes the server has received for the upload session
+     */
+    private long getOffset(URI location) {
+        HttpHeaders headers = exchange(location, HttpMethod.HEAD, null, Void.class).getHeaders();
+        long offset = parseOffset(headers, -1);
+        if (offset < 0) {
+            throw new RestClientException("No upload offset returned by " + location);
+        }
+        return offset;
+    }
+
+    private <T> ResponseEntity<T> exchange(URI url, HttpMethod method, HttpEntity<?> entity, Class<T>
+            resultType) {
+        if (entity == null) {
+            entity = new HttpEntity<Void>(getHeaders());
+        }
+        return getRestTemplate().exchange(url, method, entity, resultType);
+    }
+
+    /**
+     * @return the RestTemplate to send requests with
+     */
+    RestTemplate getRestTemplate() {
+        return client.getRestTemplate();
+    }
+
+    /**
+     * @return the authorization cookie of the current user or null if not logged in
+     */
+    String getToken() {
+        return client.getRestClient().getToken();
+    }
+
+    /**
+     * @return headers authorizing the request as the current user
+     */
+    private HttpHeaders getHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        String token = getToken();
+        if (token != null) {
+            headers.set(HEADER_COOKIE, token);
+        }
+        return headers;
+    }
+
+    private static long parseOffset(HttpHeaders headers, long defaultOffset) {
+        String offset = headers.getFirst(HEADER_UPLOAD_OFFSET);
+        if (offset == null) {
+            return defaultOffset;
+        }
+        try {
+            return Long.parseLong(offset);
+        } catch (NumberFormatException e) {
+            return defaultOffset;
+        }
+    }
+
+    private static boolean isSessionGone(HttpStatusCodeException e) {
+        return e.getStatusCode() == HttpStatus.NOT_FOUND || e.getStatusCode() == HttpStatus.GONE;
+    }
+
+    /**
+     * @return true for server errors and offset conflicts, false for any other client error
+     */
+    private static boolean isRetryable(HttpStatusCodeException e) {
+        return e.getStatusCode().series() == HttpStatus.Series.SERVER_ERROR || e.getStatusCode() == HttpStatus
+                .CONFLICT;
+    }
+
+    private void postProgress(final PLYUploadProgressListener progressListener, final String uploadID, final
+    long bytesUploaded, final long bytesTotal) {
+        if (progressListener == null) {
+            return;
+        }
+        getMainHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                progressListener.onProgress(uploadID, bytesUploaded, bytesTotal);
+            }
+        });
+    }
+
+    private synchronized Handler getMainHandler() {
+        if (mainHandler == null) {
+            mainHandler = new Handler(Looper.getMainLooper());
+        }
+        return mainHandler;
+    }
+
+}
@@ -35,6 +35,157 @@ import java.util.concurrent.Future;
 
 public class ImageService {
 
+    /**
+     * A ladder of image dimensions in px to pass to {@link #setSizeBuckets(int[])}. Requested sizes are then
+     * snapped up to the next step so that URLs and thus server, CDN and local caches are shared across
+     * devices, orientations and layouts. Dimensions beyond the last step are rounded up to a multiple of it.
+     */
+    public static final int[] DEFAULT_SIZE_BUCKETS = {16, 24, 32, 48, 64, 96, 128, 192, 256, 384, 512, 768,
+            1024, 1536, 2048};
+
+    /**
+     * The ratios of the longer to the shorter edge that snapped bounding boxes are restricted to, ascending.
+     */
+    private static final float[] BOX_ASPECT_RATIOS = {1f, 4 / 3f, 3 / 2f, 16 / 9f, 2f, 3f, 4f};
+    /**
+     * The maximum size of avatar images delivered by the server in px.
+     */
+    private static final int MAX_AVATAR_SIZE = 512;
+
+    private static volatile int[] sizeBuckets;
+
+    /**
+     * Sets the ladder of image dimensions that requested image sizes are snapped up to. Snapping is off by
+     * default.
+     *
+     * Bitmaps loaded from snapped URLs may be larger than requested - views should scale them to fit.
+     *
+     * @param buckets
+     *         the ascending dimensions in px, e.g. {@link #DEFAULT_SIZE_BUCKETS}, or null to request the
+     *         exact sizes passed to the URL builders
+     */
+    public static void setSizeBuckets(int[] buckets) {
+        sizeBuckets = buckets == null ? null : buckets.clone();
+    }
+
+    /**
+     * Snaps a requested image dimension up to the next step of the size ladder if one is set.
+     *
+     * @param size
+     *         the requested width or height in px or null
+     * @return the dimension to request from the server or null if {@code size} is null
+     */
+    public static Integer quantizeSize(Integer size) {
+        int[] buckets = sizeBuckets;
+        if (size == null || buckets == null || buckets.length == 0 || size <= 0) {
+            return size;
+        }
+        for (int bucket : buckets) {
+            if (bucket >= size) {
+                return bucket;
+            }
+        }
+        int last = buckets[buckets.length - 1];
+        return (size + last - 1) / last * last;
+    }
+
+    /**
+     * Snaps a requested bounding box to the size ladder: the longer edge is snapped up and the shorter edge
+     * derived from the widest of {@link #BOX_ASPECT_RATIOS} not exceeding the requested aspect ratio. Both
+     * edges are thus at least as large as requested and the number of distinct boxes stays small. Cropped
+     * images may come back with a slightly different aspect ratio than requested - views should crop or
+     * scale them to fit.
+     *
+     * @param maxWidth
+     *         the requested maximum width in px or null
+     * @param maxHeight
+     *         the requested maximum height in px or null
+     * @return the width and height to request from the server
+     */
+    private static Integer[] quantizeBox(Integer maxWidth, Integer maxHeight) {
+        if (sizeBuckets == null) {
+            return new Integer[]{maxWidth, maxHeight};
+        }
+        if (maxWidth == null || maxHeight == null || maxWidth <= 0 || maxHeight <= 0) {
+            return new Integer[]{quantizeSize(maxWidth), quantizeSize(maxHeight)};
+        }
+        int longEdge = Math.max(maxWidth, maxHeight);
+        float aspectRatio = longEdge / (float) Math.min(maxWidth, maxHeight);
+        float snappedRatio = BOX_ASPECT_RATIOS[0];
+        for (float ratio : BOX_ASPECT_RATIOS) {
+            if (ratio <= aspectRatio) {
+                snappedRatio = ratio;
+            }
+        }
+        int snappedLongEdge = quantizeSize(longEdge);
+        int snappedShortEdge = Math.round(snappedLongEdge / snappedRatio);
+        if (maxWidth >= maxHeight) {
+            return new Integer[]{snappedLongEdge, snappedShortEdge};
+        }
+        return new Integer[]{snappedShortEdge, snappedLongEdge};
+    }
+
+    /**
+     * Gets the common start of the URLs of a specific image in all sizes, crops and qualities. Use it to
+     * evict all variants of an image from caches after it has been modified.
+     *
+     * @param client
+     *         the PLYAndroid SDK client configured to handle communications with the ProductLayer API server
+     * @param imageID
+     *         The identifier of the image
+     * @return the URL prefix or null if the URL format does not allow to tell apart the image from others
+     */
+    public static String getImageURLPrefix(final PLYAndroid client, final String imageID) {
+        return getURLPrefix(com.productlayer.rest.client.services.ImageService.getImageForSizeURL(client
+                .getRestClient(), imageID, 1, 1, null, null), com.productlayer.rest.client.services
+                .ImageService.getImageForSizeURL(client.getRestClient(), imageID, 2, 2, null, null), imageID);
+    }
+
+    /**
+     * Gets the common start of the URLs of the avatar of a specific user in all sizes. Use it to evict all
+     * variants of an avatar from caches after it has been replaced.
+     *
+     * @param client
+     *         the PLYAndroid SDK client configured to handle communications with the ProductLayer API server
+     * @param userID
+     *         The identifier of the user
+     * @return the URL prefix or null if the URL format does not allow to tell apart the avatar from others
+     */
+    public static String getUserAvatarURLPrefix(final PLYAndroid client, final String userID) {
+        return getURLPrefix(com.productlayer.rest.client.services.ImageService.getUserAvatarURL(client
+                .getRestClient(), userID, 1), com.productlayer.rest.client.services.ImageService
+                .getUserAvatarURL(client.getRestClient(), userID, 2), userID);
+    }
+
+    /**
+     * Determines the common prefix of two URLs of the same resource differing in size parameters. The prefix
+     * is cut after the start of the query string so that it matches regardless of parameter order.
+     *
+     * @param url1
+     *         the first URL
+     * @param url2
+     *         the second URL
+     * @param id
+     *         the identifier of the resource that must be part of the prefix
+     * @return the URL prefix or null if it does not contain {@code id}
+     */
+    private static String getURLPrefix(String url1, String url2, String id) {
+        if (url1 == null || url2 == null || id == null) {
+            return null;
+        }
+        int length = 0;
+        int maxLength = Math.min(url1.length(), url2.length());
+        while (length < maxLength && url1.charAt(length) == url2.charAt(length)) {
+            length++;
+        }
+        String prefix = url1.substring(0, length);
+        int queryStart = prefix.indexOf('?');
+        if (queryStart != -1) {
+            prefix = prefix.substring(0, queryStart + 1);
+        }
+        return prefix.contains(id) ? prefix : null;
+    }
+
     /**
      * Deletes a specific product image. Only the owner or an admin can delete the image. If the user earns
      * points for this operation 'X-ProductLayer-User-Points' and 'X-ProductLayer-User-Points-Changed' will be
@@ -117,9 +268,9 @@ public class ImageService {
      * @param gtin
      *         The GTIN (barcode) of the product
      * @param maxWidth
-     *         [Optional] The preferred maximum width
+     *         [Optional] The preferred maximum width, snapped to the size ladder if set
      * @param maxHeight
-     *         [Optional] The preferred maximum height
+     *         [Optional] The preferred maximum height, snapped to the size ladder if set
      * @param crop
      *         [Optional] Whether the image should be cropped
      * @param quality
@@ -128,8 +279,9 @@ public class ImageService {
      */
     public static String getDefaultProductImageForSizeURL(final PLYAndroid client, final String gtin, final
     Integer maxWidth, final Integer maxHeight, final Boolean crop, final Integer quality) {
+        Integer[] box = quantizeBox(maxWidth, maxHeight);
         return com.productlayer.rest.client.services.ImageService.getDefaultProductImageForSizeURL(client
-                .getRestClient(), gtin, maxWidth, maxHeight, crop, quality);
+                .getRestClient(), gtin, box[0], box[1], crop, quality);
     }
 
     /**
@@ -164,9 +316,9 @@ public class ImageService {
      * @param imageID
      *         The identifier of the image
      * @param maxWidth
-     *         [Optional] The preferred maximum width
+     *         [Optional] The preferred maximum width, snapped to the size ladder if set
      * @param maxHeight
-     *         [Optional] The preferred maximum height
+     *         [Optional] The preferred maximum height, snapped to the size ladder if set
      * @param crop
      *         [Optional] Whether the image should be cropped
      * @param quality
@@ -175,8 +327,9 @@ public class ImageService {
      */
     public static String getImageForSizeURL(final PLYAndroid client, final String imageID, final Integer
             maxWidth, final Integer maxHeight, final Boolean crop, final Integer quality) {
+        Integer[] box = quantizeBox(maxWidth, maxHeight);
         return com.productlayer.rest.client.services.ImageService.getImageForSizeURL(client.getRestClient()
-                , imageID, maxWidth, maxHeight, crop, quality);
+                , imageID, box[0], box[1], crop, quality);
     }
 
     /**
@@ -234,12 +387,18 @@ public class ImageService {
      *         The identifier of the user
      * @param size
      *         [Optional] The size of the avatar image in pixel. The avatar image is always a square image and
-     *         the maximum size is 512 pixel.
+     *         the maximum size is 512 pixel. Snapped up to the size ladder if set, but not beyond the
+     *         maximum.
      * @return the URL to the requested data
      */
     public static String getUserAvatarURL(final PLYAndroid client, final String userID, final Integer size) {
+        Integer snappedSize = quantizeSize(size);
+        if (snappedSize != null && snappedSize > MAX_AVATAR_SIZE) {
+            // larger avatars are delivered at the maximum size anyway
+            snappedSize = MAX_AVATAR_SIZE;
+        }
         return com.productlayer.rest.client.services.ImageService.getUserAvatarURL(client.getRestClient(),
-                userID, size);
+                userID, snappedSize);
     }
 
     /**
@@ -0,0 +1,370 @@
+/*
+ * Copyright (c) 2015, ProductLayer GmbH All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * - Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.productlayer.android.sdk;
+
+import android.content.SharedPreferences;
+
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.http.client.OkHttpClientHttpRequestFactory;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs {@link PLYChunkedUploader} against a stand-in server implementing the resumable upload protocol.
+ */
+public class PLYChunkedUploaderTest {
+
+    private static final int CHUNK_SIZE = 1000;
+    private static final int FILE_SIZE = 3500;
+    private static final String UPLOAD_ID = "upload";
+    private static final String TOKEN = "token";
+    private static final String RESULT = "uploaded";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private UploadServer uploadServer;
+    private File file;
+    private byte[] content;
+
+    @Before
+    public void setUp() throws IOException {
+        content = new byte[FILE_SIZE];
+        new Random(42).nextBytes(content);
+        file = folder.newFile();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+        uploadServer = new UploadServer();
+        server = new MockWebServer();
+        server.setDispatcher(uploadServer);
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void uploadsInChunks() {
+        SharedPreferences prefs = new MemoryPreferences();
+        assertEquals(RESULT, newUploader(prefs).transfer(UPLOAD_ID, file, String.class, null));
+        assertArrayEquals(content, uploadServer.getContent());
+        assertEquals(4, uploadServer.chunksReceived);
+        assertEquals(TOKEN, uploadServer.cookie);
+        assertTrue(newUploader(prefs).getPendingUploads().isEmpty());
+    }
+
+    @Test
+    public void resumesAfterFailedChunk() {
+        SharedPreferences prefs = new MemoryPreferences();
+        uploadServer.failAtChunk = 2;
+        try {
+            newUploader(prefs).transfer(UPLOAD_ID, file, String.class, null);
+            fail();
+        } catch (RestClientException expected) {
+        }
+        assertEquals(Collections.singletonList(UPLOAD_ID), newUploader(prefs).getPendingUploads());
+        assertEquals(RESULT, newUploader(prefs).transfer(UPLOAD_ID, file, String.class, null));
+        assertArrayEquals(content, uploadServer.getContent());
+        // no chunk acknowledged before the failure is sent again
+        assertEquals(FILE_SIZE, uploadServer.bytesReceived);
+        assertEquals(1, uploadServer.sessionsCreated);
+        assertTrue(newUploader(prefs).getPendingUploads().isEmpty());
+    }
+
+    @Test
+    public void startsOverWhenSessionExpired() {
+        SharedPreferences prefs = new MemoryPreferences();
+        uploadServer.failAtChunk = 1;
+        try {
+            newUploader(prefs).transfer(UPLOAD_ID, file, String.class, null);
+            fail();
+        } catch (RestClientException expected) {
+        }
+        uploadServer.sessions.clear();
+        assertEquals(RESULT, newUploader(prefs).transfer(UPLOAD_ID, file, String.class, null));
+        assertArrayEquals(content, uploadServer.getContent());
+        assertEquals(2, uploadServer.sessionsCreated);
+        assertTrue(newUploader(prefs).getPendingUploads().isEmpty());
+    }
+
+    /**
+     * @return an uploader sending requests to the stand-in server without retrying failed chunks
+     */
+    private PLYChunkedUploader newUploader(SharedPreferences prefs) {
+        final RestTemplate restTemplate = new RestTemplate(new OkHttpClientHttpRequestFactory(new
+                OkHttpClient()));
+        PLYChunkedUploader uploader = new PLYChunkedUploader(null, prefs, server.url("/uploads").toString()) {
+            @Override
+            RestTemplate getRestTemplate() {
+                return restTemplate;
+            }
+
+            @Override
+            String getToken() {
+                return TOKEN;
+            }
+        };
+        uploader.setChunkSize(CHUNK_SIZE);
+        uploader.setMaxRetries(0);
+        return uploader;
+    }
+
+    /**
+     * Keeps upload sessions in memory and optionally fails one chunk with a server error.
+     */
+    private static class UploadServer extends Dispatcher {
+
+        private final Map<String, ByteArrayOutputStream> sessions = new HashMap<String,
+                ByteArrayOutputStream>();
+        private final Map<String, Long> lengths = new HashMap<String, Long>();
+
+        private volatile int failAtChunk = -1;
+        private volatile int sessionsCreated;
+        private volatile int chunksReceived;
+        private volatile long bytesReceived;
+        private volatile String cookie;
+        private volatile String lastSession;
+
+        @Override
+        public synchronized MockResponse dispatch(RecordedRequest request) {
+            cookie = request.getHeader("Cookie");
+            String method = request.getMethod();
+            String path = request.getPath();
+            if ("POST".equals(method)) {
+                lastSession = "/sessions/" + ++sessionsCreated;
+                sessions.put(lastSession, new ByteArrayOutputStream());
+                lengths.put(lastSession, Long.parseLong(request.getHeader("Upload-Length")));
+                return new MockResponse().setResponseCode(201).addHeader("Location", lastSession);
+            }
+            ByteArrayOutputStream received = sessions.get(path);
+            if (received == null) {
+                return new MockResponse().setResponseCode(404);
+            }
+            boolean complete = received.size() == lengths.get(path);
+            if ("HEAD".equals(method)) {
+                return new MockResponse().addHeader("Upload-Offset", received.size());
+            }
+            if ("GET".equals(method)) {
+                return complete ? new MockResponse().setBody(RESULT) : new MockResponse().setResponseCode
+                        (404);
+            }
+            if (!"PATCH".equals(method)) {
+                return new MockResponse().setResponseCode(405);
+            }
+            if (chunksReceived == failAtChunk) {
+                failAtChunk = -1;
+                return new MockResponse().setResponseCode(503);
+            }
+            if (Long.parseLong(request.getHeader("Upload-Offset")) != received.size()) {
+                return new MockResponse().setResponseCode(409);
+            }
+            byte[] chunk = request.getBody().readByteArray();
+            received.write(chunk, 0, chunk.length);
+            chunksReceived++;
+            bytesReceived += chunk.length;
+            MockResponse response = new MockResponse().addHeader("Upload-Offset", received.size());
+            if (received.size() == lengths.get(path)) {
+                response.setBody(RESULT);
+            }
+            return response;
+        }
+
+        private synchronized byte[] getContent() {
+            return sessions.get(lastSession).toByteArray();
+        }
+    }
+
+    /**
+     * Shared preferences kept in memory, applying changes immediately.
+     */
+    private static class MemoryPreferences implements SharedPreferences {
+
+        private final Map<String, Object> values = new HashMap<String, Object>();
+
+        @Override
+        public synchronized Map<String, ?> getAll() {
+            return new HashMap<String, Object>(values);
+        }
+
+        @Override
+        public synchronized String getString(String key, String defValue) {
+            return values.containsKey(key) ? (String) values.get(key) : defValue;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public synchronized Set<String> getStringSet(String key, Set<String> defValues) {
+            return values.containsKey(key) ? (Set<String>) values.get(key) : defValues;
+        }
+
+        @Override
+        public synchronized int getInt(String key, int defValue) {
+            return values.containsKey(key) ? (Integer) values.get(key) : defValue;
+        }
+
+        @Override
+        public synchronized long getLong(String key, long defValue) {
+            return values.containsKey(key) ? (Long) values.get(key) : defValue;
+        }
+
+        @Override
+        public synchronized float getFloat(String key, float defValue) {
+            return values.containsKey(key) ? (Float) values.get(key) : defValue;
+        }
+
+        @Override
+        public synchronized boolean getBoolean(String key, boolean defValue) {
+            return values.containsKey(key) ? (Boolean) values.get(key) : defValue;
+        }
+
+        @Override
+        public synchronized boolean contains(String key) {
+            return values.containsKey(key);
+        }
+
+        @Override
+        public Editor edit() {
+            return new MemoryEditor();
+        }
+
+        @Override
+        public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+
+        @Override
+        public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+
+        private class MemoryEditor implements Editor {
+
+            private final Map<String, Object> changes = new HashMap<String, Object>();
+            private boolean clear;
+
+            @Override
+            public Editor putString(String key, String value) {
+                changes.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putStringSet(String key, Set<String> values) {
+                changes.put(key, values);
+                return this;
+            }
+
+            @Override
+            public Editor putInt(String key, int value) {
+                changes.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putLong(String key, long value) {
+                changes.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putFloat(String key, float value) {
+                changes.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putBoolean(String key, boolean value) {
+                changes.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor remove(String key) {
+                // null marks a removal
+                changes.put(key, null);
+                return this;
+            }
+
+            @Override
+            public Editor clear() {
+                clear = true;
+                return this;
+            }
+
+            @Override
+            public boolean commit() {
+                synchronized (MemoryPreferences.this) {
+                    if (clear) {
+                        values.clear();
+                    }
+                    for (Map.Entry<String, Object> change : changes.entrySet()) {
+                        if (change.getValue() == null) {
+                            values.remove(change.getKey());
+                        } else {
+                            values.put(change.getKey(), change.getValue());
+                        }
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public void apply() {
+                commit();
+            }
+        }
+    }
+}